@@ -0,0 +1,73 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Book#getAverageRating()} for a book read with stored rating aggregates and for one whose
+ * average has to be computed from its ratings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AverageRatingBenchmark {
+
+    /**
+     * The number of embedded ratings, and of embedded reviews, of the book.
+     */
+    @Param({"0", "100", "10000"})
+    public int reviews;
+
+    private Book withAggregates;
+    private Book withoutAggregates;
+
+    /**
+     * Generates the two books from the same data.
+     */
+    @Setup
+    public void setUp() {
+        withoutAggregates = new SyntheticCatalog(42).nextBook(reviews, reviews);
+        withAggregates = new SyntheticCatalog(42).nextBook(reviews, reviews);
+        long sum = 0;
+        for (Rating rating : withAggregates.getRatings()) {
+            sum += rating.getRating();
+        }
+        withAggregates.setRatingAggregates(withAggregates.getRatings().size(), sum);
+    }
+
+    /**
+     * Reads the average from the stored aggregates.
+     *
+     * @return the average rating.
+     */
+    @Benchmark
+    public double storedAggregates() {
+        return withAggregates.getAverageRating();
+    }
+
+    /**
+     * Computes the average from the ratings list.
+     *
+     * @return the average rating.
+     */
+    @Benchmark
+    public double computedFromRatings() {
+        return withoutAggregates.getAverageRating();
+    }
+}
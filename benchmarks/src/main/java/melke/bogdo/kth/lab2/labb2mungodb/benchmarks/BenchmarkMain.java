@@ -0,0 +1,80 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the benchmarks with the regular JMH command line, writing results as JSON so runs on different commits can
+ * be compared.
+ * <p>
+ * Unless {@code -rf} and {@code -rff} are given, results are written to {@code jmh-result-<commit>.json}, named
+ * after the current git commit (or the time of the run outside a git checkout). Without benchmark patterns, all
+ * benchmarks except the {@link EndToEndBenchmark}, which needs a local mongod, are run.
+ * </p>
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args the JMH command line options, e.g. {@code BookMapping -p reviews=100}.
+     * @throws CommandLineOptionException if the options cannot be parsed.
+     * @throws RunnerException            if a benchmark fails.
+     * @throws IOException                if JMH cannot print a requested listing.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(".*").exclude(EndToEndBenchmark.class.getSimpleName());
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result-" + revision() + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+
+    /**
+     * Gets the abbreviated ID of the checked out commit, or the current time if git is not available.
+     */
+    private static String revision() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = output.readLine();
+                if (git.waitFor() == 0 && line != null && !line.isBlank()) {
+                    return line.trim();
+                }
+            }
+        } catch (IOException e) {
+            // Not run from a git checkout
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    }
+}
@@ -0,0 +1,217 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.LocalBookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log.BookLog;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Page;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the book DAO on a {@link BookLog}: the same calls as the {@link EndToEndBenchmark}, so the results can be
+ * compared with {@code BookDAOImpl} on MongoDB, plus rating writes from several threads to show how group commit
+ * shares syncs.
+ * <p>
+ * The catalog is written to a log in a temporary directory, which is then reopened with the {@code sync} setting
+ * under test and deleted after the trial. Run it on the disk the log would live on, since sync times vary widely.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookLogBenchmark {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * The number of books in the catalog.
+     */
+    @Param({"10000"})
+    public int catalogSize;
+
+    /**
+     * The number of embedded reviews, and of embedded ratings, per book.
+     */
+    @Param({"20"})
+    public int reviewsPerBook;
+
+    /**
+     * Whether writes wait until they are synced.
+     */
+    @Param({"true", "false"})
+    public boolean sync;
+
+    private Path directory;
+    private BookLog bookLog;
+    private BookDAO bookDAO;
+    private String[] bookIds;
+    private String[] keywords;
+    private String[] raterIds;
+
+    /**
+     * Writes the catalog to a new log and reopens it.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("book-log-benchmark");
+        SyntheticCatalog catalog = new SyntheticCatalog(7);
+        bookIds = seed(directory, catalog, catalogSize, reviewsPerBook);
+        keywords = new String[64];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = catalog.word();
+        }
+        raterIds = new String[100];
+        for (int i = 0; i < raterIds.length; i++) {
+            raterIds[i] = new ObjectId().toHexString();
+        }
+        bookLog = new BookLog(directory, SEGMENT_BYTES, sync);
+        bookDAO = new LocalBookDAO(bookLog);
+    }
+
+    /**
+     * Closes the log and deletes its directory.
+     *
+     * @throws IOException if the log cannot be closed or deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        if (bookLog != null) {
+            bookLog.close();
+        }
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Reads one book by ID.
+     *
+     * @return the book.
+     */
+    @Benchmark
+    public Book getBookById() {
+        return bookDAO.getBookById(randomBookId());
+    }
+
+    /**
+     * Searches titles with a case-insensitive regex.
+     *
+     * @return the number of matches.
+     */
+    @Benchmark
+    public int searchByTitle() {
+        return bookDAO.searchBooks("title", randomKeyword()).size();
+    }
+
+    /**
+     * Searches titles, authors and genres for a word, most relevant first.
+     *
+     * @return the number of matches.
+     */
+    @Benchmark
+    public int searchByKeyword() {
+        return bookDAO.searchBooks("keyword", randomKeyword()).size();
+    }
+
+    /**
+     * Reads a page of books after a random position in the catalog.
+     *
+     * @return the page.
+     */
+    @Benchmark
+    public Page<Book> booksPage() {
+        return bookDAO.getBooksPage(randomBookId(), PAGE_SIZE);
+    }
+
+    /**
+     * Adds or replaces a rating, appending the whole updated book to the log.
+     */
+    @Benchmark
+    public void addRating() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        bookDAO.addRating(randomBookId(), new Rating(raterIds[random.nextInt(raterIds.length)], 1 + random.nextInt(5)));
+    }
+
+    /**
+     * Adds ratings from eight threads at once; with {@code sync}, concurrent writes share their syncs.
+     */
+    @Benchmark
+    @Threads(8)
+    public void addRatingConcurrently() {
+        addRating();
+    }
+
+    /**
+     * Writes a generated catalog to a new log in a directory, without syncing each write, and closes it.
+     *
+     * @param directory      the log directory.
+     * @param catalog        the catalog generator.
+     * @param catalogSize    the number of books.
+     * @param reviewsPerBook the number of reviews, and of ratings, per book.
+     * @return the IDs of the books.
+     * @throws IOException if the log cannot be written.
+     */
+    static String[] seed(Path directory, SyntheticCatalog catalog, int catalogSize, int reviewsPerBook) throws IOException {
+        String[] bookIds = new String[catalogSize];
+        try (BookLog log = new BookLog(directory, SEGMENT_BYTES, false)) {
+            LocalBookDAO books = new LocalBookDAO(log);
+            for (int i = 0; i < catalogSize; i++) {
+                Book book = catalog.nextBook(reviewsPerBook, reviewsPerBook);
+                bookIds[i] = book.getId();
+                books.putBook(book);
+            }
+        }
+        return bookIds;
+    }
+
+    /**
+     * Deletes a directory with everything in it.
+     *
+     * @param directory the directory, or {@code null} to do nothing.
+     * @throws IOException if a file cannot be deleted.
+     */
+    static void deleteDirectory(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private String randomBookId() {
+        return bookIds[ThreadLocalRandom.current().nextInt(bookIds.length)];
+    }
+
+    private String randomKeyword() {
+        return keywords[ThreadLocalRandom.current().nextInt(keywords.length)];
+    }
+}
@@ -0,0 +1,108 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.LocalBookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log.BookLog;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the book DAO takes to start on an existing {@link BookLog}: replaying and checking every record
+ * to rebuild the ID index, then reading every book to rebuild the search indexes.
+ * <p>
+ * Besides the catalog, the log holds {@code updatesPerBook} superseded versions of each book, as between two
+ * compactions, which recovery has to read but not decode.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BookLogRecoveryBenchmark {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The number of books in the catalog.
+     */
+    @Param({"10000"})
+    public int catalogSize;
+
+    /**
+     * The number of embedded reviews, and of embedded ratings, per book.
+     */
+    @Param({"20"})
+    public int reviewsPerBook;
+
+    /**
+     * The number of superseded versions of each book in the log.
+     */
+    @Param({"0", "4"})
+    public int updatesPerBook;
+
+    private Path directory;
+
+    /**
+     * Writes the catalog and its updates to a new log.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("book-log-recovery-benchmark");
+        String[] bookIds = BookLogBenchmark.seed(directory, new SyntheticCatalog(7), catalogSize, reviewsPerBook);
+        if (updatesPerBook > 0) {
+            Random random = new Random(7);
+            try (BookLog log = new BookLog(directory, SEGMENT_BYTES, false)) {
+                LocalBookDAO books = new LocalBookDAO(log);
+                for (int update = 0; update < updatesPerBook; update++) {
+                    for (String bookId : bookIds) {
+                        books.addRating(bookId, new Rating(new ObjectId().toHexString(), 1 + random.nextInt(5)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the log.
+     *
+     * @throws IOException if the log cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BookLogBenchmark.deleteDirectory(directory);
+    }
+
+    /**
+     * Opens the log and the DAO on it, and closes them again.
+     *
+     * @return the number of recovered books.
+     * @throws IOException if the log cannot be read.
+     */
+    @Benchmark
+    public int recover() throws IOException {
+        try (BookLog log = new BookLog(directory, SEGMENT_BYTES, false)) {
+            return new LocalBookDAO(log).size();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.LazyBook;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.LazyBookCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning the BSON of a book document, as received from the server, into a {@link Book}, and back.
+ * <p>
+ * {@link #documentThenMap()} is the path used before the book codecs: the driver decodes a {@link Document} tree,
+ * which {@link LegacyBookMapping} then copies into the model. The codec benchmarks decode the same bytes directly,
+ * eagerly or into a {@link LazyBook}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookMappingBenchmark {
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    /**
+     * The number of embedded reviews, and of embedded ratings, of the book.
+     */
+    @Param({"0", "100", "10000"})
+    public int reviews;
+
+    private final BookCodec bookCodec = BookCodecs.getBookCodec();
+    private final LazyBookCodec lazyBookCodec = BookCodecs.getLazyBookCodec();
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private Book book;
+    private byte[] bson;
+
+    /**
+     * Generates the book and encodes it once with the book codec.
+     */
+    @Setup
+    public void setUp() {
+        book = new SyntheticCatalog(42).nextBook(reviews, reviews);
+        bson = encode(book);
+    }
+
+    /**
+     * Decodes a {@link Document} and maps it with the legacy mapping.
+     *
+     * @return the mapped book.
+     */
+    @Benchmark
+    public Book documentThenMap() {
+        Document document = documentCodec.decode(reader(), DECODER_CONTEXT);
+        return LegacyBookMapping.mapDocumentToBook(document);
+    }
+
+    /**
+     * Decodes the book with the {@link BookCodec}.
+     *
+     * @return the decoded book.
+     */
+    @Benchmark
+    public Book codecDecode() {
+        return bookCodec.decode(reader(), DECODER_CONTEXT);
+    }
+
+    /**
+     * Decodes a {@link LazyBook} and reads what a result list shows: the title and average rating.
+     *
+     * @return the average rating.
+     */
+    @Benchmark
+    public double lazyCodecDecodeSummary() {
+        LazyBook lazy = lazyBookCodec.decode(reader(), DECODER_CONTEXT);
+        return lazy.getTitle().length() + lazy.getAverageRating();
+    }
+
+    /**
+     * Decodes a {@link LazyBook} and then all of its reviews.
+     *
+     * @return the number of reviews.
+     */
+    @Benchmark
+    public int lazyCodecDecodeReviews() {
+        return lazyBookCodec.decode(reader(), DECODER_CONTEXT).getReviews().size();
+    }
+
+    /**
+     * Encodes the book with the {@link BookCodec}, as {@code addBook} does.
+     *
+     * @return the encoded bytes.
+     */
+    @Benchmark
+    public byte[] codecEncode() {
+        return encode(book);
+    }
+
+    private BsonBinaryReader reader() {
+        return new BsonBinaryReader(ByteBuffer.wrap(bson));
+    }
+
+    private byte[] encode(Book value) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            bookCodec.encode(writer, value, ENCODER_CONTEXT);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,180 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.BookDAOImpl;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.IndexBootstrap;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Page;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the book DAO against a real server: point reads, searches, paging and rating writes on a synthetic
+ * catalog.
+ * <p>
+ * Requires a local mongod. The benchmark connects with the usual {@code bookdb.*} settings, but uses the
+ * {@code bookdb_benchmark} database unless {@code bookdb.database} is set, and replaces its {@code books}
+ * collection with a freshly generated catalog before each trial. The database is dropped afterwards.
+ * The DAO is used without its caches, so every call reaches the server.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * The number of books in the catalog.
+     */
+    @Param({"10000"})
+    public int catalogSize;
+
+    /**
+     * The number of embedded reviews, and of embedded ratings, per book.
+     */
+    @Param({"20"})
+    public int reviewsPerBook;
+
+    private MongoDatabase database;
+    private BookDAO bookDAO;
+    private String[] bookIds;
+    private String[] keywords;
+    private String[] raterIds;
+
+    /**
+     * Connects, generates and inserts the catalog, and creates the indexes.
+     */
+    @Setup
+    public void setUp() {
+        if (System.getProperty("bookdb.database") == null) {
+            System.setProperty("bookdb.database", "bookdb_benchmark");
+        }
+        if (System.getProperty("bookdb.serverSelectionTimeoutMs") == null) {
+            System.setProperty("bookdb.serverSelectionTimeoutMs", "5000");
+        }
+        database = DatabaseConnection.getDatabase();
+        database.runCommand(new Document("ping", 1));
+
+        MongoCollection<Book> books = BookCodecs.getBooksCollection(database);
+        books.drop();
+        SyntheticCatalog catalog = new SyntheticCatalog(7);
+        bookIds = new String[catalogSize];
+        List<Book> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < catalogSize; i++) {
+            Book book = catalog.nextBook(reviewsPerBook, reviewsPerBook);
+            bookIds[i] = book.getId();
+            batch.add(book);
+            if (batch.size() == INSERT_BATCH_SIZE || i == catalogSize - 1) {
+                books.insertMany(batch);
+                batch.clear();
+            }
+        }
+        keywords = new String[64];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = catalog.word();
+        }
+        raterIds = new String[100];
+        for (int i = 0; i < raterIds.length; i++) {
+            raterIds[i] = new ObjectId().toHexString();
+        }
+        IndexBootstrap.run(database);
+        bookDAO = new BookDAOImpl();
+    }
+
+    /**
+     * Drops the benchmark database and closes the connection.
+     */
+    @TearDown
+    public void tearDown() {
+        if (database != null) {
+            database.drop();
+        }
+        DatabaseConnection.closeConnection();
+    }
+
+    /**
+     * Reads one book by ID.
+     *
+     * @return the book.
+     */
+    @Benchmark
+    public Book getBookById() {
+        return bookDAO.getBookById(randomBookId());
+    }
+
+    /**
+     * Searches titles with a case-insensitive regex.
+     *
+     * @return the number of matches.
+     */
+    @Benchmark
+    public int searchByTitle() {
+        return bookDAO.searchBooks("title", randomKeyword()).size();
+    }
+
+    /**
+     * Searches with the text index, most relevant first.
+     *
+     * @return the number of matches.
+     */
+    @Benchmark
+    public int searchByKeyword() {
+        return bookDAO.searchBooks("keyword", randomKeyword()).size();
+    }
+
+    /**
+     * Reads a page of books after a random position in the catalog.
+     *
+     * @return the page.
+     */
+    @Benchmark
+    public Page<Book> booksPage() {
+        return bookDAO.getBooksPage(randomBookId(), PAGE_SIZE);
+    }
+
+    /**
+     * Adds or replaces a rating, recomputing the book's rating aggregates on the server.
+     * Ratings come from a fixed set of users, so the ratings arrays stop growing once every user has rated.
+     */
+    @Benchmark
+    public void addRating() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        bookDAO.addRating(randomBookId(), new Rating(raterIds[random.nextInt(raterIds.length)], 1 + random.nextInt(5)));
+    }
+
+    private String randomBookId() {
+        return bookIds[ThreadLocalRandom.current().nextInt(bookIds.length)];
+    }
+
+    private String randomKeyword() {
+        return keywords[ThreadLocalRandom.current().nextInt(keywords.length)];
+    }
+}
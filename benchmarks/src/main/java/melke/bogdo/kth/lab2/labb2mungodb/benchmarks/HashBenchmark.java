@@ -0,0 +1,61 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures {@link HashUtil#hash(String)} for passwords of typical and long length.
+ * <p>
+ * The info message logged on every call is disabled during the run, since writing it to the console would
+ * measure the terminal rather than the hashing.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    /**
+     * The length of the hashed input.
+     */
+    @Param({"12", "256"})
+    public int length;
+
+    private String input;
+
+    /**
+     * Builds the input and silences the hash logger.
+     */
+    @Setup
+    public void setUp() {
+        Logger.getLogger(HashUtil.class.getName()).setLevel(Level.WARNING);
+        input = "p4ssw0rd!".repeat(length / 9 + 1).substring(0, length);
+    }
+
+    /**
+     * Hashes the input.
+     *
+     * @return the hexadecimal hash.
+     */
+    @Benchmark
+    public String hash() {
+        return HashUtil.hash(input);
+    }
+}
@@ -0,0 +1,91 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.RatingAggregates;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code mapDocumentToBook} mapping that {@code BookDAOImpl} used before books were decoded by the
+ * {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec}, kept as the baseline of the mapping benchmarks.
+ * <p>
+ * The only change is that review dates are read through {@link DocumentSchema#fromStoredDate(Object)}, since
+ * documents now store them as BSON dates.
+ * </p>
+ */
+final class LegacyBookMapping {
+
+    private LegacyBookMapping() {
+    }
+
+    /**
+     * Maps a MongoDB document to a {@link Book} object.
+     *
+     * @param doc the MongoDB document representing a book.
+     * @return the {@link Book} object.
+     */
+    static Book mapDocumentToBook(Document doc) {
+        String id = doc.getObjectId("_id").toString();
+        String title = doc.getString("title");
+        String isbn = doc.getString("isbn");
+
+        Genre genre = null;
+        Document genreDoc = doc.get("genre", Document.class);
+        if (genreDoc != null) {
+            genre = new Genre(genreDoc.getInteger("id"), genreDoc.getString("name"));
+        }
+
+        List<Author> authors = new ArrayList<>();
+        List<Document> authorDocs = doc.getList("authors", Document.class);
+        if (authorDocs != null) {
+            for (Document authorDoc : authorDocs) {
+                authors.add(new Author(
+                        authorDoc.getString("name"),
+                        authorDoc.getString("birthdate"),
+                        authorDoc.getString("user_id")
+                ));
+            }
+        }
+
+        List<Review> reviews = new ArrayList<>();
+        List<Document> reviewDocs = doc.getList("reviews", Document.class);
+        if (reviewDocs != null) {
+            for (Document reviewDoc : reviewDocs) {
+                reviews.add(new Review(
+                        reviewDoc.getString("user_id"),
+                        reviewDoc.getString("review_text"),
+                        DocumentSchema.fromStoredDate(reviewDoc.get("review_date")),
+                        reviewDoc.getString("username")
+                ));
+            }
+        }
+
+        List<Rating> ratings = new ArrayList<>();
+        List<Document> ratingDocs = doc.getList("ratings", Document.class);
+        if (ratingDocs != null) {
+            for (Document ratingDoc : ratingDocs) {
+                ratings.add(new Rating(
+                        ratingDoc.getString("user_id"),
+                        ratingDoc.getInteger("rating")
+                ));
+            }
+        }
+
+        String userId = doc.getString("user_id");
+
+        Book book = new Book(id, title, isbn, genre, authors, reviews, ratings, userId);
+        Number ratingCount = doc.get(RatingAggregates.COUNT, Number.class);
+        Number ratingSum = doc.get(RatingAggregates.SUM, Number.class);
+        if (ratingCount != null && ratingSum != null) {
+            book.setRatingAggregates(ratingCount.intValue(), ratingSum.longValue());
+        }
+        return book;
+    }
+}
@@ -0,0 +1,65 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import com.mongodb.MongoClientSettings;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.BookSearchFilters;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the search filters of {@link BookSearchFilters} and rendering them to BSON, which the driver
+ * does once for every query sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchFilterBenchmark {
+
+    private static final CodecRegistry REGISTRY = MongoClientSettings.getDefaultCodecRegistry();
+
+    /**
+     * The search type.
+     */
+    @Param({"keyword", "title", "author", "genre", "isbn"})
+    public String type;
+
+    /**
+     * The search keyword.
+     */
+    @Param({"winter"})
+    public String keyword;
+
+    /**
+     * Builds and renders the filter for the search type.
+     *
+     * @return the rendered filter.
+     */
+    @Benchmark
+    public BsonDocument forType() {
+        return BookSearchFilters.forType(type, keyword).toBsonDocument(BsonDocument.class, REGISTRY);
+    }
+
+    /**
+     * Builds and renders the regex fallback over all searchable fields.
+     *
+     * @return the rendered filter.
+     */
+    @Benchmark
+    public BsonDocument anyField() {
+        return BookSearchFilters.anyField(keyword).toBsonDocument(BsonDocument.class, REGISTRY);
+    }
+}
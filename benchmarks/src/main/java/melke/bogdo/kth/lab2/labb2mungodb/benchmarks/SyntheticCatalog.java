@@ -0,0 +1,93 @@
+package melke.bogdo.kth.lab2.labb2mungodb.benchmarks;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible books for the benchmarks.
+ * <p>
+ * The same seed always yields the same catalog, so results from different commits are measured on identical data.
+ * </p>
+ */
+public final class SyntheticCatalog {
+
+    private static final String[] GENRES = {"Fantasy", "Science Fiction", "Mystery", "Romance", "History", "Poetry"};
+    private static final String[] WORDS = {"shadow", "river", "crown", "winter", "garden", "engine", "silver",
+            "empire", "letter", "harbor", "forest", "mirror", "storm", "island", "machine", "orchard"};
+    private static final LocalDate FIRST_REVIEW = LocalDate.of(2015, 1, 1);
+
+    private final Random random;
+
+    /**
+     * Constructs a new {@code SyntheticCatalog}.
+     *
+     * @param seed the seed of the generated data.
+     */
+    public SyntheticCatalog(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a book with an ID, two authors, and the given numbers of reviews and ratings.
+     * Rating aggregates are not set, as for a book built by the application before it is stored.
+     *
+     * @param reviews the number of embedded reviews.
+     * @param ratings the number of embedded ratings.
+     * @return the generated {@link Book}.
+     */
+    public Book nextBook(int reviews, int ratings) {
+        int genre = random.nextInt(GENRES.length);
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            authors.add(new Author(capitalize(word()) + " " + capitalize(word()),
+                    (1900 + random.nextInt(100)) + "-01-01", null));
+        }
+
+        List<Review> reviewList = new ArrayList<>(reviews);
+        for (int i = 0; i < reviews; i++) {
+            reviewList.add(new Review(new ObjectId().toHexString(), sentence(12 + random.nextInt(30)),
+                    FIRST_REVIEW.plusDays(random.nextInt(3000)), "reader" + i));
+        }
+        List<Rating> ratingList = new ArrayList<>(ratings);
+        for (int i = 0; i < ratings; i++) {
+            ratingList.add(new Rating(new ObjectId().toHexString(), 1 + random.nextInt(5)));
+        }
+
+        return new Book(new ObjectId().toHexString(), capitalize(sentence(2 + random.nextInt(4))),
+                String.format("978-%010d", Math.abs(random.nextLong() % 10_000_000_000L)),
+                new Genre(genre + 1, GENRES[genre]), authors, reviewList, ratingList, new ObjectId().toHexString());
+    }
+
+    /**
+     * Gets a word that occurs in generated titles and author names, for search keywords.
+     *
+     * @return a word.
+     */
+    public String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private String sentence(int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(word());
+        }
+        return sentence.toString();
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+}
@@ -2,6 +2,7 @@ package melke.bogdo.kth.lab2.labb2mungodb.Controller;
 
 import javafx.concurrent.Task;
 
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
 
 /**
@@ -9,13 +10,18 @@ import java.util.logging.Logger;
  * This class extends {@link Task} and encapsulates a unit of work to be executed in the background,
  * maintaining responsiveness of the UI during long-running operations such as database queries
  * or network communications.
+ * <p>
+ * Cancelling a task does not have to interrupt its thread: work created with a {@link CancellableTaskHandler} is
+ * handed a check it can poll to stop early, so it can finish its current database call and release its resources
+ * normally.
+ * </p>
  *
  * @param <T> the type of the result returned by this task
  */
 public class BackgroundTask<T> extends Task<T> {
 
     private static final Logger logger = Logger.getLogger(BackgroundTask.class.getName());
-    private final TaskHandler<T> taskHandler;
+    private final CancellableTaskHandler<T> taskHandler;
 
     /**
      * Creates a new {@code BackgroundTask} with the specified {@link TaskHandler}.
@@ -24,6 +30,20 @@ public class BackgroundTask<T> extends Task<T> {
      * @throws NullPointerException if {@code taskHandler} is null
      */
     public BackgroundTask(TaskHandler<T> taskHandler) {
+        if (taskHandler == null) {
+            throw new NullPointerException("TaskHandler cannot be null");
+        }
+        this.taskHandler = cancelled -> taskHandler.run();
+    }
+
+    /**
+     * Creates a new {@code BackgroundTask} with the specified {@link CancellableTaskHandler}, which is told when
+     * the task has been cancelled.
+     *
+     * @param taskHandler a functional interface that defines the task to be executed in the background
+     * @throws NullPointerException if {@code taskHandler} is null
+     */
+    public BackgroundTask(CancellableTaskHandler<T> taskHandler) {
         if (taskHandler == null) {
             throw new NullPointerException("TaskHandler cannot be null");
         }
@@ -40,9 +60,11 @@ public class BackgroundTask<T> extends Task<T> {
     @Override
     protected T call() throws Exception {
         try {
-            return taskHandler.run();
+            return taskHandler.run(this::isCancelled);
         } catch (Exception e) {
-            logger.severe("Error during background task execution: " + e.getMessage());
+            if (!isCancelled()) { // A cancelled task may fail as its work is cut short
+                logger.severe("Error during background task execution: " + e.getMessage());
+            }
             throw e; // Rethrow to notify JavaFX about the task failure
         }
     }
@@ -63,4 +85,22 @@ public class BackgroundTask<T> extends Task<T> {
          */
         T run() throws Exception;
     }
+
+    /**
+     * A unit of work that stops early, without being interrupted, once its task is cancelled.
+     *
+     * @param <T> the type of the result returned by this handler
+     */
+    @FunctionalInterface
+    public interface CancellableTaskHandler<T> {
+
+        /**
+         * Executes the operation defined by the handler.
+         *
+         * @param cancelled returns {@code true} once the task has been cancelled; the result is then discarded
+         * @return the result of the operation
+         * @throws Exception if an error occurs during execution
+         */
+        T run(BooleanSupplier cancelled) throws Exception;
+    }
 }
@@ -1,5 +1,6 @@
 package melke.bogdo.kth.lab2.labb2mungodb.Controller;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
@@ -7,8 +8,12 @@ import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.*;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.*;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Controller responsible for managing book-related operations,
@@ -19,13 +24,79 @@ import java.util.logging.Logger;
 public class BookController {
 
     private static final Logger logger = Logger.getLogger(BookController.class.getName());
+    private static final BookSearchIndex searchIndex = new BookSearchIndex(); // Shared by all controllers
+    private static volatile BookChangeSource indexChanges; // Keeps the index up to date once it is built
     private final BookDAO bookDAO;
 
     /**
-     * Constructs a new {@code BookController} with a default implementation of {@link BookDAO}.
+     * Constructs a new {@code BookController} using the shared {@link BookDAO} from the {@link DAOFactory}.
      */
     public BookController() {
-        this.bookDAO = new BookDAOImpl();
+        this.bookDAO = DAOFactory.getBookDAO();
+    }
+
+    /**
+     * Loads the whole catalog into the shared in-memory {@link BookSearchIndex} and keeps it up to date with
+     * changes made by other clients, as reported by the {@link BookChangeStream} or another {@link BookChangeSource}.
+     * When the change stream kept a snapshot of the index from the last run, the catalog is taken from there
+     * instead of the database, and the index is saved again when the stream stops. Intended to be called once at
+     * startup, off the JavaFX Application Thread. Until it completes, and whenever the change source is not live,
+     * searches are answered by the database.
+     */
+    public static void buildSearchIndex() {
+        // Wait for the change stream to fix its start position first, so changes made while the catalog loads are
+        // not lost
+        BookChangeSource changes = DAOFactory.getBookChangeSource();
+        changes.started().join();
+        if (!changes.isLive()) {
+            logger.info("No live book changes; searches are answered by the database");
+            return;
+        }
+        long start = System.nanoTime();
+        List<Book> catalog = changes.addListenerWithCatalog(BookController::applyChangeToIndex);
+        boolean fromSnapshot = catalog != null;
+        if (!fromSnapshot) {
+            catalog = loadCatalog(); // Read after subscribing, so no change is lost in between
+        }
+        searchIndex.load(catalog);
+        changes.setCatalogToSave(() -> searchIndex.isReady() ? searchIndex.getAll() : null);
+        indexChanges = changes;
+        logger.info("Search index built for " + catalog.size() + " books" + (fromSnapshot ? " from the snapshot" : "")
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Re-reads a book into the search index after a write the index cannot mirror itself, such as a new review,
+     * so search results do not show the old book until the change stream reports the write.
+     *
+     * @param bookDAO the DAO to read the book from.
+     * @param bookId  the ID of the changed book.
+     */
+    static void refreshIndexedBook(BookDAO bookDAO, String bookId) {
+        if (searchIndex.get(bookId) == null) {
+            return;
+        }
+        Book book = bookDAO.getBookById(bookId);
+        if (book != null) {
+            searchIndex.add(book);
+        }
+    }
+
+    /**
+     * Subscribes to changes of the book catalog made by any client, e.g. to update an open view incrementally.
+     *
+     * @param onChange receives each {@link BookChangeEvent} on the JavaFX Application Thread.
+     * @return an action that ends the subscription; must be run when the subscriber is discarded.
+     * @throws IllegalArgumentException if {@code onChange} is null.
+     */
+    public Runnable subscribeToChanges(Consumer<BookChangeEvent> onChange) {
+        if (onChange == null) {
+            throw new IllegalArgumentException("Change consumer cannot be null.");
+        }
+        BookChangeListener listener = event -> Platform.runLater(() -> onChange.accept(event));
+        BookChangeSource changes = DAOFactory.getBookChangeSource();
+        changes.addListener(listener);
+        return () -> changes.removeListener(listener);
     }
 
     /**
@@ -37,6 +108,15 @@ public class BookController {
         return FXCollections.observableArrayList(bookDAO.getAllBooks());
     }
 
+    /**
+     * Retrieves a lightweight summary of every book, for lists and pickers that only show titles and IDs.
+     *
+     * @return an {@link ObservableList} containing a {@link BookSummary} for each book.
+     */
+    public ObservableList<BookSummary> getBookSummaries() {
+        return FXCollections.observableArrayList(bookDAO.getBookSummaries());
+    }
+
     /**
      * Adds a new book to the database.
      *
@@ -52,6 +132,7 @@ public class BookController {
         }
         Book newBook = new Book(null, title, isbn, genre, authors, new ArrayList<>(), new ArrayList<>(), SessionManager.getInstance().getCurrentUserId());
         bookDAO.addBook(newBook);
+        searchIndex.add(newBook);
         logger.info("Book added: " + title);
     }
 
@@ -68,11 +149,17 @@ public class BookController {
         }
         Rating newRating = new Rating(SessionManager.getInstance().getCurrentUserId(), rating);
         bookDAO.addRating(bookId, newRating);
+        applyRatingToIndexedBook(bookId, newRating);
         logger.info("Rating added to book ID " + bookId + ": " + rating);
     }
 
     /**
      * Searches for books based on a specific criterion.
+     * <p>
+     * Substring searches on title, author, genre and ISBN are answered by the in-memory
+     * {@link BookSearchIndex} once it has been built, while its change source is live; keyword searches,
+     * searches issued before the index is ready and searches while changes are not reported go to the database.
+     * </p>
      *
      * @param type    the type of search (e.g., Title, Author, Genre).
      * @param keyword the search keyword.
@@ -83,9 +170,68 @@ public class BookController {
         if (type == null || keyword == null || keyword.trim().isEmpty()) {
             throw new IllegalArgumentException("Invalid search parameters.");
         }
+        if (usesSearchIndex(type)) {
+            return searchIndex.search(type, keyword.trim());
+        }
         return bookDAO.searchBooks(type, keyword);
     }
 
+    /**
+     * Searches for books and hands the matches to a consumer in batches as they arrive, for incremental display.
+     * <p>
+     * Searches the {@link BookSearchIndex} can answer are delivered from memory. Other searches stream from the
+     * database with a server-side time limit. Must be called off the JavaFX Application Thread. Once
+     * {@code cancelled} reports {@code true}, the search stops after the current batch and its cursor is closed,
+     * which ends the query on the server. The search is stopped by polling rather than by interrupting the thread,
+     * since the driver cannot kill a cursor from an interrupted thread.
+     * </p>
+     *
+     * @param type          the type of search (e.g., Title, Author, Genre).
+     * @param keyword       the search keyword.
+     * @param batchSize     the maximum number of books per batch.
+     * @param maxTimeMillis the time limit of a database search in milliseconds.
+     * @param cancelled     reports whether the search has been superseded and should stop.
+     * @param batchConsumer receives each batch of matching books, on the calling thread.
+     * @return the number of books delivered.
+     * @throws IllegalArgumentException if the search parameters are invalid.
+     */
+    public int streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis,
+                                 BooleanSupplier cancelled, Consumer<List<Book>> batchConsumer) {
+        if (type == null || keyword == null || keyword.trim().isEmpty() || batchSize <= 0 || cancelled == null
+                || batchConsumer == null) {
+            throw new IllegalArgumentException("Invalid search parameters.");
+        }
+        if (usesSearchIndex(type)) {
+            List<Book> matches = searchIndex.search(type, keyword.trim());
+            for (int start = 0; start < matches.size() && !cancelled.getAsBoolean(); start += batchSize) {
+                batchConsumer.accept(matches.subList(start, Math.min(start + batchSize, matches.size())));
+            }
+            return matches.size();
+        }
+
+        int delivered = 0;
+        Stream<Book> books = bookDAO.streamSearchBooks(type, keyword, batchSize, maxTimeMillis);
+        try {
+            Iterator<Book> iterator = books.iterator();
+            List<Book> batch = new ArrayList<>(batchSize);
+            while (!cancelled.getAsBoolean() && iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    batchConsumer.accept(batch);
+                    delivered += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && !cancelled.getAsBoolean()) {
+                batchConsumer.accept(batch);
+                delivered += batch.size();
+            }
+        } finally {
+            closeUninterrupted(books);
+        }
+        return delivered;
+    }
+
     /**
      * Deletes a book from the database by its ID.
      *
@@ -93,6 +239,73 @@ public class BookController {
      */
     public void deleteBook(String bookId) {
         bookDAO.deleteBook(bookId);
+        searchIndex.remove(bookId);
         logger.info("Book deleted: " + bookId);
     }
+
+    /**
+     * Applies a change reported by the {@link BookChangeSource} to the search index.
+     * Runs on the change stream thread, or on the writing thread for in-memory data.
+     *
+     * @param event the {@link BookChangeEvent} to apply.
+     */
+    private static void applyChangeToIndex(BookChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                if (event.getBook() != null) {
+                    searchIndex.add(event.getBook());
+                }
+                break;
+            case DELETE:
+                searchIndex.remove(event.getBookId());
+                break;
+            default:
+                List<Book> catalog = loadCatalog();
+                searchIndex.replaceAll(catalog);
+                logger.info("Search index reloaded with " + catalog.size() + " books");
+        }
+    }
+
+    /**
+     * Checks whether a search of the given type is answered by the search index: it must be built and kept up to
+     * date by a live change source, or it could be missing changes made by other clients.
+     */
+    private static boolean usesSearchIndex(String type) {
+        BookChangeSource changes = indexChanges;
+        return changes != null && changes.isLive() && searchIndex.isReady() && BookSearchIndex.supports(type);
+    }
+
+    /**
+     * Closes a database stream with the thread's interrupt status cleared, so the driver can check out a connection
+     * to kill the cursor on the server, and restores the status afterwards.
+     */
+    private static void closeUninterrupted(Stream<Book> books) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            books.close();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static List<Book> loadCatalog() {
+        List<Book> catalog = new ArrayList<>();
+        int batchSize = DAOFactory.getSettings().getDefaultBatchSize();
+        DAOFactory.getBookDAO().forEachBook(batchSize, catalog::add); // Streamed, so the catalog is not cached
+        return catalog;
+    }
+
+    /**
+     * Mirrors a stored rating on the indexed copy of the book, so search results show the new average.
+     * Replaces the user's previous rating if there is one.
+     *
+     * @param bookId the ID of the rated book.
+     * @param rating the {@link Rating} that was stored.
+     */
+    private void applyRatingToIndexedBook(String bookId, Rating rating) {
+        searchIndex.update(bookId, indexed -> indexed.applyRating(rating));
+    }
 }
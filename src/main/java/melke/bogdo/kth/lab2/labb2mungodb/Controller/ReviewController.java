@@ -1,11 +1,11 @@
 package melke.bogdo.kth.lab2.labb2mungodb.Controller;
 
-import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.BookDAOImpl;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DAOFactory;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Page;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
-import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.UserDAOImpl;
 import org.bson.types.ObjectId;
 
 import java.time.LocalDate;
@@ -23,12 +23,12 @@ public class ReviewController {
     private final UserDAO userDAO;
 
     /**
-     * Constructs a new {@code ReviewController} with default DAO implementations
-     * for managing reviews and user operations.
+     * Constructs a new {@code ReviewController} using the shared DAOs from the {@link DAOFactory},
+     * so reviews added here invalidate the same book cache that the other controllers read from.
      */
     public ReviewController() {
-        this.bookDAO = new BookDAOImpl();
-        this.userDAO = new UserDAOImpl();
+        this.bookDAO = DAOFactory.getBookDAO();
+        this.userDAO = DAOFactory.getUserDAO();
     }
 
     /**
@@ -56,6 +56,18 @@ public class ReviewController {
 
         Review newReview = new Review(userId, reviewText, LocalDate.now(), user.getUsername());
         bookDAO.addReview(bookId, newReview);
+        BookController.refreshIndexedBook(bookDAO, bookId);
         logger.info("Review added for book ID: " + bookId + " by user ID: " + userId);
     }
+
+    /**
+     * Retrieves one page of the reviews of a book.
+     *
+     * @param bookId            the ID of the book.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @return a {@link Page} of {@link Review} objects.
+     */
+    public Page<Review> getReviewsPage(String bookId, String continuationToken) {
+        return bookDAO.getReviewsPage(bookId, continuationToken);
+    }
 }
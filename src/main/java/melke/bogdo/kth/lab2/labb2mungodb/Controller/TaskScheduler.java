@@ -0,0 +1,183 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Controller;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.WorkerStateEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Runs controller calls for the views as {@link BackgroundTask}s on a dedicated pool of daemon threads,
+ * so the JavaFX Application Thread never blocks on database I/O.
+ * <p>
+ * Results and failures are delivered to callbacks on the JavaFX Application Thread. Tasks submitted under a key
+ * supersede each other: starting a task cancels the still-running task with the same key, and a cancelled task
+ * never calls its callbacks, so a slow, outdated request cannot overwrite the result of a newer one. Tasks without
+ * a key, such as writes, are never cancelled by the scheduler.
+ * </p>
+ * <p>
+ * Cancellation never interrupts the worker thread. With the MongoDB driver, an interrupted thread cannot check out
+ * a pooled connection, so closing a cursor could not kill it on the server, and an interrupt during a read discards
+ * the connection. Work that should stop early takes a {@link BackgroundTask.CancellableTaskHandler} and polls it
+ * instead, then closes its cursors normally.
+ * </p>
+ * <p>
+ * All methods must be called on the JavaFX Application Thread.
+ * </p>
+ */
+public final class TaskScheduler {
+
+    private static final Logger logger = Logger.getLogger(TaskScheduler.class.getName());
+    private static final int THREADS = 4;
+    private static final TaskScheduler instance = new TaskScheduler();
+
+    private final ExecutorService executor;
+    private final Map<String, BackgroundTask<?>> latestByKey = new HashMap<>();
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+    private int activeTasks;
+
+    private TaskScheduler() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "ui-task-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the application-wide scheduler.
+     *
+     * @return the {@code TaskScheduler} instance.
+     */
+    public static TaskScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Indicates whether any task is running, for binding a progress indicator.
+     *
+     * @return a read-only property that is {@code true} while at least one task runs.
+     */
+    public ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /**
+     * Runs work in the background without superseding other tasks.
+     *
+     * @param work      the work to run off the JavaFX Application Thread.
+     * @param onSuccess receives the result on the JavaFX Application Thread.
+     * @param onFailure receives the exception on the JavaFX Application Thread.
+     * @param <T>       the result type.
+     * @return the started {@link BackgroundTask}.
+     */
+    public <T> BackgroundTask<T> submit(BackgroundTask.TaskHandler<T> work, Consumer<T> onSuccess,
+                                        Consumer<Throwable> onFailure) {
+        return start(null, new BackgroundTask<>(work), onSuccess, onFailure);
+    }
+
+    /**
+     * Runs work in the background, cancelling the running task previously submitted with the same key.
+     *
+     * @param key       identifies the request, e.g. "book-search"; newer tasks with the same key supersede older ones.
+     * @param work      the work to run off the JavaFX Application Thread.
+     * @param onSuccess receives the result on the JavaFX Application Thread, unless the task was superseded.
+     * @param onFailure receives the exception on the JavaFX Application Thread, unless the task was superseded.
+     * @param <T>       the result type.
+     * @return the started {@link BackgroundTask}.
+     * @throws IllegalArgumentException if {@code key} is null.
+     */
+    public <T> BackgroundTask<T> submitLatest(String key, BackgroundTask.TaskHandler<T> work, Consumer<T> onSuccess,
+                                              Consumer<Throwable> onFailure) {
+        if (key == null) {
+            throw new IllegalArgumentException("Task key cannot be null.");
+        }
+        cancel(key);
+        return start(key, new BackgroundTask<>(work), onSuccess, onFailure);
+    }
+
+    /**
+     * Runs work in the background, cancelling the running task previously submitted with the same key.
+     * The work is told when it is superseded, so it can stop early.
+     *
+     * @param key       identifies the request, e.g. "book-search"; newer tasks with the same key supersede older ones.
+     * @param work      the work to run off the JavaFX Application Thread.
+     * @param onSuccess receives the result on the JavaFX Application Thread, unless the task was superseded.
+     * @param onFailure receives the exception on the JavaFX Application Thread, unless the task was superseded.
+     * @param <T>       the result type.
+     * @return the started {@link BackgroundTask}.
+     * @throws IllegalArgumentException if {@code key} is null.
+     */
+    public <T> BackgroundTask<T> submitLatest(String key, BackgroundTask.CancellableTaskHandler<T> work,
+                                              Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        if (key == null) {
+            throw new IllegalArgumentException("Task key cannot be null.");
+        }
+        cancel(key);
+        return start(key, new BackgroundTask<>(work), onSuccess, onFailure);
+    }
+
+    /**
+     * Cancels the running task submitted with a key. Its thread is not interrupted; the task's callbacks are
+     * no longer called, and work that polls for cancellation stops at its next check.
+     *
+     * @param key the key of the task.
+     */
+    public void cancel(String key) {
+        checkFxThread();
+        BackgroundTask<?> previous = latestByKey.remove(key);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private <T> BackgroundTask<T> start(String key, BackgroundTask<T> task, Consumer<T> onSuccess,
+                                        Consumer<Throwable> onFailure) {
+        checkFxThread();
+        task.setOnSucceeded(e -> {
+            finish(key, task);
+            if (onSuccess != null) {
+                onSuccess.accept(task.getValue());
+            }
+        });
+        task.setOnFailed(e -> {
+            finish(key, task);
+            if (onFailure != null) {
+                onFailure.accept(task.getException());
+            } else {
+                logger.warning("Background task failed: " + task.getException());
+            }
+        });
+        task.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, e -> finish(key, task));
+
+        if (key != null) {
+            latestByKey.put(key, task);
+        }
+        activeTasks++;
+        busy.set(true);
+        executor.execute(task);
+        return task;
+    }
+
+    private void finish(String key, BackgroundTask<?> task) {
+        if (key != null && latestByKey.get(key) == task) {
+            latestByKey.remove(key);
+        }
+        activeTasks--;
+        busy.set(activeTasks > 0);
+    }
+
+    private static void checkFxThread() {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("TaskScheduler must be used from the JavaFX Application Thread.");
+        }
+    }
+}
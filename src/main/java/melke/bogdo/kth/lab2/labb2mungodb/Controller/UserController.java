@@ -1,7 +1,7 @@
 package melke.bogdo.kth.lab2.labb2mungodb.Controller;
 
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DAOFactory;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
-import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.UserDAOImpl;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.SessionManager;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
 
@@ -15,15 +15,16 @@ public class UserController {
     private final UserDAO userDAO;
 
     /**
-     * Constructs a new {@code UserController} with a default implementation of {@link UserDAO}.
+     * Constructs a new {@code UserController} using the shared {@link UserDAO} from the {@link DAOFactory}.
      */
     public UserController() {
-        this.userDAO = new UserDAOImpl();
+        this.userDAO = DAOFactory.getUserDAO();
     }
 
     /**
      * Validates the provided username and password hash.
      * If the credentials are valid, logs the user in by associating the user object with the current session.
+     * The check and the user lookup are a single database query.
      *
      * @param username     the username provided by the user.
      * @param passwordHash the hashed password corresponding to the username.
@@ -35,15 +36,11 @@ public class UserController {
             throw new IllegalArgumentException("Username and password hash cannot be null or empty.");
         }
 
-        boolean isValid = userDAO.validateUser(username, passwordHash);
-        if (isValid) {
-            // Fetch the full user object
-            User user = userDAO.getUserByUsername(username);
-            if (user != null) {
-                SessionManager.getInstance().login(user); // Set the user in the session
-            }
+        User user = userDAO.authenticate(username, passwordHash);
+        if (user != null) {
+            SessionManager.getInstance().login(user); // Set the user in the session
         }
-        return isValid;
+        return user != null;
     }
 
 }
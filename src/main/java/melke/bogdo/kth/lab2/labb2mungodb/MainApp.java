@@ -2,6 +2,8 @@ package melke.bogdo.kth.lab2.labb2mungodb;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.BookController;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DAOFactory;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
 import melke.bogdo.kth.lab2.labb2mungodb.View.SceneManager;
 
@@ -12,6 +14,8 @@ import melke.bogdo.kth.lab2.labb2mungodb.View.SceneManager;
  */
 public class MainApp extends Application {
 
+    private static final long STOP_TIMEOUT_MILLIS = 10_000; // Room for the change stream to save the catalog
+
     /**
      * The main entry point for the JavaFX application.
      * Initializes the {@link SceneManager} and shows the main menu.
@@ -23,13 +27,36 @@ public class MainApp extends Application {
         SceneManager.initialize(primaryStage);
         SceneManager.showMainMenu();
 
+        // Build the in-memory search index without blocking the UI
+        Thread indexBuilder = new Thread(BookController::buildSearchIndex, "search-index-builder");
+        indexBuilder.setDaemon(true);
+        indexBuilder.start();
+
         // shutdown hook to close the database connection on application exit
         primaryStage.setOnCloseRequest(event -> {
             System.out.println("Application is closing. Releasing resources...");
-            DatabaseConnection.closeConnection(); // Close the MongoDB connection
+            DAOFactory.shutdown(); // Stop the change stream and close the book log
+            if (DAOFactory.usesDatabase()) {
+                // Wait for the change stream off the JavaFX thread; not a daemon, so the JVM waits for the close
+                Thread closer = new Thread(MainApp::closeDatabase, "database-closer");
+                closer.start();
+            }
         });
     }
 
+    /**
+     * Closes the MongoDB connection once the change stream has released its cursor and saved the catalog snapshot,
+     * or after a timeout.
+     */
+    private static void closeDatabase() {
+        try {
+            DAOFactory.awaitShutdown(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        DatabaseConnection.closeConnection(); // Close the MongoDB connection
+    }
+
     /**
      * The main method for launching the JavaFX application.
      *
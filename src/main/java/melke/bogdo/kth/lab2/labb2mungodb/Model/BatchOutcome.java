@@ -0,0 +1,95 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+/**
+ * Describes what happened to one item of a batch write.
+ * Outcomes are returned in the same order as the submitted items.
+ */
+public class BatchOutcome {
+
+    /**
+     * The possible results for a single batch item.
+     */
+    public enum Status {
+        /** The item was written. */
+        APPLIED,
+        /** A later item in the same batch, by the same user for the same book, replaced this one. */
+        SUPERSEDED,
+        /** The item was rejected before reaching the database. */
+        INVALID,
+        /** No book with the given ID exists. */
+        BOOK_NOT_FOUND,
+        /** The database rejected the write. */
+        FAILED
+    }
+
+    private final int index;
+    private final String bookId;
+    private final Status status;
+    private final String message;
+
+    /**
+     * Constructs a new {@code BatchOutcome} with the specified details.
+     *
+     * @param index   the position of the item in the submitted batch.
+     * @param bookId  the ID of the book the item targeted.
+     * @param status  the {@link Status} of the item.
+     * @param message a description of the problem, or {@code null} if the item was applied.
+     */
+    public BatchOutcome(int index, String bookId, Status status, String message) {
+        this.index = index;
+        this.bookId = bookId;
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * Gets the position of the item in the submitted batch.
+     *
+     * @return the zero-based index.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the ID of the book the item targeted.
+     *
+     * @return the book ID.
+     */
+    public String getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Gets the result of the item.
+     *
+     * @return the {@link Status}.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets a description of why the item was not applied.
+     *
+     * @return the message, or {@code null} if the item was applied.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns a string representation of the {@code BatchOutcome} object.
+     *
+     * @return a string containing the index, book ID, status and message.
+     */
+    @Override
+    public String toString() {
+        return "BatchOutcome{" +
+                "index=" + index +
+                ", bookId='" + bookId + '\'' +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
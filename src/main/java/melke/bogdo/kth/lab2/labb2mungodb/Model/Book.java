@@ -1,10 +1,15 @@
 package melke.bogdo.kth.lab2.labb2mungodb.Model;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a book stored in the database.
  * A book includes details such as title, ISBN, genre, authors, reviews, ratings, and the user who added it.
+ * <p>
+ * The embedded lists are only accessed through their getters and setters, also within this class,
+ * so subclasses may load them on demand.
+ * </p>
  */
 public class Book {
     private String id; // MongoDB ObjectId as String
@@ -15,6 +20,8 @@ public class Book {
     private List<Review> reviews; // Embedded reviews
     private List<Rating> ratings; // Embedded ratings
     private String userId; // User who added the book
+    private int ratingCount = -1; // Stored number of ratings, -1 when not known
+    private long ratingSum; // Stored sum of all rating values
 
     /**
      * Constructs a new {@code Book} object with the specified details.
@@ -163,6 +170,91 @@ public class Book {
      */
     public void setRatings(List<Rating> ratings) {
         this.ratings = ratings;
+        this.ratingCount = -1; // Stored aggregates no longer describe the new list
+    }
+
+    /**
+     * Sets the precomputed rating aggregates stored with the book.
+     * When set, {@link #getAverageRating()} uses them instead of iterating over the ratings.
+     *
+     * @param ratingCount the number of ratings.
+     * @param ratingSum   the sum of all rating values.
+     */
+    public void setRatingAggregates(int ratingCount, long ratingSum) {
+        this.ratingCount = ratingCount;
+        this.ratingSum = ratingSum;
+    }
+
+    /**
+     * Gets the number of ratings of the book.
+     *
+     * @return the stored rating count, or the size of the ratings list if no aggregates are stored.
+     */
+    public int getRatingCount() {
+        if (ratingCount >= 0) {
+            return ratingCount;
+        }
+        List<Rating> ratings = getRatings();
+        return ratings != null ? ratings.size() : 0;
+    }
+
+    /**
+     * Adds a rating to the book, replacing any earlier rating by the same user,
+     * and keeps the stored aggregates in step.
+     *
+     * @param rating the {@link Rating} to apply.
+     */
+    public void applyRating(Rating rating) {
+        List<Rating> ratings = getRatings();
+        List<Rating> updated = ratings != null ? new ArrayList<>(ratings) : new ArrayList<>();
+        int count = getRatingCount();
+        long sum = ratingCount >= 0 ? ratingSum : updated.stream().mapToLong(Rating::getRating).sum();
+
+        for (int i = 0; i < updated.size(); i++) {
+            Rating existing = updated.get(i);
+            if (existing.getUserId() != null && existing.getUserId().equals(rating.getUserId())) {
+                sum -= existing.getRating();
+                count--;
+                updated.remove(i);
+                break;
+            }
+        }
+        updated.add(rating);
+        setRatings(updated);
+        setRatingAggregates(count + 1, sum + rating.getRating());
+    }
+
+    /**
+     * Copies the book with its lists and embedded objects, keeping the stored rating aggregates, so neither the
+     * book nor the copy can be changed through the other.
+     *
+     * @return a new {@code Book} with the same content.
+     */
+    public Book copy() {
+        List<Author> authorsCopy = new ArrayList<>();
+        if (getAuthors() != null) {
+            for (Author author : getAuthors()) {
+                authorsCopy.add(new Author(author.getName(), author.getBirthdate(), author.getUserId()));
+            }
+        }
+        List<Review> reviewsCopy = new ArrayList<>();
+        if (getReviews() != null) {
+            for (Review review : getReviews()) {
+                reviewsCopy.add(new Review(review.getUserId(), review.getReviewText(), review.getReviewDate(),
+                        review.getUsername()));
+            }
+        }
+        List<Rating> ratingsCopy = new ArrayList<>();
+        if (getRatings() != null) {
+            for (Rating rating : getRatings()) {
+                ratingsCopy.add(new Rating(rating.getUserId(), rating.getRating()));
+            }
+        }
+        Genre genreCopy = genre != null ? new Genre(genre.getId(), genre.getName()) : null;
+        Book copy = new Book(id, title, isbn, genreCopy, authorsCopy, reviewsCopy, ratingsCopy, userId);
+        copy.ratingCount = ratingCount;
+        copy.ratingSum = ratingSum;
+        return copy;
     }
 
     /**
@@ -185,10 +277,15 @@ public class Book {
 
     /**
      * Calculates the average rating for the book.
+     * Uses the stored aggregates when available, so the ratings are only iterated for books without them.
      *
      * @return the average rating as a {@code double}, or {@code 0.0} if there are no ratings.
      */
     public double getAverageRating() {
+        if (ratingCount >= 0) {
+            return ratingCount == 0 ? 0.0 : (double) ratingSum / ratingCount;
+        }
+        List<Rating> ratings = getRatings();
         if (ratings == null || ratings.isEmpty()) {
             return 0.0;
         }
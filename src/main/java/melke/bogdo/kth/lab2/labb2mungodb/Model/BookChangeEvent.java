@@ -0,0 +1,88 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+/**
+ * Describes a change to the book catalog made by any client, as reported by the database.
+ * <p>
+ * Inserts and updates carry the book as it was stored just after the change, when it could still be read.
+ * A {@link Type#RELOAD} event means individual changes were lost, for example because the collection was dropped
+ * or the stream could not resume; holders of catalog data should then reload it completely.
+ * </p>
+ */
+public class BookChangeEvent {
+
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        /** A book was added. */
+        INSERT,
+        /** A book was modified or replaced, e.g. rated or reviewed. */
+        UPDATE,
+        /** A book was deleted. */
+        DELETE,
+        /** Changes may have been missed; all catalog data must be reloaded. */
+        RELOAD
+    }
+
+    private final Type type;
+    private final String bookId;
+    private final Book book;
+
+    /**
+     * Constructs a new {@code BookChangeEvent}.
+     *
+     * @param type   the kind of change.
+     * @param bookId the ID of the changed book, or {@code null} for {@link Type#RELOAD}.
+     * @param book   the book after the change, or {@code null} if it was deleted or is unknown.
+     * @throws IllegalArgumentException if {@code type} is null, or the ID is missing for a single-book change.
+     */
+    public BookChangeEvent(Type type, String bookId, Book book) {
+        if (type == null || (type != Type.RELOAD && bookId == null)) {
+            throw new IllegalArgumentException("A change type and, for single-book changes, a book ID must be provided.");
+        }
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+
+    /**
+     * Creates an event requesting a full reload.
+     *
+     * @return a {@link Type#RELOAD} event.
+     */
+    public static BookChangeEvent reload() {
+        return new BookChangeEvent(Type.RELOAD, null, null);
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return the {@link Type}.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the changed book.
+     *
+     * @return the book ID, or {@code null} for {@link Type#RELOAD}.
+     */
+    public String getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Gets the book as stored after the change. Shared between all subscribers; must not be modified.
+     *
+     * @return the {@link Book}, or {@code null} for deletes, reloads, and updates of books deleted since.
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangeEvent{" + type + (bookId != null ? ", bookId=" + bookId : "") + "}";
+    }
+}
@@ -0,0 +1,505 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory trigram inverted index over the book catalog.
+ * <p>
+ * Every book gets an internal ordinal. For each searchable field (title, author names, genre name and ISBN)
+ * the index keeps the lower-cased field value per ordinal and a posting list of ordinals for every trigram
+ * occurring in that value. A substring query is answered by intersecting the posting lists of the query's
+ * trigrams and verifying the remaining candidates, so no full scan of the catalog is needed.
+ * Queries shorter than three characters fall back to scanning the stored field values.
+ * </p>
+ * <p>
+ * Removed books leave tombstones in the posting lists; the index rebuilds itself once tombstones
+ * outnumber live books. All operations are thread-safe.
+ * </p>
+ * <p>
+ * The indexed books are never shared: books passed to {@link #add(Book)} are copied, books passed to
+ * {@link #load(Collection)} and {@link #replaceAll(Collection)} are taken over and must not be changed by the caller,
+ * and books handed out are copies. Indexed books are changed only through {@link #update(String, Consumer)}.
+ * </p>
+ */
+public class BookSearchIndex {
+
+    private static final String[] FIELDS = {"title", "author", "genre", "isbn"};
+    private static final char VALUE_SEPARATOR = '\u0000'; // Separates multiple author names in one value
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_TOMBSTONES_FOR_REBUILD = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinalsById = new HashMap<>();
+    private final Set<String> removedBeforeLoad = new HashSet<>();
+    private final FieldIndex[] fieldIndexes = new FieldIndex[FIELDS.length];
+    private Book[] books = new Book[INITIAL_CAPACITY]; // Ordinal -> book, null for removed books
+    private int nextOrdinal;
+    private int tombstones;
+    private volatile boolean ready;
+
+    /**
+     * Constructs an empty {@code BookSearchIndex}.
+     * The index answers queries only after {@link #load(Collection)} has been called.
+     */
+    public BookSearchIndex() {
+        for (int i = 0; i < FIELDS.length; i++) {
+            fieldIndexes[i] = new FieldIndex();
+        }
+    }
+
+    /**
+     * Loads the initial catalog into the index and marks it as ready.
+     * <p>
+     * Books added through {@link #add(Book)} while the catalog was being fetched are kept,
+     * and books removed in the meantime are not re-added. Does nothing if the index was filled by
+     * {@link #replaceAll(Collection)} in the meantime, with a newer catalog.
+     * </p>
+     *
+     * @param catalog the books to index.
+     */
+    public void load(Collection<Book> catalog) {
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                return;
+            }
+            for (Book book : catalog) {
+                if (book != null && book.getId() != null
+                        && !ordinalsById.containsKey(book.getId()) && !removedBeforeLoad.contains(book.getId())) {
+                    insert(book);
+                }
+            }
+            removedBeforeLoad.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole content of the index with a freshly loaded catalog and marks it as ready.
+     * Used when individual changes may have been missed.
+     *
+     * @param catalog the books to index.
+     */
+    public void replaceAll(Collection<Book> catalog) {
+        lock.writeLock().lock();
+        try {
+            ordinalsById.clear();
+            removedBeforeLoad.clear();
+            books = new Book[Math.max(INITIAL_CAPACITY, catalog.size() * 2)];
+            nextOrdinal = 0;
+            tombstones = 0;
+            for (int i = 0; i < FIELDS.length; i++) {
+                fieldIndexes[i] = new FieldIndex();
+            }
+            for (Book book : catalog) {
+                if (book != null && book.getId() != null && !ordinalsById.containsKey(book.getId())) {
+                    insert(book);
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the initial catalog has been loaded.
+     *
+     * @return {@code true} if the index can answer queries, {@code false} otherwise.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Copies all indexed books, e.g. to save them.
+     *
+     * @return a {@link List} of copies of the indexed books, in insertion order.
+     */
+    public List<Book> getAll() {
+        lock.readLock().lock();
+        try {
+            List<Book> all = new ArrayList<>(ordinalsById.size());
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                if (books[ordinal] != null) {
+                    all.add(books[ordinal].copy());
+                }
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a copy of a book to the index, replacing any previously indexed version with the same ID.
+     *
+     * @param book the {@link Book} to index; must have an ID.
+     * @throws IllegalArgumentException if {@code book} or its ID is null.
+     */
+    public void add(Book book) {
+        if (book == null || book.getId() == null) {
+            throw new IllegalArgumentException("Only books with an ID can be indexed.");
+        }
+        Book copy = book.copy();
+        lock.writeLock().lock();
+        try {
+            removeOrdinal(copy.getId());
+            insert(copy);
+            rebuildIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes an indexed book and reindexes it. Readers see either the old or the changed book, never a book
+     * that is being changed.
+     *
+     * @param bookId the ID of the book to change.
+     * @param change applied to a copy of the indexed book, which then replaces it.
+     * @return {@code true} if the book was indexed and has been changed, {@code false} otherwise.
+     * @throws IllegalArgumentException if {@code change} is null.
+     */
+    public boolean update(String bookId, Consumer<Book> change) {
+        if (change == null) {
+            throw new IllegalArgumentException("Change cannot be null.");
+        }
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalsById.get(bookId);
+            if (ordinal == null) {
+                return false;
+            }
+            Book changed = books[ordinal].copy();
+            change.accept(changed);
+            removeOrdinal(bookId);
+            insert(changed);
+            rebuildIfFragmented();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param bookId the ID of the book to remove.
+     */
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                removedBeforeLoad.add(bookId);
+            }
+            removeOrdinal(bookId);
+            rebuildIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves an indexed book by its ID.
+     *
+     * @param bookId the ID of the book.
+     * @return a copy of the indexed {@link Book}, or {@code null} if it is not in the index.
+     */
+    public Book get(String bookId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinalsById.get(bookId);
+            return ordinal != null ? books[ordinal].copy() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all books whose field of the given type contains the keyword, ignoring case.
+     *
+     * @param type    the field to search ("title", "author", "genre" or "isbn"), case-insensitive.
+     * @param keyword the substring to look for.
+     * @return a {@link List} of copies of the matching books, in insertion order.
+     * @throws IllegalArgumentException if {@code type} is not a searchable field or {@code keyword} is empty.
+     * @throws IllegalStateException    if the index has not been loaded yet.
+     */
+    public List<Book> search(String type, String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            throw new IllegalArgumentException("Search keyword must be provided.");
+        }
+        int field = fieldOf(type);
+        if (!ready) {
+            throw new IllegalStateException("Search index has not been loaded yet.");
+        }
+        String query = normalize(keyword);
+
+        lock.readLock().lock();
+        try {
+            FieldIndex index = fieldIndexes[field];
+            List<Book> results = new ArrayList<>();
+            if (query.length() < 3) {
+                for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                    addIfMatches(results, index, ordinal, query);
+                }
+                return results;
+            }
+
+            int[] candidates = index.candidates(query);
+            for (int ordinal : candidates) {
+                addIfMatches(results, index, ordinal, query);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the given search type is answered by this index.
+     *
+     * @param type the search type.
+     * @return {@code true} if {@code type} names an indexed field, {@code false} otherwise.
+     */
+    public static boolean supports(String type) {
+        if (type == null) {
+            return false;
+        }
+        for (String field : FIELDS) {
+            if (field.equalsIgnoreCase(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addIfMatches(List<Book> results, FieldIndex index, int ordinal, String query) {
+        Book book = books[ordinal];
+        String value = index.values[ordinal];
+        if (book != null && value != null && value.contains(query)) {
+            results.add(book.copy());
+        }
+    }
+
+    private void insert(Book book) {
+        int ordinal = nextOrdinal++;
+        if (ordinal == books.length) {
+            books = Arrays.copyOf(books, books.length * 2);
+        }
+        books[ordinal] = book;
+        ordinalsById.put(book.getId(), ordinal);
+        for (int i = 0; i < FIELDS.length; i++) {
+            fieldIndexes[i].add(ordinal, normalize(fieldValue(book, i)));
+        }
+    }
+
+    private void removeOrdinal(String bookId) {
+        Integer ordinal = ordinalsById.remove(bookId);
+        if (ordinal != null) {
+            books[ordinal] = null;
+            for (FieldIndex index : fieldIndexes) {
+                index.values[ordinal] = null;
+            }
+            tombstones++;
+        }
+    }
+
+    /**
+     * Rebuilds all structures from the live books once tombstones dominate the posting lists.
+     */
+    private void rebuildIfFragmented() {
+        if (tombstones < MIN_TOMBSTONES_FOR_REBUILD || tombstones < ordinalsById.size()) {
+            return;
+        }
+        Book[] live = new Book[ordinalsById.size()];
+        int count = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (books[ordinal] != null) {
+                live[count++] = books[ordinal];
+            }
+        }
+        ordinalsById.clear();
+        books = new Book[Math.max(INITIAL_CAPACITY, live.length * 2)];
+        nextOrdinal = 0;
+        tombstones = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            fieldIndexes[i] = new FieldIndex();
+        }
+        for (Book book : live) {
+            insert(book);
+        }
+    }
+
+    private static int fieldOf(String type) {
+        for (int i = 0; type != null && i < FIELDS.length; i++) {
+            if (FIELDS[i].equalsIgnoreCase(type)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid search type: " + type);
+    }
+
+    private static String fieldValue(Book book, int field) {
+        switch (FIELDS[field]) {
+            case "title":
+                return book.getTitle();
+            case "author":
+                if (book.getAuthors() == null || book.getAuthors().isEmpty()) {
+                    return null;
+                }
+                StringBuilder names = new StringBuilder();
+                for (Author author : book.getAuthors()) {
+                    if (author != null && author.getName() != null) {
+                        names.append(author.getName()).append(VALUE_SEPARATOR);
+                    }
+                }
+                return names.toString();
+            case "genre":
+                return book.getGenre() != null ? book.getGenre().getName() : null;
+            default:
+                return book.getIsbn();
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+
+    /**
+     * Per-field storage: the normalized value of each ordinal and the trigram posting lists.
+     */
+    private static final class FieldIndex {
+
+        private final Map<Long, PostingList> postings = new HashMap<>();
+        private String[] values = new String[INITIAL_CAPACITY];
+
+        private void add(int ordinal, String value) {
+            if (ordinal >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, ordinal + 1));
+            }
+            values[ordinal] = value;
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i + 3 <= value.length(); i++) {
+                // Ordinals only grow, so each posting list stays sorted; skip repeats within one value
+                postings.computeIfAbsent(trigram(value, i), key -> new PostingList()).appendIfLast(ordinal);
+            }
+        }
+
+        /**
+         * Intersects the posting lists of all trigrams of the query, smallest list first.
+         */
+        private int[] candidates(String query) {
+            List<PostingList> lists = new ArrayList<>();
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                long key = trigram(query, i);
+                if (!seen.add(key)) {
+                    continue;
+                }
+                PostingList list = postings.get(key);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+            int[] result = Arrays.copyOf(lists.get(0).ordinals, lists.get(0).size);
+            int resultSize = result.length;
+            for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+                resultSize = intersect(result, resultSize, lists.get(l));
+            }
+            return Arrays.copyOf(result, resultSize);
+        }
+
+        /**
+         * Intersects {@code result[0..size)} with the posting list in place and returns the new size.
+         * When the candidates are far fewer than the list entries, each candidate is located by
+         * galloping search instead of a linear merge.
+         */
+        private static int intersect(int[] result, int size, PostingList list) {
+            int[] other = list.ordinals;
+            int out = 0;
+            if ((long) size * 16 < list.size) {
+                int from = 0;
+                for (int i = 0; i < size && from < list.size; i++) {
+                    from = gallop(other, from, list.size, result[i]);
+                    if (from < list.size && other[from] == result[i]) {
+                        result[out++] = result[i];
+                    }
+                }
+                return out;
+            }
+
+            int i = 0;
+            int j = 0;
+            while (i < size && j < list.size) {
+                if (result[i] < other[j]) {
+                    i++;
+                } else if (result[i] > other[j]) {
+                    j++;
+                } else {
+                    result[out++] = result[i];
+                    i++;
+                    j++;
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Returns the first index in {@code sorted[from..to)} whose value is not less than {@code target}.
+         */
+        private static int gallop(int[] sorted, int from, int to, int target) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < to && sorted[high] < target) {
+                low = high + 1;
+                high = from + step;
+                step <<= 1;
+            }
+            high = Math.min(high, to);
+            int index = Arrays.binarySearch(sorted, low, high, target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * A growable, sorted list of primitive ordinals.
+     */
+    private static final class PostingList {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private void appendIfLast(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+}
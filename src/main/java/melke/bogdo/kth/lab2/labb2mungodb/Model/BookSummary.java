@@ -0,0 +1,92 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+/**
+ * Represents a lightweight, read-only view of a book for lists and pickers.
+ * A summary carries only the identifying fields and the average rating, without authors, reviews or ratings.
+ */
+public class BookSummary {
+
+    private final String id; // MongoDB ObjectId as String
+    private final String title;
+    private final String isbn;
+    private final String genreName;
+    private final double averageRating;
+
+    /**
+     * Constructs a new {@code BookSummary} object with the specified details.
+     *
+     * @param id            the unique identifier of the book (MongoDB ObjectId as a String).
+     * @param title         the title of the book.
+     * @param isbn          the ISBN of the book.
+     * @param genreName     the name of the book's genre, or {@code null} if it has none.
+     * @param averageRating the average rating of the book, or {@code 0.0} if it has no ratings.
+     */
+    public BookSummary(String id, String title, String isbn, String genreName, double averageRating) {
+        this.id = id;
+        this.title = title;
+        this.isbn = isbn;
+        this.genreName = genreName;
+        this.averageRating = averageRating;
+    }
+
+    /**
+     * Gets the unique identifier of the book.
+     *
+     * @return the book's unique identifier (MongoDB ObjectId as a String).
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the title of the book.
+     *
+     * @return the book's title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the ISBN of the book.
+     *
+     * @return the book's ISBN.
+     */
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * Gets the name of the book's genre.
+     *
+     * @return the genre name, or {@code null} if the book has no genre.
+     */
+    public String getGenreName() {
+        return genreName;
+    }
+
+    /**
+     * Gets the average rating of the book.
+     *
+     * @return the average rating, or {@code 0.0} if the book has no ratings.
+     */
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    /**
+     * Returns a string representation of the {@code BookSummary} object.
+     *
+     * @return a string containing the book's ID, title, ISBN, genre name and average rating.
+     */
+    @Override
+    public String toString() {
+        return "BookSummary{" +
+                "id='" + id + '\'' +
+                ", title='" + title + '\'' +
+                ", isbn='" + isbn + '\'' +
+                ", genreName='" + genreName + '\'' +
+                ", averageRating=" + averageRating +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+/**
+ * Pairs an embedded entity, such as a {@link Rating} or {@link Review}, with the ID of the book it belongs to.
+ * Used to submit many ratings or reviews in one batch.
+ *
+ * @param <T> the type of the embedded entity
+ */
+public class BookUpdate<T> {
+
+    private final String bookId;
+    private final T payload;
+
+    /**
+     * Constructs a new {@code BookUpdate} with the specified book ID and entity.
+     *
+     * @param bookId  the unique ID of the book (MongoDB ObjectId as a String).
+     * @param payload the entity to add to or update on the book.
+     */
+    public BookUpdate(String bookId, T payload) {
+        this.bookId = bookId;
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the ID of the book this update applies to.
+     *
+     * @return the book ID.
+     */
+    public String getBookId() {
+        return bookId;
+    }
+
+    /**
+     * Gets the entity to add to or update on the book.
+     *
+     * @return the payload.
+     */
+    public T getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns a string representation of the {@code BookUpdate} object.
+     *
+     * @return a string containing the book ID and payload.
+     */
+    @Override
+    public String toString() {
+        return "BookUpdate{" +
+                "bookId='" + bookId + '\'' +
+                ", payload=" + payload +
+                '}';
+    }
+}
@@ -0,0 +1,254 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Records connection pool usage: how long threads wait to check out a connection and how close the pool is to
+ * being exhausted.
+ * <p>
+ * Checkout latency is measured from the moment a thread enters the pool's wait queue until it receives a
+ * connection. The synchronous driver checks out connections on the calling thread, so the start time is kept in a
+ * thread-local. Latencies are counted in power-of-two microsecond buckets, from which percentiles are estimated.
+ * Saturation is the number of connections in use compared to the maximum pool size; checkouts that find every
+ * connection in use are counted separately.
+ * </p>
+ */
+public class ConnectionPoolMetrics extends ConnectionPoolListenerAdapter {
+
+    private static final Logger logger = Logger.getLogger(ConnectionPoolMetrics.class.getName());
+    private static final int LATENCY_BUCKETS = 32;
+
+    private final long slowCheckoutMicros;
+    private final ThreadLocal<Long> waitStart = new ThreadLocal<>();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder checkoutMicrosTotal = new LongAdder();
+    private final AtomicLong maxCheckoutMicros = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+    private final LongAdder saturatedCheckouts = new LongAdder();
+    private final AtomicInteger maxPoolSize = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+
+    /**
+     * Constructs a new {@code ConnectionPoolMetrics}.
+     *
+     * @param slowCheckoutMillis checkouts that wait at least this long are logged as warnings.
+     */
+    public ConnectionPoolMetrics(long slowCheckoutMillis) {
+        this.slowCheckoutMicros = slowCheckoutMillis * 1000;
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        maxPoolSize.addAndGet(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        waitStart.set(System.nanoTime());
+        peakWaiting.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        waiting.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        int used = inUse.incrementAndGet();
+        peakInUse.accumulateAndGet(used, Math::max);
+        int max = maxPoolSize.get();
+        if (max > 0 && used >= max) {
+            saturatedCheckouts.increment();
+        }
+
+        Long start = waitStart.get();
+        if (start == null) {
+            return;
+        }
+        waitStart.remove();
+        long micros = (System.nanoTime() - start) / 1000;
+        checkouts.increment();
+        checkoutMicrosTotal.add(micros);
+        maxCheckoutMicros.accumulateAndGet(micros, Math::max);
+        latencyBuckets.incrementAndGet(bucketOf(micros));
+        if (micros >= slowCheckoutMicros) {
+            logger.warning("Waited " + micros / 1000 + " ms for a database connection (" + used + " of " + max + " in use)");
+        }
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        connections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        connections.decrementAndGet();
+    }
+
+    /**
+     * Gets the number of measured checkouts.
+     *
+     * @return the checkout count.
+     */
+    public long getCheckoutCount() {
+        return checkouts.sum();
+    }
+
+    /**
+     * Gets the mean time spent waiting for a connection.
+     *
+     * @return the mean checkout latency in microseconds, or 0 if nothing was measured.
+     */
+    public double getMeanCheckoutMicros() {
+        long count = checkouts.sum();
+        return count == 0 ? 0 : (double) checkoutMicrosTotal.sum() / count;
+    }
+
+    /**
+     * Gets the longest time spent waiting for a connection.
+     *
+     * @return the maximum checkout latency in microseconds.
+     */
+    public long getMaxCheckoutMicros() {
+        return maxCheckoutMicros.get();
+    }
+
+    /**
+     * Estimates a checkout latency percentile. The result is the upper bound of the power-of-two
+     * bucket holding the percentile, so it may overestimate by up to a factor of two.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the estimated latency in microseconds, or 0 if nothing was measured.
+     * @throws IllegalArgumentException if {@code percentile} is outside 0 to 100.
+     */
+    public long getCheckoutPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long[] counts = new long[LATENCY_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            counts[i] = latencyBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return (1L << i) - 1;
+            }
+        }
+        return maxCheckoutMicros.get();
+    }
+
+    /**
+     * Gets the number of checkouts that left no idle connection in a full-sized pool.
+     *
+     * @return the saturated checkout count.
+     */
+    public long getSaturatedCheckoutCount() {
+        return saturatedCheckouts.sum();
+    }
+
+    /**
+     * Gets the current pool saturation.
+     *
+     * @return the fraction of the maximum pool size currently in use, between 0 and 1.
+     */
+    public double getSaturation() {
+        int max = maxPoolSize.get();
+        return max == 0 ? 0 : Math.min(1.0, (double) inUse.get() / max);
+    }
+
+    /**
+     * Gets the number of connections currently in use.
+     *
+     * @return the in-use count.
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Gets the highest number of connections in use at once.
+     *
+     * @return the peak in-use count.
+     */
+    public int getPeakInUse() {
+        return peakInUse.get();
+    }
+
+    /**
+     * Gets the highest number of threads waiting for a connection at once.
+     *
+     * @return the peak wait queue length.
+     */
+    public int getPeakWaiting() {
+        return peakWaiting.get();
+    }
+
+    /**
+     * Gets the number of open connections, idle or in use.
+     *
+     * @return the open connection count.
+     */
+    public int getOpenConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Maps a latency to the bucket whose upper bound ({@code 2^i - 1} microseconds) covers it.
+     */
+    private static int bucketOf(long micros) {
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Returns a string representation of the {@code ConnectionPoolMetrics} object.
+     *
+     * @return a string containing the latency and saturation figures.
+     */
+    @Override
+    public String toString() {
+        return "ConnectionPoolMetrics{" +
+                "checkouts=" + getCheckoutCount() +
+                ", meanCheckoutMicros=" + String.format("%.1f", getMeanCheckoutMicros()) +
+                ", p99CheckoutMicros=" + getCheckoutPercentileMicros(99) +
+                ", maxCheckoutMicros=" + getMaxCheckoutMicros() +
+                ", inUse=" + getInUse() +
+                ", peakInUse=" + getPeakInUse() +
+                ", openConnections=" + getOpenConnections() +
+                ", maxPoolSize=" + maxPoolSize.get() +
+                ", saturatedCheckouts=" + getSaturatedCheckoutCount() +
+                ", peakWaiting=" + getPeakWaiting() +
+                '}';
+    }
+}
@@ -0,0 +1,129 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.AsyncBookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Implementation of the {@link AsyncBookDAO} interface that runs the calls of a synchronous {@link BookDAO}
+ * on a {@link DAOExecutor}.
+ */
+public class AsyncBookDAOImpl implements AsyncBookDAO {
+
+    private final BookDAO delegate;
+    private final DAOExecutor executor;
+
+    /**
+     * Constructs a new {@code AsyncBookDAOImpl}.
+     *
+     * @param delegate the synchronous DAO doing the work.
+     * @param executor the executor running the calls.
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public AsyncBookDAOImpl(BookDAO delegate, DAOExecutor executor) {
+        if (delegate == null || executor == null) {
+            throw new IllegalArgumentException("The wrapped BookDAO and the executor must be provided.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getAllBooks() {
+        return executor.submit(delegate::getAllBooks);
+    }
+
+    @Override
+    public CompletableFuture<List<BookSummary>> getBookSummaries() {
+        return executor.submit(delegate::getBookSummaries);
+    }
+
+    @Override
+    public CompletableFuture<Book> getBookById(String bookId) {
+        return executor.submit(() -> delegate.getBookById(bookId));
+    }
+
+    @Override
+    public CompletableFuture<Void> addBook(Book book) {
+        return executor.submit(() -> {
+            delegate.addBook(book);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBook(String bookId) {
+        return executor.submit(() -> {
+            delegate.deleteBook(bookId);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> addReview(String bookId, Review review) {
+        return executor.submit(() -> {
+            delegate.addReview(bookId, review);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Page<Review>> getReviewsPage(String bookId, String continuationToken) {
+        return executor.submit(() -> delegate.getReviewsPage(bookId, continuationToken));
+    }
+
+    @Override
+    public CompletableFuture<Void> addRating(String bookId, Rating rating) {
+        return executor.submit(() -> {
+            delegate.addRating(bookId, rating);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<BatchOutcome>> addRatings(List<BookUpdate<Rating>> ratings) {
+        return executor.submit(() -> delegate.addRatings(ratings));
+    }
+
+    @Override
+    public CompletableFuture<List<BatchOutcome>> addReviews(List<BookUpdate<Review>> reviews) {
+        return executor.submit(() -> delegate.addReviews(reviews));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchBooks(String type, String keyword) {
+        return executor.submit(() -> delegate.searchBooks(type, keyword));
+    }
+
+    @Override
+    public CompletableFuture<Page<Book>> getBooksPage(String continuationToken, int pageSize) {
+        return executor.submit(() -> delegate.getBooksPage(continuationToken, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<Page<Book>> searchBooksPage(String type, String keyword, String continuationToken, int pageSize) {
+        return executor.submit(() -> delegate.searchBooksPage(type, keyword, continuationToken, pageSize));
+    }
+
+    /**
+     * Visits every book on a DAO thread. The iteration checks its future before each book, so cancelling the future
+     * or letting it time out stops it, and its cursor is closed normally.
+     */
+    @Override
+    public CompletableFuture<Void> forEachBook(int batchSize, Consumer<Book> action) {
+        return executor.submit(cancelled -> {
+            delegate.forEachBook(batchSize, book -> {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Iteration over books was cancelled.");
+                }
+                action.accept(book);
+            });
+            return null;
+        });
+    }
+}
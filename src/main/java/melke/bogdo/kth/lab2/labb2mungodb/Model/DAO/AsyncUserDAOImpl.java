@@ -0,0 +1,53 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.AsyncUserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
+import org.bson.types.ObjectId;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of the {@link AsyncUserDAO} interface that runs the calls of a synchronous {@link UserDAO}
+ * on a {@link DAOExecutor}.
+ */
+public class AsyncUserDAOImpl implements AsyncUserDAO {
+
+    private final UserDAO delegate;
+    private final DAOExecutor executor;
+
+    /**
+     * Constructs a new {@code AsyncUserDAOImpl}.
+     *
+     * @param delegate the synchronous DAO doing the work.
+     * @param executor the executor running the calls.
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    public AsyncUserDAOImpl(UserDAO delegate, DAOExecutor executor) {
+        if (delegate == null || executor == null) {
+            throw new IllegalArgumentException("The wrapped UserDAO and the executor must be provided.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<User> getUserById(ObjectId userId) {
+        return executor.submit(() -> delegate.getUserById(userId));
+    }
+
+    @Override
+    public CompletableFuture<User> getUserByUsername(String username) {
+        return executor.submit(() -> delegate.getUserByUsername(username));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> validateUser(String username, String passwordHash) {
+        return executor.submit(() -> delegate.validateUser(username, passwordHash));
+    }
+
+    @Override
+    public CompletableFuture<User> authenticate(String username, String passwordHash) {
+        return executor.submit(() -> delegate.authenticate(username, passwordHash));
+    }
+}
@@ -0,0 +1,467 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeListener;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeSource;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the {@code books} collection through a MongoDB change stream and pushes every insert, update and delete
+ * to the registered {@link BookChangeListener}s, so caches and open views can apply changes made by other clients
+ * without reloading the catalog.
+ * <p>
+ * Change streams require a replica set; for local development a single-node replica set is enough
+ * ({@code mongod --replSet rs0}, then {@code rs.initiate()} once). Against a standalone server the stream logs a
+ * warning and stops, and the application keeps working without live updates.
+ * </p>
+ * <p>
+ * {@link #start()} returns right away; the watching thread first records the server's operation time, then
+ * completes {@link #started()}, and the stream starts at that time. So a listener that registers, waits for
+ * {@link #started()} and then reads the catalog misses no change made after its read; changes made between the
+ * start and the read may be delivered again and are newer or equal to what was read, except for insert events,
+ * whose document is the inserted one. After a lost connection the stream resumes after the last processed change.
+ * If the server no longer has the history needed to resume, listeners receive a
+ * {@link BookChangeEvent.Type#RELOAD} event, and the stream continues from the time before that event.
+ * </p>
+ * <p>
+ * With a snapshot file, the stream saves the catalog set through {@link #setCatalogToSave(Supplier)} together
+ * with its resume token when it is stopped, on its own thread after the last change was delivered, so the catalog
+ * includes every change up to that token. The next start reads the {@link CatalogSnapshot} and resumes after its
+ * token instead of starting at the current time, and applies the replayed changes to the snapshot's catalog until a
+ * listener takes it over with {@link #addListenerWithCatalog(BookChangeListener)}. If the token can no longer be
+ * resumed, the snapshot is dropped and listeners receive a {@link BookChangeEvent.Type#RELOAD} event as usual.
+ * </p>
+ */
+public class BookChangeStream implements BookChangeSource {
+
+    private static final Logger logger = Logger.getLogger(BookChangeStream.class.getName());
+
+    /**
+     * Server error code for running {@code $changeStream} against a standalone server.
+     */
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    /**
+     * Server error codes meaning the stream cannot resume after the stored token.
+     */
+    private static final List<Integer> UNRESUMABLE = List.of(136, 260, 280, 286);
+
+    private static final long MAX_AWAIT_MILLIS = 1000;
+    private static final long MIN_RETRY_MILLIS = 500;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final MongoDatabase database;
+    private final MongoCollection<Book> booksCollection;
+    private final Path snapshotFile;
+    private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object catalogLock = new Object();
+    private Map<String, Book> snapshotCatalog; // Kept current until a listener takes it over, guarded by catalogLock
+    private volatile Supplier<? extends Collection<Book>> catalogToSave;
+    private volatile boolean running;
+    private volatile boolean stopRequested;
+    private Thread thread;
+    private volatile CompletableFuture<Void> started = CompletableFuture.completedFuture(null);
+    private BsonTimestamp startTime; // Where to open the stream until a change has been processed
+    private BsonDocument resumeToken; // Where to resume after a lost connection
+
+    /**
+     * Constructs a new {@code BookChangeStream}. No changes are watched until {@link #start()} is called.
+     *
+     * @param database     the database whose {@code books} collection is watched, decoding books with the
+     *                     {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec}.
+     * @param snapshotFile the file the {@link CatalogSnapshot} is kept in, or {@code null} to always start at the
+     *                     current time.
+     * @throws IllegalArgumentException if {@code database} is null.
+     */
+    public BookChangeStream(MongoDatabase database, Path snapshotFile) {
+        if (database == null) {
+            throw new IllegalArgumentException("The database must be provided.");
+        }
+        this.database = database;
+        this.booksCollection = BookCodecs.getBooksCollection(database);
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Registers a listener for all following changes.
+     *
+     * @param listener the {@link BookChangeListener} to add.
+     * @throws IllegalArgumentException if {@code listener} is null.
+     */
+    @Override
+    public void addListener(BookChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the {@link BookChangeListener} to remove.
+     */
+    @Override
+    public void removeListener(BookChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener and hands it the catalog read from the snapshot, with every change delivered since
+     * applied to it. Only the first caller gets the catalog.
+     *
+     * @param listener the {@link BookChangeListener} to add.
+     * @return the catalog, or {@code null} if there is no snapshot, it was already taken, or a
+     * {@link BookChangeEvent.Type#RELOAD} event made it useless.
+     * @throws IllegalArgumentException if {@code listener} is null.
+     */
+    @Override
+    public List<Book> addListenerWithCatalog(BookChangeListener listener) {
+        synchronized (catalogLock) {
+            addListener(listener);
+            List<Book> catalog = snapshotCatalog != null ? new ArrayList<>(snapshotCatalog.values()) : null;
+            snapshotCatalog = null;
+            return catalog;
+        }
+    }
+
+    /**
+     * Sets the catalog saved with the resume token when the stream is stopped. Ignored without a snapshot file.
+     *
+     * @param catalog supplies the current catalog, or {@code null} if there is none to save.
+     */
+    @Override
+    public void setCatalogToSave(Supplier<? extends Collection<Book>> catalog) {
+        catalogToSave = catalog;
+    }
+
+    /**
+     * Starts watching on a daemon thread, from the server's current operation time, which that thread reads before
+     * completing {@link #started()}. Returns without waiting for the server, so it may be called on the JavaFX
+     * Application Thread. Does nothing if the stream is running, or still stopping.
+     */
+    public synchronized void start() {
+        if (running || (thread != null && thread.isAlive())) {
+            return;
+        }
+        startTime = null;
+        resumeToken = null;
+        started = new CompletableFuture<>();
+        stopRequested = false;
+        running = true;
+        thread = new Thread(this::run, "book-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets a future completed once the stream has fixed the time it starts at, so every change made after that is
+     * delivered. Already completed while the stream is not running.
+     *
+     * @return the start of the running stream.
+     */
+    @Override
+    public CompletableFuture<Void> started() {
+        return started;
+    }
+
+    /**
+     * Tells the watching thread to stop, without waiting for it; it closes its cursor within about a second and
+     * then saves the catalog snapshot. Use {@link #awaitStop(long)} before closing the database connection.
+     */
+    public synchronized void stop() {
+        stopRequested = true;
+        running = false;
+    }
+
+    /**
+     * Waits for the watching thread to finish after {@link #stop()}. Must not be called on the JavaFX Application
+     * Thread.
+     *
+     * @param timeoutMillis the longest time to wait, in milliseconds.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void awaitStop(long timeoutMillis) throws InterruptedException {
+        Thread watching;
+        synchronized (this) {
+            watching = thread;
+        }
+        if (watching != null) {
+            watching.join(timeoutMillis);
+        }
+    }
+
+    /**
+     * Checks whether the stream is watching for changes.
+     *
+     * @return {@code true} until {@link #stop()} is called or the server turns out not to support change streams.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Checks whether changes are being reported, which is while the stream is running.
+     *
+     * @return {@link #isRunning()}.
+     */
+    @Override
+    public boolean isLive() {
+        return isRunning();
+    }
+
+    private void run() {
+        long retryMillis = MIN_RETRY_MILLIS;
+        try {
+            if (!resumeFromSnapshot()) {
+                startTime = currentOperationTime();
+            }
+            started.complete(null);
+            while (running) {
+                ChangeStreamIterable<Book> changes = booksCollection.watch()
+                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                        .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (resumeToken != null) {
+                    changes = changes.resumeAfter(resumeToken);
+                } else if (startTime != null) {
+                    changes = changes.startAtOperationTime(startTime);
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Book>> cursor = changes.cursor()) {
+                    logger.info(resumeToken != null ? "Resumed watching book changes" : "Started watching book changes");
+                    retryMillis = MIN_RETRY_MILLIS;
+                    watch(cursor);
+                } catch (MongoServerException e) {
+                    if (e.getCode() == NOT_A_REPLICA_SET) {
+                        logger.warning("Change streams require a replica set; live book updates are disabled.");
+                        running = false;
+                    } else if (UNRESUMABLE.contains(e.getCode()) && (resumeToken != null || startTime != null)) {
+                        logger.warning("Cannot resume book changes (" + e.getMessage() + "); reloading.");
+                        restartForReload();
+                    } else {
+                        retryMillis = backOff(e, retryMillis);
+                    }
+                } catch (MongoException e) {
+                    if (running) {
+                        retryMillis = backOff(e, retryMillis);
+                    }
+                }
+            }
+        } finally {
+            running = false;
+            started.complete(null);
+            synchronized (catalogLock) {
+                snapshotCatalog = null;
+            }
+            if (stopRequested) {
+                saveSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot file, if there is one, and makes the stream resume after its token.
+     *
+     * @return {@code true} if the stream resumes from the snapshot.
+     */
+    private boolean resumeFromSnapshot() {
+        if (snapshotFile == null) {
+            return false;
+        }
+        try {
+            CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotFile);
+            if (snapshot == null) {
+                return false;
+            }
+            Map<String, Book> catalog = new LinkedHashMap<>();
+            for (Book book : snapshot.getBooks()) {
+                catalog.put(book.getId(), book);
+            }
+            synchronized (catalogLock) {
+                snapshotCatalog = catalog;
+            }
+            resumeToken = snapshot.getResumeToken();
+            logger.info("Read " + catalog.size() + " books from the catalog snapshot " + snapshotFile);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable catalog snapshot " + snapshotFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Saves the catalog set by a listener with the resume token of the last delivered change.
+     */
+    private void saveSnapshot() {
+        Supplier<? extends Collection<Book>> catalog = catalogToSave;
+        if (snapshotFile == null || catalog == null || resumeToken == null) {
+            return;
+        }
+        Collection<Book> books = catalog.get();
+        if (books == null) {
+            return;
+        }
+        try {
+            CatalogSnapshot.save(snapshotFile, resumeToken, books);
+            logger.info("Saved " + books.size() + " books to the catalog snapshot " + snapshotFile);
+        } catch (IOException e) {
+            logger.warning("Could not save the catalog snapshot to " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delivers changes from an open cursor until the stream is stopped or invalidated.
+     */
+    private void watch(MongoChangeStreamCursor<ChangeStreamDocument<Book>> cursor) {
+        while (running) {
+            ChangeStreamDocument<Book> change = cursor.tryNext();
+            if (change != null) {
+                BookChangeEvent event = toEvent(change);
+                if (event != null && event.getType() == BookChangeEvent.Type.RELOAD) {
+                    // The collection was dropped or renamed, which ends this stream; start a new one
+                    restartForReload();
+                    return;
+                }
+                if (event != null) {
+                    publish(event);
+                }
+            }
+            BsonDocument token = cursor.getResumeToken();
+            if (token != null) {
+                resumeToken = token;
+                startTime = null;
+            }
+        }
+    }
+
+    /**
+     * Makes the next stream start at the current operation time, then tells listeners to reload, so every change
+     * after their reload is delivered.
+     */
+    private void restartForReload() {
+        resumeToken = null;
+        startTime = currentOperationTime();
+        publish(BookChangeEvent.reload());
+    }
+
+    /**
+     * Applies a change to the snapshot's catalog while no listener has taken it over. A reload drops it, since the
+     * changes it would need are no longer available.
+     */
+    private void applyToSnapshotCatalog(BookChangeEvent event) {
+        synchronized (catalogLock) {
+            if (snapshotCatalog == null) {
+                return;
+            }
+            switch (event.getType()) {
+                case INSERT:
+                case UPDATE:
+                    if (event.getBook() != null) {
+                        snapshotCatalog.put(event.getBookId(), event.getBook());
+                    }
+                    break;
+                case DELETE:
+                    snapshotCatalog.remove(event.getBookId());
+                    break;
+                default:
+                    snapshotCatalog = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the server's current operation time, or {@code null} if the server does not report one
+     * (a standalone server, which does not support change streams anyway) or cannot be reached.
+     */
+    private BsonTimestamp currentOperationTime() {
+        try {
+            BsonDocument reply = database.runCommand(new BsonDocument("isMaster", new BsonInt32(1)), BsonDocument.class);
+            BsonValue operationTime = reply.get("operationTime");
+            return operationTime != null && operationTime.isTimestamp() ? operationTime.asTimestamp() : null;
+        } catch (MongoException e) {
+            logger.warning("Cannot read the server's operation time (" + e.getMessage() + "); watching from the first connection");
+            return null;
+        }
+    }
+
+    private static BookChangeEvent toEvent(ChangeStreamDocument<Book> change) {
+        switch (change.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+            case DELETE:
+                String bookId = bookIdOf(change.getDocumentKey());
+                if (bookId == null) {
+                    return null;
+                }
+                Book book = change.getFullDocument();
+                switch (change.getOperationType()) {
+                    case INSERT:
+                        return new BookChangeEvent(BookChangeEvent.Type.INSERT, bookId, book);
+                    case DELETE:
+                        return new BookChangeEvent(BookChangeEvent.Type.DELETE, bookId, null);
+                    default:
+                        return new BookChangeEvent(BookChangeEvent.Type.UPDATE, bookId, book);
+                }
+            case DROP:
+            case DROP_DATABASE:
+            case RENAME:
+            case INVALIDATE:
+                return BookChangeEvent.reload();
+            default:
+                return null;
+        }
+    }
+
+    private static String bookIdOf(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        return id != null && id.isObjectId() ? id.asObjectId().getValue().toHexString() : null;
+    }
+
+    private void publish(BookChangeEvent event) {
+        applyToSnapshotCatalog(event); // Before the listeners, so a listener taking the catalog over misses nothing
+        for (BookChangeListener listener : listeners) {
+            try {
+                listener.onBookChange(event);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Book change listener failed for " + event, e);
+            }
+        }
+    }
+
+    private long backOff(MongoException e, long retryMillis) {
+        logger.warning("Book change stream interrupted (" + e.getMessage() + "); retrying in " + retryMillis + " ms");
+        try {
+            Thread.sleep(retryMillis);
+        } catch (InterruptedException interrupted) {
+            running = false;
+        }
+        return Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+    }
+}
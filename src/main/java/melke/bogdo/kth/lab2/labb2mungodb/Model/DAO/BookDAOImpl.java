@@ -1,35 +1,98 @@
 package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoServerException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.LazyBook;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
-import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
 
 /**
  * Implementation of the {@link BookDAO} interface for managing book-related operations in MongoDB.
  * <p>
  * This class provides methods for CRUD operations on books and handles embedded entities such as authors, reviews, and ratings.
+ * Books are read and inserted through the {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec}, which
+ * decodes BSON directly into model objects; updates and projections work on {@link Document}s. Reads returning
+ * many books return {@link LazyBook}s, which decode their authors, reviews and ratings only when accessed.
  * </p>
  */
 public class BookDAOImpl implements BookDAO {
 
+    private static final Logger logger = Logger.getLogger(BookDAOImpl.class.getName());
+
+    /**
+     * Server error code returned when a {@code $text} query runs without a text index.
+     */
+    private static final int INDEX_NOT_FOUND = 27;
+
+    /**
+     * Name of the projected field holding the relevance score of a text search.
+     */
+    private static final String SCORE_FIELD = "score";
+
     /**
      * The collection of books in the MongoDB database.
      * Each document in this collection represents a book with its related data.
      */
     private final MongoCollection<Document> booksCollection;
 
+    /**
+     * The same collection, reading and writing {@link Book} objects through the registered book codecs.
+     */
+    private final MongoCollection<Book> books;
+
+    /**
+     * The same collection, reading {@link LazyBook}s for reads that return many books.
+     */
+    private final MongoCollection<LazyBook> lazyBooks;
+
+    /**
+     * The bucket store holding reviews when bucketed review storage is enabled, or {@code null} when
+     * reviews are embedded in the book documents.
+     */
+    private final ReviewBucketStore reviewBuckets;
+
+    /**
+     * The cursor batch size for reads that do not choose their own, from the {@link DatabaseSettings}.
+     */
+    private final int defaultBatchSize;
+
     /**
      * Constructs a new {@code BookDAOImpl} instance and initializes the connection to the "books" collection.
      * The connection is established via the {@link DatabaseConnection} class.
@@ -37,6 +100,10 @@ public class BookDAOImpl implements BookDAO {
     public BookDAOImpl() {
         MongoDatabase database = DatabaseConnection.getDatabase();
         this.booksCollection = database.getCollection("books");
+        this.books = BookCodecs.getBooksCollection(database);
+        this.lazyBooks = BookCodecs.getLazyBooksCollection(database);
+        this.reviewBuckets = ReviewBucketStore.isEnabled() ? new ReviewBucketStore(database) : null;
+        this.defaultBatchSize = DatabaseConnection.getSettings().getDefaultBatchSize();
     }
 
     /**
@@ -46,17 +113,66 @@ public class BookDAOImpl implements BookDAO {
      */
     @Override
     public List<Book> getAllBooks() {
-        List<Book> books = new ArrayList<>();
-        for (Document doc : booksCollection.find()) {
-            books.add(mapDocumentToBook(doc));
+        return findBooks(lazyBooks, null).into(new ArrayList<>());
+    }
+
+    /**
+     * Retrieves a summary of every book using a server-side projection.
+     * <p>
+     * The average rating is derived from the stored rating aggregates (or, for books that have
+     * not been backfilled, from the ratings array) by the server, so neither the ratings nor the
+     * reviews and authors of a book are sent over the wire.
+     * </p>
+     *
+     * @return a {@link List} of {@link BookSummary} objects for all books in the database.
+     */
+    @Override
+    public List<BookSummary> getBookSummaries() {
+        List<BookSummary> summaries = new ArrayList<>();
+        Bson projection = Aggregates.project(Projections.fields(
+                Projections.include("title", "isbn"),
+                Projections.computed("genre_name", "$genre.name"),
+                Projections.computed("average_rating", new Document("$cond", List.of(
+                        new Document("$gt", List.of("$" + RatingAggregates.COUNT, 0)),
+                        new Document("$divide", List.of("$" + RatingAggregates.SUM, "$" + RatingAggregates.COUNT)),
+                        new Document("$ifNull", List.of(new Document("$avg", "$ratings.rating"), 0.0)))))));
+
+        for (Document doc : booksCollection.aggregate(Collections.singletonList(projection))) {
+            Number averageRating = doc.get("average_rating", Number.class);
+            summaries.add(new BookSummary(
+                    doc.getObjectId("_id").toString(),
+                    doc.getString("title"),
+                    doc.getString("isbn"),
+                    doc.getString("genre_name"),
+                    averageRating != null ? averageRating.doubleValue() : 0.0
+            ));
         }
-        return books;
+        return summaries;
+    }
+
+    /**
+     * Retrieves a single book by its unique ID.
+     *
+     * @param bookId the unique ID of the book.
+     * @return the {@link Book}, or {@code null} if no book has this ID.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public Book getBookById(String bookId) {
+        if (bookId == null || !ObjectId.isValid(bookId)) {
+            throw new IllegalArgumentException("Invalid ObjectId: " + bookId);
+        }
+        return findBooks(books, eq("_id", new ObjectId(bookId))).first();
     }
 
     /**
      * Searches for books in the database based on a specific type and keyword.
+     * <p>
+     * The {@code "keyword"} type runs a full-text search over title, author names and genre name,
+     * sorted by relevance. All other types match the keyword as a case-insensitive substring of a single field.
+     * </p>
      *
-     * @param type    the type of search (e.g., "title", "author", "genre", "isbn").
+     * @param type    the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
      *                Determines which field of the book to search in.
      * @param keyword the search keyword to match against the specified type.
      * @return a {@link List} of {@link Book} objects that match the search criteria.
@@ -68,64 +184,209 @@ public class BookDAOImpl implements BookDAO {
             throw new IllegalArgumentException("Search type and keyword must be provided.");
         }
 
-        List<Book> results = new ArrayList<>();
-        Bson filter;
-
-        switch (type.toLowerCase()) {
-            case "title":
-                filter = Filters.regex("title", ".*" + keyword + ".*", "i");
-                break;
-            case "author":
-                filter = Filters.elemMatch("authors", Filters.regex("name", ".*" + keyword + ".*", "i"));
-                break;
-            case "genre":
-                filter = Filters.regex("genre.name", ".*" + keyword + ".*", "i");
-                break;
-            case "isbn":
-                filter = Filters.regex("isbn", ".*" + keyword + ".*", "i");
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid search type: " + type);
+        if (type.equalsIgnoreCase("keyword")) {
+            return textSearch(keyword);
         }
 
-        for (Document doc : booksCollection.find(filter)) {
-            results.add(mapDocumentToBook(doc));
+        return findBooks(lazyBooks, BookSearchFilters.forType(type, keyword)).into(new ArrayList<>());
+    }
+
+    /**
+     * Retrieves one page of books, ordered by {@code _id}.
+     *
+     * @param continuationToken the {@code _id} of the last book on the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of {@link Book} objects.
+     * @throws IllegalArgumentException if {@code pageSize} is not positive or the token is not a valid ObjectId.
+     */
+    @Override
+    public Page<Book> getBooksPage(String continuationToken, int pageSize) {
+        return findPage(null, continuationToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of books matching the search criteria, ordered by {@code _id}.
+     * <p>
+     * Keyword searches are paginated by {@code _id} as well, so pages are not ordered by relevance.
+     * </p>
+     *
+     * @param type              the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword           the search keyword.
+     * @param continuationToken the {@code _id} of the last book on the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of matching {@link Book} objects.
+     * @throws IllegalArgumentException if the search parameters, {@code pageSize} or the token are invalid.
+     */
+    @Override
+    public Page<Book> searchBooksPage(String type, String keyword, String continuationToken, int pageSize) {
+        if (type == null || keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search type and keyword must be provided.");
         }
+        try {
+            return findPage(BookSearchFilters.forType(type, keyword), continuationToken, pageSize);
+        } catch (MongoServerException e) {
+            if (e.getCode() != INDEX_NOT_FOUND) {
+                throw e;
+            }
+            return findPage(BookSearchFilters.anyField(keyword), continuationToken, pageSize);
+        }
+    }
 
-        return results;
+    /**
+     * Streams all books from a driver cursor, fetching {@code batchSize} documents per round trip.
+     *
+     * @param batchSize the number of documents fetched per round trip.
+     * @return a lazily decoded {@link Stream} of {@link Book} objects; closing it closes the cursor.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    @Override
+    public Stream<Book> streamAllBooks(int batchSize) {
+        return stream(findBooks(lazyBooks, null), batchSize);
+    }
+
+    /**
+     * Streams the books matching the search criteria from a driver cursor.
+     *
+     * @param type      the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword   the search keyword.
+     * @param batchSize the number of documents fetched per round trip.
+     * @return a lazily decoded {@link Stream} of matching {@link Book} objects; closing it closes the cursor.
+     * @throws IllegalArgumentException if the search parameters or {@code batchSize} are invalid.
+     */
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize) {
+        return streamSearchBooks(type, keyword, batchSize, 0);
+    }
+
+    /**
+     * Streams the books matching the search criteria from a driver cursor, letting the server
+     * abort the query once it has run for {@code maxTimeMillis}.
+     *
+     * @param type          the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword       the search keyword.
+     * @param batchSize     the number of documents fetched per round trip.
+     * @param maxTimeMillis the server-side time limit in milliseconds, or 0 for none.
+     * @return a lazily decoded {@link Stream} of matching {@link Book} objects; closing it closes the cursor.
+     * @throws IllegalArgumentException if the search parameters, {@code batchSize} or {@code maxTimeMillis} are invalid.
+     */
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis) {
+        if (type == null || keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search type and keyword must be provided.");
+        }
+        if (maxTimeMillis < 0) {
+            throw new IllegalArgumentException("Time limit cannot be negative.");
+        }
+        try {
+            return stream(findBooks(lazyBooks, BookSearchFilters.forType(type, keyword)).maxTime(maxTimeMillis, TimeUnit.MILLISECONDS), batchSize);
+        } catch (MongoServerException e) {
+            if (e.getCode() != INDEX_NOT_FOUND) {
+                throw e;
+            }
+            return stream(findBooks(lazyBooks, BookSearchFilters.anyField(keyword)).maxTime(maxTimeMillis, TimeUnit.MILLISECONDS), batchSize);
+        }
+    }
+
+    /**
+     * Fetches one keyset page: books with an {@code _id} greater than the token, in {@code _id} order.
+     * One extra document is requested to find out whether another page follows.
+     */
+    private Page<Book> findPage(Bson filter, String continuationToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        Bson pageFilter = filter;
+        if (continuationToken != null) {
+            if (!ObjectId.isValid(continuationToken)) {
+                throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+            }
+            Bson after = gt("_id", new ObjectId(continuationToken));
+            pageFilter = filter != null ? Filters.and(filter, after) : after;
+        }
+
+        List<Book> books = findBooks(lazyBooks, pageFilter).sort(Sorts.ascending("_id")).limit(pageSize + 1).into(new ArrayList<>());
+
+        String nextToken = null;
+        if (books.size() > pageSize) {
+            books.remove(pageSize);
+            nextToken = books.get(pageSize - 1).getId();
+        }
+        return new Page<>(books, nextToken);
+    }
+
+    /**
+     * Starts a query on the books collection using the configured default batch size. With bucketed review
+     * storage the (empty) embedded reviews array is excluded, since reviews are read on demand from the buckets.
+     *
+     * @param collection the typed view of the books collection, deciding whether books are decoded eagerly or lazily.
+     * @param filter     the query filter, or {@code null} to match all books.
+     * @param <T>        the type the books are decoded into.
+     * @return the {@link FindIterable} for the query.
+     */
+    private <T extends Book> FindIterable<T> findBooks(MongoCollection<T> collection, Bson filter) {
+        FindIterable<T> query = (filter != null ? collection.find(filter) : collection.find())
+                .batchSize(defaultBatchSize);
+        return reviewBuckets != null ? query.projection(Projections.exclude("reviews")) : query;
+    }
+
+    /**
+     * Wraps a query cursor in a sequential {@link Stream} that decodes each book as it is consumed.
+     */
+    private Stream<Book> stream(FindIterable<LazyBook> query, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        MongoCursor<LazyBook> cursor = query.batchSize(batchSize).iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(Book.class::cast)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * Runs a full-text search backed by the {@value IndexBootstrap#BOOKS_TEXT_INDEX} index, most relevant books first.
+     * <p>
+     * If the server reports that the text index does not exist, the search falls back to
+     * case-insensitive regex matching across all searchable fields.
+     * </p>
+     *
+     * @param keyword the words to search for.
+     * @return a {@link List} of matching {@link Book} objects ordered by relevance.
+     */
+    private List<Book> textSearch(String keyword) {
+        List<Book> results = new ArrayList<>();
+        try {
+            Bson projection = reviewBuckets != null
+                    ? Projections.fields(Projections.exclude("reviews"), Projections.metaTextScore(SCORE_FIELD))
+                    : Projections.metaTextScore(SCORE_FIELD);
+            return lazyBooks.find(BookSearchFilters.forType("keyword", keyword))
+                    .projection(projection)
+                    .sort(Sorts.metaTextScore(SCORE_FIELD))
+                    .into(results);
+        } catch (MongoServerException e) {
+            if (e.getCode() != INDEX_NOT_FOUND) {
+                throw e;
+            }
+            logger.warning("Text index missing, falling back to regex search: " + e.getMessage());
+        }
+
+        return findBooks(lazyBooks, BookSearchFilters.anyField(keyword)).into(results);
     }
 
     /**
      * Adds a new book to the database.
      * <p>
-     * Constructs a MongoDB document from the {@link Book} object and inserts it into the "books" collection.
+     * Inserts the book, without reviews or ratings, into the "books" collection through the book codec,
+     * and sets the generated ID on the given {@link Book}.
      * </p>
      *
      * @param book the {@link Book} object to be added.
-     * @throws IllegalStateException if the generated ID for the inserted book cannot be retrieved.
      */
     @Override
     public void addBook(Book book) {
-        Document bookDoc = new Document("title", book.getTitle())
-                .append("isbn", book.getIsbn())
-                .append("genre", new Document("id", book.getGenre().getId()).append("name", book.getGenre().getName()))
-                .append("authors", book.getAuthors().stream()
-                        .map(author -> new Document("name", author.getName())
-                                .append("birthdate", author.getBirthdate())
-                                .append("user_id", author.getUserId()))
-                        .toList())
-                .append("reviews", new ArrayList<>())
-                .append("ratings", new ArrayList<>())
-                .append("user_id", book.getUserId());
-
-        booksCollection.insertOne(bookDoc);
-
-        ObjectId generatedId = bookDoc.getObjectId("_id");
-        if (generatedId != null) {
-            book.setId(generatedId.toString());
-        } else {
-            throw new IllegalStateException("Failed to retrieve generated _id for the inserted book.");
-        }
+        Book stored = new Book(null, book.getTitle(), book.getIsbn(), book.getGenre(), book.getAuthors(),
+                new ArrayList<>(), new ArrayList<>(), book.getUserId());
+        books.insertOne(stored); // The codec assigns the new ObjectId
+        book.setId(stored.getId());
     }
 
     /**
@@ -140,12 +401,18 @@ public class BookDAOImpl implements BookDAO {
             throw new IllegalArgumentException("Invalid ObjectId: " + bookId);
         }
         booksCollection.deleteOne(eq("_id", new ObjectId(bookId)));
+        if (reviewBuckets != null) {
+            reviewBuckets.deleteForBook(new ObjectId(bookId));
+        }
     }
 
     /**
      * Adds or updates a review for a specific book.
      * <p>
      * If a review by the same user exists, it updates the review. Otherwise, it adds a new review.
+     * Both cases are handled by a single pipeline update, so the check and the write are atomic
+     * and cost one round trip. With bucketed review storage the review is written to the book's
+     * review buckets instead.
      * </p>
      *
      * @param bookId the unique ID of the book.
@@ -153,29 +420,51 @@ public class BookDAOImpl implements BookDAO {
      */
     @Override
     public void addReview(String bookId, Review review) {
-        ObjectId bookObjectId = new ObjectId(bookId);
-
-        long modifiedCount = booksCollection.updateOne(
-                Filters.and(eq("_id", bookObjectId), Filters.elemMatch("reviews", eq("user_id", review.getUserId()))),
-                new Document("$set", new Document("reviews.$.review_text", review.getReviewText())
-                        .append("reviews.$.review_date", review.getReviewDate().toString()))
-        ).getModifiedCount();
-
-        if (modifiedCount == 0) {
-            booksCollection.updateOne(
-                    eq("_id", bookObjectId),
-                    new Document("$push", new Document("reviews", new Document("user_id", review.getUserId())
-                            .append("review_text", review.getReviewText())
-                            .append("review_date", review.getReviewDate().toString())
-                            .append("username", review.getUsername())))
-            );
+        if (reviewBuckets != null) {
+            if (!reviewBuckets.upsert(new ObjectId(bookId), review)) {
+                logger.warning("Cannot review missing book: " + bookId);
+            }
+            return;
+        }
+        long matched = booksCollection.updateOne(eq("_id", new ObjectId(bookId)),
+                List.of(reviewUpsertStage(review), DocumentSchema.touchStage())).getMatchedCount();
+        if (matched == 0) {
+            logger.warning("Cannot review missing book: " + bookId);
+        }
+    }
+
+    /**
+     * Retrieves a page of a book's reviews.
+     * <p>
+     * With bucketed review storage each page is one review bucket; otherwise the embedded reviews
+     * are returned as a single page.
+     * </p>
+     *
+     * @param bookId            the unique ID of the book.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @return a {@link Page} of {@link Review} objects.
+     * @throws IllegalArgumentException if {@code bookId} or the token is invalid.
+     */
+    @Override
+    public Page<Review> getReviewsPage(String bookId, String continuationToken) {
+        if (bookId == null || !ObjectId.isValid(bookId)) {
+            throw new IllegalArgumentException("Invalid ObjectId: " + bookId);
+        }
+        if (reviewBuckets != null) {
+            return reviewBuckets.getReviewsPage(new ObjectId(bookId), continuationToken);
         }
+
+        Book book = books.find(eq("_id", new ObjectId(bookId))).projection(Projections.include("reviews")).first();
+        List<Review> reviews = continuationToken == null && book != null ? book.getReviews() : new ArrayList<>();
+        return new Page<>(reviews, null);
     }
 
     /**
      * Adds or updates a rating for a specific book.
      * <p>
      * If a rating by the user exists, it updates the rating. Otherwise, it adds a new rating.
+     * A single pipeline update replaces or appends the user's rating and then recomputes the stored
+     * rating aggregates from the resulting array, so the whole operation is atomic and costs one round trip.
      * </p>
      *
      * @param bookId the unique ID of the book.
@@ -183,74 +472,238 @@ public class BookDAOImpl implements BookDAO {
      */
     @Override
     public void addRating(String bookId, Rating rating) {
-        ObjectId bookObjectId = new ObjectId(bookId);
-
-        booksCollection.updateOne(
-                Filters.and(eq("_id", bookObjectId), Filters.elemMatch("ratings", eq("user_id", rating.getUserId()))),
-                new Document("$set", new Document("ratings.$.rating", rating.getRating()))
-        );
+        List<Bson> pipeline = List.of(ratingUpsertStage(rating), RatingAggregates.recomputeStage(),
+                DocumentSchema.touchStage());
+        long matched = booksCollection.updateOne(eq("_id", new ObjectId(bookId)), pipeline).getMatchedCount();
+        if (matched == 0) {
+            logger.warning("Cannot rate missing book: " + bookId);
+        }
+    }
 
-        booksCollection.updateOne(
-                eq("_id", bookObjectId),
-                new Document("$addToSet", new Document("ratings", new Document("user_id", rating.getUserId()).append("rating", rating.getRating())))
-        );
+    /**
+     * Adds or updates many ratings with one {@code bulkWrite}.
+     * <p>
+     * All ratings for the same book become a single pipeline update: one upsert stage per user,
+     * followed by the aggregate recomputation, so each book is written once per batch.
+     * </p>
+     *
+     * @param ratings the ratings to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    @Override
+    public List<BatchOutcome> addRatings(List<BookUpdate<Rating>> ratings) {
+        return applyBatch(ratings, Rating::getUserId, rating -> {
+            if (rating.getRating() == null || rating.getRating() < RatingAggregates.MIN_RATING
+                    || rating.getRating() > RatingAggregates.MAX_RATING) {
+                return "Rating must be between 1 and 5.";
+            }
+            return null;
+        }, BookDAOImpl::ratingUpsertStage, List.of(RatingAggregates.recomputeStage(), DocumentSchema.touchStage()));
     }
 
     /**
-     * Maps a MongoDB document to a {@link Book} object.
+     * Adds or updates many reviews with one {@code bulkWrite}.
+     * <p>
+     * All reviews for the same book become a single pipeline update with one upsert stage per user.
+     * </p>
      *
-     * @param doc the MongoDB document representing a book.
-     * @return the {@link Book} object.
-     */
-    private Book mapDocumentToBook(Document doc) {
-        String id = doc.getObjectId("_id").toString();
-        String title = doc.getString("title");
-        String isbn = doc.getString("isbn");
-
-        Genre genre = null;
-        Document genreDoc = doc.get("genre", Document.class);
-        if (genreDoc != null) {
-            genre = new Genre(genreDoc.getInteger("id"), genreDoc.getString("name"));
+     * @param reviews the reviews to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    @Override
+    public List<BatchOutcome> addReviews(List<BookUpdate<Review>> reviews) {
+        if (reviewBuckets != null) {
+            return addReviewsToBuckets(reviews);
         }
+        return applyBatch(reviews, Review::getUserId, review -> {
+            if (review.getReviewText() == null || review.getReviewText().trim().isEmpty()) {
+                return "Review text cannot be null or empty.";
+            }
+            if (review.getReviewDate() == null) {
+                return "Review date is required.";
+            }
+            return null;
+        }, BookDAOImpl::reviewUpsertStage, List.of(DocumentSchema.touchStage()));
+    }
 
-        List<Author> authors = new ArrayList<>();
-        List<Document> authorDocs = doc.getList("authors", Document.class);
-        if (authorDocs != null) {
-            for (Document authorDoc : authorDocs) {
-                authors.add(new Author(
-                        authorDoc.getString("name"),
-                        authorDoc.getString("birthdate"),
-                        authorDoc.getString("user_id")
-                ));
+    /**
+     * Applies a batch of reviews to the review buckets, one item at a time.
+     * Bucket appends depend on how full the current bucket is, so they cannot be combined into one write per book.
+     */
+    private List<BatchOutcome> addReviewsToBuckets(List<BookUpdate<Review>> reviews) {
+        List<BatchOutcome> outcomes = new ArrayList<>(reviews.size());
+        for (int i = 0; i < reviews.size(); i++) {
+            BookUpdate<Review> update = reviews.get(i);
+            String bookId = update != null ? update.getBookId() : null;
+            if (update == null || update.getPayload() == null || bookId == null || !ObjectId.isValid(bookId)
+                    || update.getPayload().getUserId() == null || update.getPayload().getReviewDate() == null) {
+                outcomes.add(new BatchOutcome(i, bookId, BatchOutcome.Status.INVALID, "Invalid review item."));
+                continue;
+            }
+            try {
+                if (reviewBuckets.upsert(new ObjectId(bookId), update.getPayload())) {
+                    outcomes.add(new BatchOutcome(i, bookId, BatchOutcome.Status.APPLIED, null));
+                } else {
+                    outcomes.add(new BatchOutcome(i, bookId, BatchOutcome.Status.BOOK_NOT_FOUND, "Book not found: " + bookId));
+                }
+            } catch (MongoServerException e) {
+                outcomes.add(new BatchOutcome(i, bookId, BatchOutcome.Status.FAILED, e.getMessage()));
             }
         }
+        return outcomes;
+    }
+
+    /**
+     * Validates, de-duplicates and groups batch items by book, writes one pipeline update per book
+     * in a single unordered {@code bulkWrite}, and maps the result back to per-item outcomes.
+     *
+     * @param updates        the submitted items.
+     * @param userIdOf       extracts the owning user's ID from an item.
+     * @param validate       returns an error message for an invalid item, or {@code null} if it is valid.
+     * @param upsertStage    builds the per-user upsert stage for an item.
+     * @param trailingStages stages appended after all upsert stages of a book.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    private <T> List<BatchOutcome> applyBatch(List<BookUpdate<T>> updates, Function<T, String> userIdOf,
+                                              Function<T, String> validate, Function<T, Bson> upsertStage,
+                                              List<Bson> trailingStages) {
+        BatchOutcome[] outcomes = new BatchOutcome[updates.size()];
+        Map<String, Map<String, Integer>> itemsByBook = new LinkedHashMap<>(); // bookId -> userId -> item index
 
-        List<Review> reviews = new ArrayList<>();
-        List<Document> reviewDocs = doc.getList("reviews", Document.class);
-        if (reviewDocs != null) {
-            for (Document reviewDoc : reviewDocs) {
-                reviews.add(new Review(
-                        reviewDoc.getString("user_id"),
-                        reviewDoc.getString("review_text"),
-                        LocalDate.parse(reviewDoc.getString("review_date")),
-                        reviewDoc.getString("username")
-                ));
+        for (int i = 0; i < updates.size(); i++) {
+            BookUpdate<T> update = updates.get(i);
+            String bookId = update != null ? update.getBookId() : null;
+            String problem = null;
+            if (update == null || update.getPayload() == null) {
+                problem = "Item cannot be null.";
+            } else if (bookId == null || !ObjectId.isValid(bookId)) {
+                problem = "Invalid ObjectId: " + bookId;
+            } else if (userIdOf.apply(update.getPayload()) == null) {
+                problem = "User ID is required.";
+            } else {
+                problem = validate.apply(update.getPayload());
+            }
+            if (problem != null) {
+                outcomes[i] = new BatchOutcome(i, bookId, BatchOutcome.Status.INVALID, problem);
+                continue;
+            }
+
+            Integer superseded = itemsByBook.computeIfAbsent(bookId, id -> new LinkedHashMap<>())
+                    .put(userIdOf.apply(update.getPayload()), i);
+            if (superseded != null) {
+                outcomes[superseded] = new BatchOutcome(superseded, bookId, BatchOutcome.Status.SUPERSEDED,
+                        "Replaced by item " + i + " in the same batch.");
             }
         }
 
-        List<Rating> ratings = new ArrayList<>();
-        List<Document> ratingDocs = doc.getList("ratings", Document.class);
-        if (ratingDocs != null) {
-            for (Document ratingDoc : ratingDocs) {
-                ratings.add(new Rating(
-                        ratingDoc.getString("user_id"),
-                        ratingDoc.getInteger("rating")
-                ));
+        if (!itemsByBook.isEmpty()) {
+            List<String> bookIds = new ArrayList<>(itemsByBook.keySet());
+            List<UpdateOneModel<Document>> models = new ArrayList<>(bookIds.size());
+            for (String bookId : bookIds) {
+                List<Bson> pipeline = new ArrayList<>();
+                for (int index : itemsByBook.get(bookId).values()) {
+                    pipeline.add(upsertStage.apply(updates.get(index).getPayload()));
+                }
+                pipeline.addAll(trailingStages);
+                models.add(new UpdateOneModel<>(eq("_id", new ObjectId(bookId)), pipeline));
+            }
+
+            Map<String, String> failedBooks = new HashMap<>();
+            long matched;
+            try {
+                matched = booksCollection.bulkWrite(models, new BulkWriteOptions().ordered(false)).getMatchedCount();
+            } catch (MongoBulkWriteException e) {
+                matched = e.getWriteResult().getMatchedCount();
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    failedBooks.put(bookIds.get(error.getIndex()), error.getMessage());
+                }
+            }
+
+            Set<String> missingBooks = new HashSet<>();
+            if (matched < bookIds.size() - failedBooks.size()) {
+                missingBooks.addAll(bookIds);
+                missingBooks.removeAll(failedBooks.keySet());
+                List<ObjectId> candidates = new ArrayList<>();
+                for (String bookId : missingBooks) {
+                    candidates.add(new ObjectId(bookId));
+                }
+                for (Document existing : booksCollection.find(Filters.in("_id", candidates)).projection(Projections.include("_id"))) {
+                    missingBooks.remove(existing.getObjectId("_id").toString());
+                }
+            }
+
+            for (Map.Entry<String, Map<String, Integer>> book : itemsByBook.entrySet()) {
+                String bookId = book.getKey();
+                for (int index : book.getValue().values()) {
+                    if (failedBooks.containsKey(bookId)) {
+                        outcomes[index] = new BatchOutcome(index, bookId, BatchOutcome.Status.FAILED, failedBooks.get(bookId));
+                    } else if (missingBooks.contains(bookId)) {
+                        outcomes[index] = new BatchOutcome(index, bookId, BatchOutcome.Status.BOOK_NOT_FOUND, "Book not found: " + bookId);
+                    } else {
+                        outcomes[index] = new BatchOutcome(index, bookId, BatchOutcome.Status.APPLIED, null);
+                    }
+                }
             }
         }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Builds the pipeline stage that sets the user's rating, replacing an existing entry in place.
+     */
+    private static Bson ratingUpsertStage(Rating rating) {
+        return upsertByUserStage("ratings", rating.getUserId(),
+                new Document("rating", literal(rating.getRating())),
+                new Document("user_id", literal(rating.getUserId())).append("rating", literal(rating.getRating())));
+    }
+
+    /**
+     * Builds the pipeline stage that sets the user's review, replacing the text and date of an existing entry in place.
+     */
+    private static Bson reviewUpsertStage(Review review) {
+        Date reviewDate = DocumentSchema.toStoredDate(review.getReviewDate());
+        return upsertByUserStage("reviews", review.getUserId(),
+                new Document("review_text", literal(review.getReviewText())).append("review_date", literal(reviewDate)),
+                new Document("user_id", literal(review.getUserId()))
+                        .append("review_text", literal(review.getReviewText()))
+                        .append("review_date", literal(reviewDate))
+                        .append("username", literal(review.getUsername())));
+    }
 
-        String userId = doc.getString("user_id");
+    /**
+     * Builds a {@code $set} pipeline stage that keeps at most one element per user in an embedded array.
+     * <p>
+     * If an element with the given {@code user_id} exists, {@code changes} are merged into it;
+     * otherwise {@code newElement} is appended. All values must already be wrapped with {@link #literal(Object)}.
+     * </p>
+     *
+     * @param arrayField the embedded array, e.g. "ratings".
+     * @param userId     the ID of the user owning the element.
+     * @param changes    the fields to overwrite on an existing element.
+     * @param newElement the element to append when the user has none yet.
+     * @return the {@code $set} stage as {@link Bson}.
+     */
+    private static Bson upsertByUserStage(String arrayField, String userId, Document changes, Document newElement) {
+        Document array = new Document("$ifNull", List.of("$" + arrayField, Collections.emptyList()));
+        Document userIds = new Document("$ifNull", List.of("$" + arrayField + ".user_id", Collections.emptyList()));
+        Document replaced = new Document("$map", new Document("input", array)
+                .append("as", "e")
+                .append("in", new Document("$cond", List.of(
+                        new Document("$eq", List.of("$$e.user_id", literal(userId))),
+                        new Document("$mergeObjects", List.of("$$e", changes)),
+                        "$$e"))));
+        Document appended = new Document("$concatArrays", List.of(array, List.of(newElement)));
+
+        return new Document("$set", new Document(arrayField, new Document("$cond", List.of(
+                new Document("$in", List.of(literal(userId), userIds)),
+                replaced,
+                appended))));
+    }
 
-        return new Book(id, title, isbn, genre, authors, reviews, ratings, userId);
+    /**
+     * Wraps a value in {@code $literal} so user-supplied text is never interpreted as a field path or operator.
+     */
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
     }
 }
@@ -0,0 +1,55 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
+
+/**
+ * Builds the query filters used to search the books collection.
+ */
+public final class BookSearchFilters {
+
+    private BookSearchFilters() {
+    }
+
+    /**
+     * Builds the query filter for a search type.
+     * The "keyword" type uses the text index; all other types match a case-insensitive regex on one field.
+     *
+     * @param type    the type of search.
+     * @param keyword the search keyword.
+     * @return the filter as {@link Bson}.
+     * @throws IllegalArgumentException if {@code type} is not a supported search type.
+     */
+    public static Bson forType(String type, String keyword) {
+        switch (type.toLowerCase()) {
+            case "keyword":
+                return Filters.text(keyword);
+            case "title":
+                return Filters.regex("title", ".*" + keyword + ".*", "i");
+            case "author":
+                return Filters.elemMatch("authors", Filters.regex("name", ".*" + keyword + ".*", "i"));
+            case "genre":
+                return Filters.regex("genre.name", ".*" + keyword + ".*", "i");
+            case "isbn":
+                return Filters.regex("isbn", ".*" + keyword + ".*", "i");
+            default:
+                throw new IllegalArgumentException("Invalid search type: " + type);
+        }
+    }
+
+    /**
+     * Builds the regex filter matching the keyword in any searchable field.
+     * Used when the text index is not available.
+     *
+     * @param keyword the search keyword.
+     * @return the filter as {@link Bson}.
+     */
+    public static Bson anyField(String keyword) {
+        String pattern = ".*" + keyword + ".*";
+        return Filters.or(
+                Filters.regex("title", pattern, "i"),
+                Filters.elemMatch("authors", Filters.regex("name", pattern, "i")),
+                Filters.regex("genre.name", pattern, "i"),
+                Filters.regex("isbn", pattern, "i"));
+    }
+}
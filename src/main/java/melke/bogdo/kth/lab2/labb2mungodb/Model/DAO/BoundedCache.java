@@ -0,0 +1,270 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, size-bounded cache with per-entry expiry and frequency-aware admission.
+ * <p>
+ * Entries are kept in least-recently-used order. When the cache is full, a new key only replaces the
+ * least recently used entry if it has been requested more often recently (TinyLFU admission). Access
+ * frequencies are tracked approximately in a small count-min sketch whose counters are halved periodically,
+ * so one-off lookups, such as a scan over many different keys, cannot flush frequently used entries.
+ * </p>
+ * <p>
+ * Expired entries are dropped lazily: when they are looked up, when one is the eviction candidate, and by a full
+ * sweep that runs at most once per {@code capacity} inserts into a full cache, so a miss stays cheap even when the
+ * cache is under pressure.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class BoundedCache<K, V> {
+
+    private static final int MAX_FREQUENCY = 15;
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final int[] sketch;
+    private final int sketchMask;
+    private final int resetThreshold;
+    private int sketchAdditions;
+    private int insertsSinceSweep;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs a new {@code BoundedCache}.
+     *
+     * @param capacity      the maximum number of entries.
+     * @param ttlMillis     how long an entry stays valid after it was stored, in milliseconds.
+     * @throws IllegalArgumentException if {@code capacity} or {@code ttlMillis} is not positive.
+     */
+    public BoundedCache(int capacity, long ttlMillis) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache capacity and TTL must be positive.");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        int sketchSize = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+        this.sketch = new int[sketchSize];
+        this.sketchMask = sketchSize - 1;
+        this.resetThreshold = 10 * capacity;
+    }
+
+    /**
+     * Returns the cached value for a key, or {@code null} if it is absent or expired.
+     *
+     * @param key the key.
+     * @return the cached value, or {@code null}.
+     */
+    public synchronized V get(K key) {
+        recordAccess(key);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Stores a value. If the cache is full, the value is only admitted when its key is requested
+     * more frequently than the key of the least recently used entry, which is then evicted.
+     *
+     * @param key   the key.
+     * @param value the value to cache.
+     */
+    public synchronized void put(K key, V value) {
+        long now = System.nanoTime();
+        Entry<V> entry = new Entry<>(value, now + ttlNanos);
+        if (entries.containsKey(key) || entries.size() < capacity) {
+            entries.put(key, entry);
+            return;
+        }
+
+        if (++insertsSinceSweep >= capacity) {
+            insertsSinceSweep = 0;
+            removeExpired(now);
+            if (entries.size() < capacity) {
+                entries.put(key, entry);
+                return;
+            }
+        }
+
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = iterator.next();
+        if (victim.getValue().isExpired(now)) {
+            iterator.remove();
+            entries.put(key, entry);
+        } else if (frequency(key) > frequency(victim.getKey())) {
+            iterator.remove();
+            evictions++;
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @param key the key.
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return the current {@link Stats}.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size());
+    }
+
+    private void removeExpired(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private void recordAccess(K key) {
+        int hash = spread(key.hashCode());
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            if (sketch[index] < MAX_FREQUENCY) {
+                sketch[index]++;
+            }
+        }
+        if (++sketchAdditions >= resetThreshold) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>= 1; // Age all counters so old popularity fades
+            }
+            sketchAdditions /= 2;
+        }
+    }
+
+    private int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            frequency = Math.min(frequency, sketch[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = hash * (0x9E3779B9 + 2 * row + 1);
+        return (h ^ (h >>> 16)) & sketchMask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+
+    /**
+     * A cached value and the time at which it expires.
+     */
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the cache counters.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        /**
+         * Gets the number of lookups that found a valid entry.
+         *
+         * @return the hit count.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Gets the number of lookups that found no valid entry.
+         *
+         * @return the miss count.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the number of entries removed to make room for new ones.
+         *
+         * @return the eviction count.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Gets the number of entries currently held.
+         *
+         * @return the cache size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns a string representation of the {@code Stats} object.
+         *
+         * @return a string containing all counters.
+         */
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+}
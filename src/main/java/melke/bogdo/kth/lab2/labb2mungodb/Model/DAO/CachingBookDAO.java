@@ -0,0 +1,267 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeListener;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A read-through caching decorator for any {@link BookDAO}.
+ * <p>
+ * Single books are cached by ID, and search results, the full catalog and the book summaries are cached by query.
+ * Both caches are {@link BoundedCache} instances, so they are limited in size, prefer frequently requested entries
+ * and expire entries after a fixed time. Every write through this DAO invalidates the affected book and all cached
+ * query results before it returns, so a caller always reads its own writes. Writes made by other processes are
+ * picked up once the cached entries expire, or immediately when this DAO is registered with a
+ * {@link BookChangeStream}, which reports them as {@link BookChangeEvent}s.
+ * </p>
+ * <p>
+ * Paginated reads, streams and review pages are passed to the wrapped DAO without caching. Cached {@link Book}
+ * objects are shared between callers and must not be modified.
+ * </p>
+ */
+public class CachingBookDAO implements BookDAO, BookChangeListener {
+
+    private static final String ALL_BOOKS_KEY = "all";
+    private static final String SUMMARIES_KEY = "summaries";
+
+    private final BookDAO delegate;
+    private final BoundedCache<String, Book> bookCache;
+    private final BoundedCache<String, List<Book>> queryCache;
+    private final BoundedCache<String, List<BookSummary>> summaryCache;
+
+    /**
+     * Incremented by every write. A value loaded from the wrapped DAO is only cached if no write
+     * happened while it was loading, so a slow read cannot put a stale value back after an invalidation.
+     */
+    private final AtomicLong writeGeneration = new AtomicLong();
+
+    /**
+     * Constructs a new {@code CachingBookDAO}.
+     *
+     * @param delegate       the DAO that is read from on cache misses and receives all writes.
+     * @param maxBooks       the maximum number of single books to cache.
+     * @param maxQueries     the maximum number of search results to cache.
+     * @param ttlMillis      how long cached entries stay valid, in milliseconds.
+     * @throws IllegalArgumentException if {@code delegate} is null or a size or TTL is not positive.
+     */
+    public CachingBookDAO(BookDAO delegate, int maxBooks, int maxQueries, long ttlMillis) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("The wrapped BookDAO must be provided.");
+        }
+        this.delegate = delegate;
+        this.bookCache = new BoundedCache<>(maxBooks, ttlMillis);
+        this.queryCache = new BoundedCache<>(maxQueries, ttlMillis);
+        this.summaryCache = new BoundedCache<>(1, ttlMillis);
+    }
+
+    /**
+     * Gets the counters of the single-book cache.
+     *
+     * @return a {@link BoundedCache.Stats} snapshot.
+     */
+    public BoundedCache.Stats getBookCacheStats() {
+        return bookCache.getStats();
+    }
+
+    /**
+     * Gets the counters of the query result cache.
+     *
+     * @return a {@link BoundedCache.Stats} snapshot.
+     */
+    public BoundedCache.Stats getQueryCacheStats() {
+        return queryCache.getStats();
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        long generation = writeGeneration.get();
+        List<Book> books = queryCache.get(ALL_BOOKS_KEY);
+        if (books == null) {
+            books = delegate.getAllBooks();
+            cacheIfUnchanged(queryCache, ALL_BOOKS_KEY, books, generation);
+        }
+        return new ArrayList<>(books);
+    }
+
+    @Override
+    public List<BookSummary> getBookSummaries() {
+        long generation = writeGeneration.get();
+        List<BookSummary> summaries = summaryCache.get(SUMMARIES_KEY);
+        if (summaries == null) {
+            summaries = delegate.getBookSummaries();
+            cacheIfUnchanged(summaryCache, SUMMARIES_KEY, summaries, generation);
+        }
+        return new ArrayList<>(summaries);
+    }
+
+    @Override
+    public Book getBookById(String bookId) {
+        long generation = writeGeneration.get();
+        Book book = bookId != null ? bookCache.get(bookId) : null;
+        if (book == null) {
+            book = delegate.getBookById(bookId);
+            if (book != null) {
+                cacheIfUnchanged(bookCache, bookId, book, generation);
+            }
+        }
+        return book;
+    }
+
+    @Override
+    public List<Book> searchBooks(String type, String keyword) {
+        if (type == null || keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search type and keyword must be provided.");
+        }
+        String key = type.toLowerCase(Locale.ROOT) + '\u0000' + keyword.trim().toLowerCase(Locale.ROOT);
+        long generation = writeGeneration.get();
+        List<Book> results = queryCache.get(key);
+        if (results == null) {
+            results = delegate.searchBooks(type, keyword);
+            cacheIfUnchanged(queryCache, key, results, generation);
+        }
+        return new ArrayList<>(results);
+    }
+
+    @Override
+    public void addBook(Book book) {
+        try {
+            delegate.addBook(book);
+        } finally {
+            invalidateQueries();
+        }
+    }
+
+    @Override
+    public void deleteBook(String bookId) {
+        try {
+            delegate.deleteBook(bookId);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    @Override
+    public void addReview(String bookId, Review review) {
+        try {
+            delegate.addReview(bookId, review);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    @Override
+    public Page<Review> getReviewsPage(String bookId, String continuationToken) {
+        return delegate.getReviewsPage(bookId, continuationToken);
+    }
+
+    @Override
+    public void addRating(String bookId, Rating rating) {
+        try {
+            delegate.addRating(bookId, rating);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> addRatings(List<BookUpdate<Rating>> ratings) {
+        try {
+            return delegate.addRatings(ratings);
+        } finally {
+            invalidateBooks(ratings);
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> addReviews(List<BookUpdate<Review>> reviews) {
+        try {
+            return delegate.addReviews(reviews);
+        } finally {
+            invalidateBooks(reviews);
+        }
+    }
+
+    @Override
+    public Page<Book> getBooksPage(String continuationToken, int pageSize) {
+        return delegate.getBooksPage(continuationToken, pageSize);
+    }
+
+    @Override
+    public Page<Book> searchBooksPage(String type, String keyword, String continuationToken, int pageSize) {
+        return delegate.searchBooksPage(type, keyword, continuationToken, pageSize);
+    }
+
+    @Override
+    public Stream<Book> streamAllBooks(int batchSize) {
+        return delegate.streamAllBooks(batchSize);
+    }
+
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize) {
+        return delegate.streamSearchBooks(type, keyword, batchSize);
+    }
+
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis) {
+        return delegate.streamSearchBooks(type, keyword, batchSize, maxTimeMillis);
+    }
+
+    /**
+     * Drops the cached entries affected by a change made by any client: the changed book and all query results,
+     * or everything on a {@link BookChangeEvent.Type#RELOAD}.
+     *
+     * @param event the {@link BookChangeEvent} describing the change.
+     */
+    @Override
+    public void onBookChange(BookChangeEvent event) {
+        if (event.getType() == BookChangeEvent.Type.RELOAD) {
+            writeGeneration.incrementAndGet();
+            bookCache.invalidateAll();
+            invalidateQueries();
+        } else {
+            invalidateBook(event.getBookId());
+        }
+    }
+
+    private <V> void cacheIfUnchanged(BoundedCache<String, V> cache, String key, V value, long generation) {
+        if (writeGeneration.get() == generation) {
+            cache.put(key, value);
+        }
+    }
+
+    private void invalidateBook(String bookId) {
+        writeGeneration.incrementAndGet();
+        if (bookId != null) {
+            bookCache.invalidate(bookId);
+        }
+        invalidateQueries();
+    }
+
+    private void invalidateBooks(List<? extends BookUpdate<?>> updates) {
+        writeGeneration.incrementAndGet();
+        if (updates != null) {
+            for (BookUpdate<?> update : updates) {
+                if (update != null && update.getBookId() != null) {
+                    bookCache.invalidate(update.getBookId());
+                }
+            }
+        }
+        invalidateQueries();
+    }
+
+    /**
+     * Drops all cached query results, since any write can change which books match a query
+     * or the ratings shown in the results.
+     */
+    private void invalidateQueries() {
+        writeGeneration.incrementAndGet();
+        queryCache.invalidateAll();
+        summaryCache.invalidateAll();
+    }
+}
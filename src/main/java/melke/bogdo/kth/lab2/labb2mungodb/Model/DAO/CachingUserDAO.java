@@ -0,0 +1,78 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
+import org.bson.types.ObjectId;
+
+/**
+ * A caching decorator for any {@link UserDAO} that keeps recently used users by ID.
+ * <p>
+ * A successful {@link #authenticate} stores the logged-in user, so later lookups by ID, such as the one made
+ * for every review submission, do not query the database. Credential checks always go to the wrapped DAO.
+ * Users cached after authentication do not carry their password hash.
+ * </p>
+ */
+public class CachingUserDAO implements UserDAO {
+
+    private final UserDAO delegate;
+    private final BoundedCache<String, User> userCache;
+
+    /**
+     * Constructs a new {@code CachingUserDAO}.
+     *
+     * @param delegate  the DAO that is read from on cache misses.
+     * @param maxUsers  the maximum number of users to cache.
+     * @param ttlMillis how long cached users stay valid, in milliseconds.
+     * @throws IllegalArgumentException if {@code delegate} is null or a size or TTL is not positive.
+     */
+    public CachingUserDAO(UserDAO delegate, int maxUsers, long ttlMillis) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("The wrapped UserDAO must be provided.");
+        }
+        this.delegate = delegate;
+        this.userCache = new BoundedCache<>(maxUsers, ttlMillis);
+    }
+
+    /**
+     * Gets the counters of the user cache.
+     *
+     * @return a {@link BoundedCache.Stats} snapshot.
+     */
+    public BoundedCache.Stats getUserCacheStats() {
+        return userCache.getStats();
+    }
+
+    @Override
+    public User getUserById(ObjectId userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null.");
+        }
+        User user = userCache.get(userId.toHexString());
+        if (user == null) {
+            user = delegate.getUserById(userId);
+            if (user != null) {
+                userCache.put(user.getId(), user);
+            }
+        }
+        return user;
+    }
+
+    @Override
+    public User getUserByUsername(String username) {
+        return delegate.getUserByUsername(username);
+    }
+
+    @Override
+    public boolean validateUser(String username, String passwordHash) {
+        return delegate.validateUser(username, passwordHash);
+    }
+
+    @Override
+    public User authenticate(String username, String passwordHash) {
+        User user = delegate.authenticate(username, passwordHash);
+        if (user != null) {
+            userCache.put(user.getId(), user);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,163 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import org.bson.BSONException;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A copy of the whole book catalog together with the change stream resume token it is current with, saved when the
+ * application stops, so the next start can load the catalog from disk and resume the stream after the token instead
+ * of reading every book from the database.
+ * <p>
+ * The file is a sequence of BSON documents: a header with the format version, the resume token and the number of
+ * books, followed by the books encoded by the {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec}.
+ * It is written to a temporary file that then replaces the old one, so a crash while saving leaves the previous
+ * snapshot in place. A snapshot is consistent with its token as long as every change made after the token is
+ * applied to it; an older snapshot is therefore still usable, and only costs a longer replay.
+ * </p>
+ */
+public final class CatalogSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final BsonDocument resumeToken;
+    private final List<Book> books;
+
+    private CatalogSnapshot(BsonDocument resumeToken, List<Book> books) {
+        this.resumeToken = resumeToken;
+        this.books = books;
+    }
+
+    /**
+     * Gets the resume token of the last change the snapshot includes.
+     *
+     * @return the resume token.
+     */
+    public BsonDocument getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * Gets the books of the catalog.
+     *
+     * @return the {@link List} of books, in the order they were saved.
+     */
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Saves a catalog with the resume token it is current with, replacing any earlier snapshot in the file.
+     * The file's directory is created if needed.
+     *
+     * @param file        the snapshot file.
+     * @param resumeToken the resume token of the last change applied to {@code books}.
+     * @param books       the catalog.
+     * @throws IOException              if the file cannot be written.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public static void save(Path file, BsonDocument resumeToken, Collection<Book> books) throws IOException {
+        if (file == null || resumeToken == null || books == null) {
+            throw new IllegalArgumentException("The file, the resume token and the books must be provided.");
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                BsonDocument header = new BsonDocument("version", new BsonInt32(FORMAT_VERSION))
+                        .append("resumeToken", resumeToken)
+                        .append("books", new BsonInt64(books.size()));
+                BasicOutputBuffer buffer = new BasicOutputBuffer();
+                try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+                    new BsonDocumentCodec().encode(writer, header, ENCODER_CONTEXT);
+                }
+                for (Book book : books) {
+                    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+                        BookCodecs.getBookCodec().encode(writer, book, ENCODER_CONTEXT);
+                    }
+                    if (buffer.getSize() >= 64 * 1024) {
+                        buffer.pipe(output);
+                        buffer.truncateToPosition(0);
+                    }
+                }
+                buffer.pipe(output);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a snapshot saved by {@link #save(Path, BsonDocument, Collection)}.
+     *
+     * @param file the snapshot file.
+     * @return the snapshot, or {@code null} if the file does not exist.
+     * @throws IOException if the file cannot be read, or is not a complete snapshot of a known format.
+     */
+    public static CatalogSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            BsonDocument header = new BsonDocumentCodec().decode(new BsonBinaryReader(readDocument(input)), DECODER_CONTEXT);
+            if (!header.isInt32("version") || header.getInt32("version").getValue() != FORMAT_VERSION
+                    || !header.isDocument("resumeToken") || !header.isInt64("books")) {
+                throw new IOException("Unknown catalog snapshot format in " + file);
+            }
+            long count = header.getInt64("books").getValue();
+            List<Book> books = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE));
+            for (long i = 0; i < count; i++) {
+                books.add(BookCodecs.getBookCodec().decode(new BsonBinaryReader(readDocument(input)), DECODER_CONTEXT));
+            }
+            if (input.read() != -1) {
+                throw new IOException("Unexpected data after the last book in " + file);
+            }
+            return new CatalogSnapshot(header.getDocument("resumeToken"), books);
+        } catch (BSONException e) {
+            throw new IOException("Corrupt catalog snapshot in " + file, e);
+        }
+    }
+
+    /**
+     * Reads one BSON document, whose first four bytes are its little-endian length.
+     */
+    private static ByteBuffer readDocument(DataInputStream input) throws IOException {
+        byte[] lengthBytes = new byte[4];
+        input.readFully(lengthBytes);
+        int length = ByteBuffer.wrap(lengthBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (length < 5) {
+            throw new IOException("Invalid BSON document length " + length);
+        }
+        byte[] document = new byte[length];
+        System.arraycopy(lengthBytes, 0, document, 0, 4);
+        input.readFully(document, 4, length - 4);
+        return ByteBuffer.wrap(document);
+    }
+}
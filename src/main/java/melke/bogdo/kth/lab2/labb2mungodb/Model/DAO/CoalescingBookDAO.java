@@ -0,0 +1,247 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeListener;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BookDAO} decorator that lets concurrent identical reads share one database query (single flight).
+ * <p>
+ * The full catalog, the book summaries, single books and searches are identified by a query key. The first caller
+ * for a key runs the query; callers asking for the same key while it runs wait for and share its result. A finished
+ * result keeps being shared for a configurable staleness window, so a burst of refreshes arriving just after a
+ * query completes does not repeat it. A failed query is not shared with later callers.
+ * </p>
+ * <p>
+ * Every write through this DAO, and every change reported by a {@link BookChangeStream} it is registered with,
+ * discards all shared results, so callers arriving after a write never see data from before it. Lists are copied for every caller, since callers may modify them.
+ * </p>
+ */
+public class CoalescingBookDAO implements BookDAO, BookChangeListener {
+
+    /**
+     * Number of retained results above which expired ones are swept, so keys that are never
+     * requested again do not accumulate.
+     */
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final BookDAO delegate;
+    private final long staleNanos;
+    private final ConcurrentHashMap<String, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code CoalescingBookDAO}.
+     *
+     * @param delegate          the DAO running the queries and receiving all writes.
+     * @param staleWindowMillis how long a finished result may still be shared, in milliseconds;
+     *                          0 shares only queries that are still running.
+     * @throws IllegalArgumentException if {@code delegate} is null or the window is negative.
+     */
+    public CoalescingBookDAO(BookDAO delegate, long staleWindowMillis) {
+        if (delegate == null || staleWindowMillis < 0) {
+            throw new IllegalArgumentException("A wrapped BookDAO and a non-negative staleness window must be provided.");
+        }
+        this.delegate = delegate;
+        this.staleNanos = staleWindowMillis * 1_000_000;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return new ArrayList<>(coalesce("all", delegate::getAllBooks));
+    }
+
+    @Override
+    public List<BookSummary> getBookSummaries() {
+        return new ArrayList<>(coalesce("summaries", delegate::getBookSummaries));
+    }
+
+    @Override
+    public Book getBookById(String bookId) {
+        return coalesce("id\u0000" + bookId, () -> delegate.getBookById(bookId));
+    }
+
+    @Override
+    public List<Book> searchBooks(String type, String keyword) {
+        if (type == null || keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search type and keyword must be provided.");
+        }
+        String key = "search\u0000" + type.toLowerCase(Locale.ROOT) + '\u0000' + keyword;
+        return new ArrayList<>(coalesce(key, () -> delegate.searchBooks(type, keyword)));
+    }
+
+    @Override
+    public void addBook(Book book) {
+        try {
+            delegate.addBook(book);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public void deleteBook(String bookId) {
+        try {
+            delegate.deleteBook(bookId);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public void addReview(String bookId, Review review) {
+        try {
+            delegate.addReview(bookId, review);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public Page<Review> getReviewsPage(String bookId, String continuationToken) {
+        return delegate.getReviewsPage(bookId, continuationToken);
+    }
+
+    @Override
+    public void addRating(String bookId, Rating rating) {
+        try {
+            delegate.addRating(bookId, rating);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> addRatings(List<BookUpdate<Rating>> ratings) {
+        try {
+            return delegate.addRatings(ratings);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public List<BatchOutcome> addReviews(List<BookUpdate<Review>> reviews) {
+        try {
+            return delegate.addReviews(reviews);
+        } finally {
+            flights.clear();
+        }
+    }
+
+    @Override
+    public Page<Book> getBooksPage(String continuationToken, int pageSize) {
+        return delegate.getBooksPage(continuationToken, pageSize);
+    }
+
+    @Override
+    public Page<Book> searchBooksPage(String type, String keyword, String continuationToken, int pageSize) {
+        return delegate.searchBooksPage(type, keyword, continuationToken, pageSize);
+    }
+
+    @Override
+    public Stream<Book> streamAllBooks(int batchSize) {
+        return delegate.streamAllBooks(batchSize);
+    }
+
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize) {
+        return delegate.streamSearchBooks(type, keyword, batchSize);
+    }
+
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis) {
+        return delegate.streamSearchBooks(type, keyword, batchSize, maxTimeMillis);
+    }
+
+    /**
+     * Discards all shared results after a change made by any client.
+     *
+     * @param event the {@link BookChangeEvent} describing the change.
+     */
+    @Override
+    public void onBookChange(BookChangeEvent event) {
+        flights.clear();
+    }
+
+    /**
+     * Returns the shared result for a key, running the query only if no running or fresh flight exists.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String key, Supplier<T> query) {
+        while (true) {
+            Flight<T> existing = (Flight<T>) flights.get(key);
+            if (existing != null && existing.isShareable(System.nanoTime(), staleNanos)) {
+                return existing.await();
+            }
+
+            Flight<T> flight = new Flight<>();
+            boolean claimed = existing == null
+                    ? flights.putIfAbsent(key, flight) == null
+                    : flights.replace(key, existing, flight);
+            if (!claimed) {
+                continue; // Another caller started a flight first; share it
+            }
+
+            T result;
+            try {
+                result = query.get();
+            } catch (RuntimeException | Error e) {
+                flights.remove(key, flight);
+                flight.future.completeExceptionally(e);
+                throw e;
+            }
+            flight.completedAt = System.nanoTime();
+            flight.future.complete(result);
+            if (staleNanos == 0) {
+                flights.remove(key, flight);
+            } else if (flights.size() > SWEEP_THRESHOLD) {
+                long now = System.nanoTime();
+                flights.values().removeIf(other -> !other.isShareable(now, staleNanos));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One execution of a query and the time it finished.
+     */
+    private static final class Flight<T> {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        private boolean isShareable(long now, long staleNanos) {
+            if (!future.isDone()) {
+                return true;
+            }
+            return !future.isCompletedExceptionally() && now - completedAt < staleNanos;
+        }
+
+        private T await() {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for a shared query.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
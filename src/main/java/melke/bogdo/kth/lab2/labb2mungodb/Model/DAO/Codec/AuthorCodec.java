@@ -0,0 +1,55 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Encodes and decodes an element of the embedded {@code authors} array ({@code name}, {@code birthdate},
+ * {@code user_id}) of a book.
+ */
+public class AuthorCodec implements Codec<Author> {
+
+    @Override
+    public void encode(BsonWriter writer, Author author, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        CodecSupport.writeString(writer, "name", author.getName());
+        CodecSupport.writeString(writer, "birthdate", author.getBirthdate());
+        CodecSupport.writeString(writer, "user_id", author.getUserId());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Author decode(BsonReader reader, DecoderContext decoderContext) {
+        String name = null;
+        String birthdate = null;
+        String userId = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "name":
+                    name = CodecSupport.readString(reader);
+                    break;
+                case "birthdate":
+                    birthdate = CodecSupport.readString(reader);
+                    break;
+                case "user_id":
+                    userId = CodecSupport.readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Author(name, birthdate, userId);
+    }
+
+    @Override
+    public Class<Author> getEncoderClass() {
+        return Author.class;
+    }
+}
@@ -0,0 +1,249 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.RatingAggregates;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes and decodes {@link Book} objects directly from and to BSON, without building an intermediate
+ * {@link org.bson.Document} tree.
+ * <p>
+ * Decoding reads each field straight into the model objects, delegating embedded genres, authors, reviews and
+ * ratings to their codecs, and skips fields it does not know, such as the rating histogram or a text search score.
+ * Stored rating aggregates are carried over to the book. Encoding writes the complete book document in the current
+ * {@link DocumentSchema} version, including rating aggregates computed from its ratings and the write time, and
+ * assigns a new {@link ObjectId} to books without an ID.
+ * </p>
+ * <p>
+ * Instances are stateless and thread-safe; they are obtained from {@link BookCodecs}.
+ * </p>
+ */
+public class BookCodec implements CollectibleCodec<Book> {
+
+    private final Codec<Genre> genreCodec;
+    private final Codec<Author> authorCodec;
+    private final Codec<Review> reviewCodec;
+    private final Codec<Rating> ratingCodec;
+
+    /**
+     * Constructs a new {@code BookCodec} using the given codecs for the embedded objects.
+     *
+     * @param genreCodec  the codec for the {@code genre} sub-document.
+     * @param authorCodec the codec for the elements of {@code authors}.
+     * @param reviewCodec the codec for the elements of {@code reviews}.
+     * @param ratingCodec the codec for the elements of {@code ratings}.
+     */
+    public BookCodec(Codec<Genre> genreCodec, Codec<Author> authorCodec, Codec<Review> reviewCodec,
+                     Codec<Rating> ratingCodec) {
+        this.genreCodec = genreCodec;
+        this.authorCodec = authorCodec;
+        this.reviewCodec = reviewCodec;
+        this.ratingCodec = ratingCodec;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Book book, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (book.getId() != null) {
+            writer.writeObjectId("_id", new ObjectId(book.getId()));
+        }
+        CodecSupport.writeString(writer, "title", book.getTitle());
+        CodecSupport.writeString(writer, "isbn", book.getIsbn());
+        if (book.getGenre() != null) {
+            writer.writeName("genre");
+            genreCodec.encode(writer, book.getGenre(), encoderContext);
+        } else {
+            writer.writeNull("genre");
+        }
+        writeList(writer, "authors", book.getAuthors(), authorCodec, encoderContext);
+        writeList(writer, "reviews", book.getReviews(), reviewCodec, encoderContext);
+        writeList(writer, "ratings", book.getRatings(), ratingCodec, encoderContext);
+        CodecSupport.writeString(writer, "user_id", book.getUserId());
+        writeRatingAggregates(writer, book.getRatings());
+        writer.writeDateTime(DocumentSchema.UPDATED_AT, System.currentTimeMillis());
+        writer.writeInt32(DocumentSchema.VERSION, DocumentSchema.BOOKS_VERSION);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Book decode(BsonReader reader, DecoderContext decoderContext) {
+        String id = null;
+        String title = null;
+        String isbn = null;
+        Genre genre = null;
+        List<Author> authors = null;
+        List<Review> reviews = null;
+        List<Rating> ratings = null;
+        String userId = null;
+        Long ratingCount = null;
+        Long ratingSum = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id":
+                    id = CodecSupport.readString(reader);
+                    break;
+                case "title":
+                    title = CodecSupport.readString(reader);
+                    break;
+                case "isbn":
+                    isbn = CodecSupport.readString(reader);
+                    break;
+                case "genre":
+                    if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                        genre = genreCodec.decode(reader, decoderContext);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "authors":
+                    authors = readList(reader, authorCodec, decoderContext);
+                    break;
+                case "reviews":
+                    reviews = readList(reader, reviewCodec, decoderContext);
+                    break;
+                case "ratings":
+                    ratings = readList(reader, ratingCodec, decoderContext);
+                    break;
+                case "user_id":
+                    userId = CodecSupport.readString(reader);
+                    break;
+                case RatingAggregates.COUNT:
+                    ratingCount = CodecSupport.readLong(reader);
+                    break;
+                case RatingAggregates.SUM:
+                    ratingSum = CodecSupport.readLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Book book = new Book(id, title, isbn, genre,
+                authors != null ? authors : new ArrayList<>(),
+                reviews != null ? reviews : new ArrayList<>(),
+                ratings != null ? ratings : new ArrayList<>(),
+                userId);
+        if (ratingCount != null && ratingSum != null) {
+            book.setRatingAggregates(ratingCount.intValue(), ratingSum);
+        }
+        return book;
+    }
+
+    @Override
+    public Class<Book> getEncoderClass() {
+        return Book.class;
+    }
+
+    @Override
+    public Book generateIdIfAbsentFromDocument(Book book) {
+        if (book.getId() == null) {
+            book.setId(new ObjectId().toHexString());
+        }
+        return book;
+    }
+
+    @Override
+    public boolean documentHasId(Book book) {
+        return book.getId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(Book book) {
+        if (book.getId() == null) {
+            throw new IllegalStateException("The book does not have an ID.");
+        }
+        return new BsonObjectId(new ObjectId(book.getId()));
+    }
+
+    Codec<Genre> getGenreCodec() {
+        return genreCodec;
+    }
+
+    Codec<Author> getAuthorCodec() {
+        return authorCodec;
+    }
+
+    Codec<Review> getReviewCodec() {
+        return reviewCodec;
+    }
+
+    Codec<Rating> getRatingCodec() {
+        return ratingCodec;
+    }
+
+    /**
+     * Reads an array of embedded documents; elements that are not documents are skipped.
+     *
+     * @return the decoded elements, or an empty list if the value is not an array.
+     */
+    static <T> List<T> readList(BsonReader reader, Codec<T> codec, DecoderContext decoderContext) {
+        List<T> values = new ArrayList<>();
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return values;
+        }
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                values.add(codec.decode(reader, decoderContext));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    private static <T> void writeList(BsonWriter writer, String name, List<T> values, Codec<T> codec,
+                                      EncoderContext encoderContext) {
+        writer.writeStartArray(name);
+        if (values != null) {
+            for (T value : values) {
+                codec.encode(writer, value, encoderContext);
+            }
+        }
+        writer.writeEndArray();
+    }
+
+    /**
+     * Writes the count, sum and per-star histogram described by {@link RatingAggregates}.
+     */
+    private static void writeRatingAggregates(BsonWriter writer, List<Rating> ratings) {
+        int[] histogram = new int[RatingAggregates.MAX_RATING + 1];
+        int count = 0;
+        long sum = 0;
+        if (ratings != null) {
+            for (Rating rating : ratings) {
+                Integer value = rating.getRating();
+                if (value != null && value >= RatingAggregates.MIN_RATING && value <= RatingAggregates.MAX_RATING) {
+                    histogram[value]++;
+                    count++;
+                    sum += value;
+                }
+            }
+        }
+        writer.writeInt32(RatingAggregates.COUNT, count);
+        writer.writeInt64(RatingAggregates.SUM, sum);
+        writer.writeStartDocument(RatingAggregates.HISTOGRAM);
+        for (int star = RatingAggregates.MIN_RATING; star <= RatingAggregates.MAX_RATING; star++) {
+            writer.writeInt32(String.valueOf(star), histogram[star]);
+        }
+        writer.writeEndDocument();
+    }
+}
@@ -0,0 +1,78 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provides the codecs for the book model and registries containing them.
+ * <p>
+ * The codecs are stateless, so a single instance of each is shared.
+ * </p>
+ */
+public final class BookCodecs {
+
+    private static final GenreCodec GENRE_CODEC = new GenreCodec();
+    private static final AuthorCodec AUTHOR_CODEC = new AuthorCodec();
+    private static final ReviewCodec REVIEW_CODEC = new ReviewCodec();
+    private static final RatingCodec RATING_CODEC = new RatingCodec();
+    private static final BookCodec BOOK_CODEC = new BookCodec(GENRE_CODEC, AUTHOR_CODEC, REVIEW_CODEC, RATING_CODEC);
+    private static final LazyBookCodec LAZY_BOOK_CODEC = new LazyBookCodec(BOOK_CODEC);
+
+    private static final CodecRegistry MODEL_CODECS =
+            CodecRegistries.fromCodecs(BOOK_CODEC, LAZY_BOOK_CODEC, GENRE_CODEC, AUTHOR_CODEC, REVIEW_CODEC, RATING_CODEC);
+
+    private BookCodecs() {
+    }
+
+    /**
+     * Gets the shared {@link BookCodec}.
+     *
+     * @return the {@link BookCodec}.
+     */
+    public static BookCodec getBookCodec() {
+        return BOOK_CODEC;
+    }
+
+    /**
+     * Gets the shared {@link LazyBookCodec}.
+     *
+     * @return the {@link LazyBookCodec}.
+     */
+    public static LazyBookCodec getLazyBookCodec() {
+        return LAZY_BOOK_CODEC;
+    }
+
+    /**
+     * Creates a registry that resolves the model codecs first and every other type from a base registry.
+     *
+     * @param base the registry for all other types, usually the database's registry.
+     * @return the combined {@link CodecRegistry}.
+     */
+    public static CodecRegistry withModelCodecs(CodecRegistry base) {
+        return CodecRegistries.fromRegistries(MODEL_CODECS, base);
+    }
+
+    /**
+     * Gets the {@code books} collection of a database, reading and writing {@link Book} objects
+     * through the {@link BookCodec}.
+     *
+     * @param database the database.
+     * @return the typed {@link MongoCollection}.
+     */
+    public static MongoCollection<Book> getBooksCollection(MongoDatabase database) {
+        return database.getCollection("books", Book.class).withCodecRegistry(withModelCodecs(database.getCodecRegistry()));
+    }
+
+    /**
+     * Gets the {@code books} collection of a database, reading {@link LazyBook}s through the {@link LazyBookCodec}.
+     *
+     * @param database the database.
+     * @return the typed {@link MongoCollection}.
+     */
+    public static MongoCollection<LazyBook> getLazyBooksCollection(MongoDatabase database) {
+        return database.getCollection("books", LazyBook.class).withCodecRegistry(withModelCodecs(database.getCodecRegistry()));
+    }
+}
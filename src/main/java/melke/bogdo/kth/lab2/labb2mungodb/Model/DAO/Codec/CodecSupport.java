@@ -0,0 +1,127 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Reading and writing helpers shared by the model codecs.
+ * <p>
+ * Readers are lenient about the stored types, since documents written by older versions of the application, by
+ * the importer or by hand do not always use the same BSON type for a field. Values of an unexpected type are
+ * skipped and read as absent.
+ * </p>
+ */
+final class CodecSupport {
+
+    private CodecSupport() {
+    }
+
+    /**
+     * Reads the current value as a string.
+     *
+     * @return the string, or {@code null} if the value is null or not a string.
+     */
+    static String readString(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case STRING:
+                return reader.readString();
+            case SYMBOL:
+                return reader.readSymbol();
+            case OBJECT_ID:
+                return reader.readObjectId().toHexString();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Reads the current value as a number.
+     *
+     * @return the value as a {@code long}, or {@code null} if the value is null or not numeric.
+     */
+    static Long readLong(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return (long) reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            case DECIMAL128:
+                return reader.readDecimal128().longValue();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Reads the current value as a date, accepting both the {@code yyyy-MM-dd} string the application has always
+     * stored and a BSON date (interpreted in UTC).
+     *
+     * @return the date, or {@code null} if the value is null or of another type.
+     */
+    static LocalDate readDate(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        if (type == BsonType.DATE_TIME) {
+            return Instant.ofEpochMilli(reader.readDateTime()).atZone(ZoneOffset.UTC).toLocalDate();
+        }
+        String value = readString(reader);
+        return value != null ? parseIsoDate(value) : null;
+    }
+
+    /**
+     * Parses an ISO date. The common {@code yyyy-MM-dd} form is parsed directly, without going through
+     * a {@link java.time.format.DateTimeFormatter}; other forms fall back to {@link LocalDate#parse}.
+     */
+    static LocalDate parseIsoDate(String value) {
+        if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+            int year = digits(value, 0, 4);
+            int month = digits(value, 5, 7);
+            int day = digits(value, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(value);
+    }
+
+    /**
+     * Opens a reader over a raw document's bytes. {@link RawBsonDocument#asBsonReader()} is avoided because it is
+     * far slower on this driver version, dominating the cost of reading a few fields from a large document.
+     */
+    static BsonReader readerOf(RawBsonDocument raw) {
+        return new BsonBinaryReader(raw.getByteBuffer().asNIO());
+    }
+
+    /**
+     * Writes a string field, or a BSON null if the value is null.
+     */
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        } else {
+            writer.writeNull(name);
+        }
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
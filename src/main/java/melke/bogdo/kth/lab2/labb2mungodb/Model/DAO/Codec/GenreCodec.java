@@ -0,0 +1,50 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Encodes and decodes the embedded {@code genre} sub-document ({@code id}, {@code name}) of a book.
+ */
+public class GenreCodec implements Codec<Genre> {
+
+    @Override
+    public void encode(BsonWriter writer, Genre genre, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("id", genre.getId());
+        CodecSupport.writeString(writer, "name", genre.getName());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Genre decode(BsonReader reader, DecoderContext decoderContext) {
+        int id = 0;
+        String name = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id":
+                    Long value = CodecSupport.readLong(reader);
+                    id = value != null ? value.intValue() : 0;
+                    break;
+                case "name":
+                    name = CodecSupport.readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Genre(id, name);
+    }
+
+    @Override
+    public Class<Genre> getEncoderClass() {
+        return Genre.class;
+    }
+}
@@ -0,0 +1,146 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Book} whose embedded authors, reviews and ratings stay encoded until they are first accessed.
+ * <p>
+ * The scalar fields and the stored rating aggregates are decoded up front, so the title, ID, genre and average
+ * rating are available without touching the embedded arrays. The raw BSON of the book is kept instead, which is
+ * considerably smaller than the decoded object graph of its reviews and ratings, and each array is decoded from it
+ * the first time its getter is called. Once all three arrays have been decoded or replaced, the raw BSON is released.
+ * </p>
+ * <p>
+ * Decoding is synchronized on the book, so instances can be shared between threads like any other cached book.
+ * </p>
+ */
+public class LazyBook extends Book {
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final BookCodec codec;
+    private RawBsonDocument raw;
+    private boolean authorsLoaded;
+    private boolean reviewsLoaded;
+    private boolean ratingsLoaded;
+    private boolean hasAggregates;
+    private int aggregateCount;
+    private long aggregateSum;
+
+    /**
+     * Constructs a new {@code LazyBook}; only called by {@link LazyBookCodec}.
+     *
+     * @param raw    the encoded book document.
+     * @param codec  the codec providing the codecs of the embedded objects.
+     * @param id     the decoded ID.
+     * @param title  the decoded title.
+     * @param isbn   the decoded ISBN.
+     * @param genre  the decoded genre.
+     * @param userId the decoded ID of the user who added the book.
+     */
+    LazyBook(RawBsonDocument raw, BookCodec codec, String id, String title, String isbn, Genre genre, String userId) {
+        super(id, title, isbn, genre, null, null, null, userId);
+        this.raw = raw;
+        this.codec = codec;
+    }
+
+    @Override
+    public synchronized List<Author> getAuthors() {
+        if (!authorsLoaded) {
+            super.setAuthors(decodeArray("authors", codec.getAuthorCodec()));
+            authorsLoaded = true;
+            releaseIfLoaded();
+        }
+        return super.getAuthors();
+    }
+
+    @Override
+    public synchronized void setAuthors(List<Author> authors) {
+        super.setAuthors(authors);
+        authorsLoaded = true;
+        releaseIfLoaded();
+    }
+
+    @Override
+    public synchronized List<Review> getReviews() {
+        if (!reviewsLoaded) {
+            super.setReviews(decodeArray("reviews", codec.getReviewCodec()));
+            reviewsLoaded = true;
+            releaseIfLoaded();
+        }
+        return super.getReviews();
+    }
+
+    @Override
+    public synchronized void setReviews(List<Review> reviews) {
+        super.setReviews(reviews);
+        reviewsLoaded = true;
+        releaseIfLoaded();
+    }
+
+    @Override
+    public synchronized List<Rating> getRatings() {
+        if (!ratingsLoaded) {
+            super.setRatings(decodeArray("ratings", codec.getRatingCodec()));
+            if (hasAggregates) {
+                // Setting the ratings clears the aggregates, but the decoded ratings are the ones they describe
+                super.setRatingAggregates(aggregateCount, aggregateSum);
+            }
+            ratingsLoaded = true;
+            releaseIfLoaded();
+        }
+        return super.getRatings();
+    }
+
+    @Override
+    public synchronized void setRatings(List<Rating> ratings) {
+        super.setRatings(ratings);
+        hasAggregates = false;
+        ratingsLoaded = true;
+        releaseIfLoaded();
+    }
+
+    @Override
+    public synchronized void setRatingAggregates(int ratingCount, long ratingSum) {
+        super.setRatingAggregates(ratingCount, ratingSum);
+        hasAggregates = true;
+        aggregateCount = ratingCount;
+        aggregateSum = ratingSum;
+    }
+
+    /**
+     * Decodes one embedded array from the raw document.
+     *
+     * @return the decoded elements, or an empty list if the field is absent.
+     */
+    private <T> List<T> decodeArray(String name, Codec<T> elementCodec) {
+        try (BsonReader reader = CodecSupport.readerOf(raw)) {
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                if (reader.readName().equals(name)) {
+                    return BookCodec.readList(reader, elementCodec, DECODER_CONTEXT);
+                }
+                reader.skipValue();
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private void releaseIfLoaded() {
+        if (authorsLoaded && reviewsLoaded && ratingsLoaded) {
+            raw = null;
+        }
+    }
+}
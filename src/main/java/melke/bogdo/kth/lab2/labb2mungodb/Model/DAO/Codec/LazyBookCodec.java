@@ -0,0 +1,99 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.RatingAggregates;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+
+/**
+ * Decodes book documents into {@link LazyBook}s, for reads that return many books of which
+ * usually only the title, ID and average rating are used.
+ * <p>
+ * The document is copied as raw BSON and only its scalar fields are decoded; the embedded arrays are skipped
+ * and decoded later by the {@link LazyBook} on first access. Encoding writes the full book through the
+ * {@link BookCodec}.
+ * </p>
+ */
+public class LazyBookCodec implements Codec<LazyBook> {
+
+    private final RawBsonDocumentCodec rawCodec = new RawBsonDocumentCodec();
+    private final BookCodec bookCodec;
+
+    /**
+     * Constructs a new {@code LazyBookCodec}.
+     *
+     * @param bookCodec the codec used for encoding and for the embedded objects.
+     */
+    public LazyBookCodec(BookCodec bookCodec) {
+        this.bookCodec = bookCodec;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, LazyBook book, EncoderContext encoderContext) {
+        bookCodec.encode(writer, book, encoderContext);
+    }
+
+    @Override
+    public LazyBook decode(BsonReader reader, DecoderContext decoderContext) {
+        RawBsonDocument raw = rawCodec.decode(reader, decoderContext);
+
+        String id = null;
+        String title = null;
+        String isbn = null;
+        Genre genre = null;
+        String userId = null;
+        Long ratingCount = null;
+        Long ratingSum = null;
+        try (BsonReader fields = CodecSupport.readerOf(raw)) {
+            fields.readStartDocument();
+            while (fields.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (fields.readName()) {
+                    case "_id":
+                        id = CodecSupport.readString(fields);
+                        break;
+                    case "title":
+                        title = CodecSupport.readString(fields);
+                        break;
+                    case "isbn":
+                        isbn = CodecSupport.readString(fields);
+                        break;
+                    case "genre":
+                        if (fields.getCurrentBsonType() == BsonType.DOCUMENT) {
+                            genre = bookCodec.getGenreCodec().decode(fields, decoderContext);
+                        } else {
+                            fields.skipValue();
+                        }
+                        break;
+                    case "user_id":
+                        userId = CodecSupport.readString(fields);
+                        break;
+                    case RatingAggregates.COUNT:
+                        ratingCount = CodecSupport.readLong(fields);
+                        break;
+                    case RatingAggregates.SUM:
+                        ratingSum = CodecSupport.readLong(fields);
+                        break;
+                    default:
+                        fields.skipValue(); // Embedded arrays are decoded on demand by the LazyBook
+                }
+            }
+        }
+
+        LazyBook book = new LazyBook(raw, bookCodec, id, title, isbn, genre, userId);
+        if (ratingCount != null && ratingSum != null) {
+            book.setRatingAggregates(ratingCount.intValue(), ratingSum);
+        }
+        return book;
+    }
+
+    @Override
+    public Class<LazyBook> getEncoderClass() {
+        return LazyBook.class;
+    }
+}
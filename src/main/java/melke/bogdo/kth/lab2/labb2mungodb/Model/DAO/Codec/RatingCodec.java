@@ -0,0 +1,54 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Encodes and decodes an element of the embedded {@code ratings} array ({@code user_id}, {@code rating}) of a book.
+ */
+public class RatingCodec implements Codec<Rating> {
+
+    @Override
+    public void encode(BsonWriter writer, Rating rating, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        CodecSupport.writeString(writer, "user_id", rating.getUserId());
+        if (rating.getRating() != null) {
+            writer.writeInt32("rating", rating.getRating());
+        } else {
+            writer.writeNull("rating");
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Rating decode(BsonReader reader, DecoderContext decoderContext) {
+        String userId = null;
+        Integer value = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "user_id":
+                    userId = CodecSupport.readString(reader);
+                    break;
+                case "rating":
+                    Long number = CodecSupport.readLong(reader);
+                    value = number != null ? number.intValue() : null;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Rating(userId, value);
+    }
+
+    @Override
+    public Class<Rating> getEncoderClass() {
+        return Rating.class;
+    }
+}
@@ -0,0 +1,71 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.time.LocalDate;
+
+/**
+ * Encodes and decodes an element of the embedded {@code reviews} array ({@code user_id}, {@code review_text},
+ * {@code review_date}, {@code username}) of a book.
+ * <p>
+ * The review date is written as a BSON date at midnight UTC, and read from either such a date or the
+ * {@code yyyy-MM-dd} string stored by documents before schema version 2 (see {@link DocumentSchema}).
+ * </p>
+ */
+public class ReviewCodec implements Codec<Review> {
+
+    @Override
+    public void encode(BsonWriter writer, Review review, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        CodecSupport.writeString(writer, "user_id", review.getUserId());
+        CodecSupport.writeString(writer, "review_text", review.getReviewText());
+        if (review.getReviewDate() != null) {
+            writer.writeDateTime("review_date", DocumentSchema.toStoredDate(review.getReviewDate()).getTime());
+        } else {
+            writer.writeNull("review_date");
+        }
+        CodecSupport.writeString(writer, "username", review.getUsername());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Review decode(BsonReader reader, DecoderContext decoderContext) {
+        String userId = null;
+        String reviewText = null;
+        LocalDate reviewDate = null;
+        String username = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "user_id":
+                    userId = CodecSupport.readString(reader);
+                    break;
+                case "review_text":
+                    reviewText = CodecSupport.readString(reader);
+                    break;
+                case "review_date":
+                    reviewDate = CodecSupport.readDate(reader);
+                    break;
+                case "username":
+                    username = CodecSupport.readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Review(userId, reviewText, reviewDate, username);
+    }
+
+    @Override
+    public Class<Review> getEncoderClass() {
+        return Review.class;
+    }
+}
@@ -0,0 +1,160 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs blocking DAO calls on a bounded pool of daemon threads and exposes them as {@link CompletableFuture}s.
+ * <p>
+ * The pool has a fixed number of threads and a bounded queue; when both are full, new calls fail fast with a
+ * {@link RejectedExecutionException} instead of piling up behind a slow database. Every call has a timeout after
+ * which its future completes with a {@link TimeoutException}. When a future is cancelled or times out, calls that
+ * have not started yet are dropped from the queue.
+ * <p>
+ * A running call is never interrupted. With the MongoDB driver, an interrupted thread cannot check out a pooled
+ * connection, so a cursor could not be killed on the server, and an interrupt during a read discards the connection.
+ * The abandoned call runs on until the driver returns, bounded by the server-side {@code maxTime} of queries that
+ * set one, and its result is dropped. Long calls take a {@link CancellableCall} and stop at their next check
+ * instead.
+ * </p>
+ */
+public class DAOExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    /**
+     * Constructs a new {@code DAOExecutor}.
+     *
+     * @param threads       the number of threads running DAO calls.
+     * @param queueCapacity the number of calls that may wait for a free thread.
+     * @param timeoutMillis the default time limit of a call, in milliseconds.
+     * @throws IllegalArgumentException if any value is not positive.
+     */
+    public DAOExecutor(int threads, int queueCapacity, long timeoutMillis) {
+        if (threads <= 0 || queueCapacity <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Threads, queue capacity and timeout must be positive.");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "dao-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs a call with the default timeout.
+     *
+     * @param call the blocking call.
+     * @param <T>  the result type.
+     * @return a future completed with the call's result or exception.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        return submit(call, timeoutMillis);
+    }
+
+    /**
+     * Runs a call with an explicit timeout.
+     *
+     * @param call          the blocking call.
+     * @param timeoutMillis the time limit in milliseconds.
+     * @param <T>           the result type.
+     * @return a future completed with the call's result or exception; it completes exceptionally with a
+     * {@link RejectedExecutionException} if the pool is saturated.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call, long timeoutMillis) {
+        return submit(cancelled -> call.call(), timeoutMillis);
+    }
+
+    /**
+     * Runs a call that stops early once its future is cancelled or times out, with the default timeout.
+     *
+     * @param call the blocking call, which polls the supplier it is given.
+     * @param <T>  the result type.
+     * @return a future completed with the call's result or exception.
+     */
+    public <T> CompletableFuture<T> submit(CancellableCall<T> call) {
+        return submit(call, timeoutMillis);
+    }
+
+    /**
+     * Runs a call that stops early once its future is cancelled or times out, with an explicit timeout.
+     *
+     * @param call          the blocking call, which polls the supplier it is given.
+     * @param timeoutMillis the time limit in milliseconds.
+     * @param <T>           the result type.
+     * @return a future completed with the call's result or exception; it completes exceptionally with a
+     * {@link RejectedExecutionException} if the pool is saturated.
+     */
+    public <T> CompletableFuture<T> submit(CancellableCall<T> call, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(call.call(result::isDone));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> {
+            if (error != null && task.cancel(false)) { // Leaves a running call alone, see the class comment
+                executor.remove((Runnable) task); // Frees the queue slot if it had not started
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the number of calls waiting for a free thread.
+     *
+     * @return the queue length.
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting calls and drops the queued ones. Running calls are left to finish, without being interrupted;
+     * the futures of dropped calls complete when they time out.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        executor.getQueue().clear();
+    }
+
+    /**
+     * A blocking DAO call that checks whether its result is still wanted.
+     *
+     * @param <T> the result type.
+     */
+    @FunctionalInterface
+    public interface CancellableCall<T> {
+
+        /**
+         * Runs the call.
+         *
+         * @param cancelled reports {@code true} once the call's future is cancelled or has timed out.
+         * @return the result.
+         * @throws Exception if the call fails.
+         */
+        T call(BooleanSupplier cancelled) throws Exception;
+    }
+}
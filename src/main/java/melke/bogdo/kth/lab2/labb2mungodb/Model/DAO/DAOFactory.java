@@ -0,0 +1,280 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseSettings;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.AsyncBookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.AsyncUserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeSource;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log.BookLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Provides the DAO instances shared by all controllers.
+ * <p>
+ * Sharing one instance per DAO type lets every controller benefit from, and invalidate, the same caches.
+ * The book DAO is wrapped in a {@link CoalescingBookDAO}, so concurrent identical queries run once and their
+ * results are shared for {@code bookdb.coalesce.staleMillis} (default 250) milliseconds, and then in a
+ * {@link CachingBookDAO}, tuned with the settings
+ * {@code bookdb.cache.books} (default 10000 books), {@code bookdb.cache.queries} (default 256 results)
+ * and {@code bookdb.cache.ttlSeconds} (default 60). The user DAO is wrapped in a {@link CachingUserDAO}
+ * holding up to {@code bookdb.cache.users} (default 1024) users for the same TTL.
+ * </p>
+ * <p>
+ * The asynchronous DAOs wrap the shared synchronous ones and run on one {@link DAOExecutor} with
+ * {@code bookdb.async.threads} threads (default 16), room for {@code bookdb.async.queueSize} waiting calls
+ * (default 256) and a per-call timeout of {@code bookdb.async.timeoutMs} (default 10000).
+ * </p>
+ * <p>
+ * Both book DAO decorators subscribe to the shared {@link BookChangeStream}, so changes made by other clients
+ * invalidate their results right away. The stream runs unless {@code bookdb.changeStream.enabled} is
+ * {@code false}. When it stops, it saves the search index's catalog with its resume token in
+ * {@code bookdb.changeStream.snapshotFile} (default {@code ~/.bookdb/<database>-books.snapshot}), so the next start
+ * resumes from there instead of reading the whole catalog; {@code bookdb.changeStream.snapshot=false} turns this off.
+ * </p>
+ * <p>
+ * All of these are read from the {@link DatabaseSettings} profile, so they can be set in the {@code bookdb.config}
+ * file or overridden with system properties.
+ * </p>
+ * <p>
+ * With the setting {@code bookdb.dao=memory} (see {@link DatabaseSettings}), the DAOs are an
+ * {@link InMemoryBookDAO} and an {@link InMemoryUserDAO} instead, seeded from the configured files and used
+ * without caches, and no database connection is opened. With {@code bookdb.dao=log}, the book DAO is a
+ * {@link LocalBookDAO} storing the books in a {@link BookLog}, seeded only while the log is empty, and users are
+ * kept in memory. The local book DAO then also takes the place of the change stream as the {@link BookChangeSource}.
+ * </p>
+ */
+public final class DAOFactory {
+
+    private static final int DEFAULT_COALESCE_STALE_MILLIS = 250;
+    private static final int DEFAULT_CACHED_BOOKS = 10_000;
+    private static final int DEFAULT_CACHED_QUERIES = 256;
+    private static final int DEFAULT_CACHED_USERS = 1024;
+    private static final int DEFAULT_CACHE_TTL_SECONDS = 60;
+    private static final int DEFAULT_ASYNC_THREADS = 16;
+    private static final int DEFAULT_ASYNC_QUEUE_SIZE = 256;
+    private static final int DEFAULT_ASYNC_TIMEOUT_MILLIS = 10_000;
+
+    private static BookDAO bookDAO;
+    private static UserDAO userDAO;
+    private static DAOExecutor asyncExecutor;
+    private static AsyncBookDAO asyncBookDAO;
+    private static AsyncUserDAO asyncUserDAO;
+    private static BookChangeStream bookChangeStream;
+    private static DatabaseSettings settings;
+    private static LocalBookDAO localBookDAO;
+    private static BookLog bookLog;
+
+    private DAOFactory() {
+    }
+
+    /**
+     * Gets the shared, cached {@link BookDAO}, creating it on first use.
+     *
+     * @return the shared {@link BookDAO}.
+     */
+    public static synchronized BookDAO getBookDAO() {
+        if (bookDAO == null && !usesDatabase()) {
+            bookDAO = getLocalBookDAO();
+        } else if (bookDAO == null) {
+            CoalescingBookDAO coalescing = new CoalescingBookDAO(new BookDAOImpl(),
+                    getSettings().getInt("coalesce.staleMillis", DEFAULT_COALESCE_STALE_MILLIS));
+            CachingBookDAO caching = new CachingBookDAO(coalescing,
+                    getSettings().getInt("cache.books", DEFAULT_CACHED_BOOKS),
+                    getSettings().getInt("cache.queries", DEFAULT_CACHED_QUERIES),
+                    cacheTtlMillis());
+            getBookChangeStream().addListener(coalescing);
+            getBookChangeStream().addListener(caching);
+            bookDAO = caching;
+        }
+        return bookDAO;
+    }
+
+    /**
+     * Gets the shared, cached {@link UserDAO}, creating it on first use.
+     *
+     * @return the shared {@link UserDAO}.
+     */
+    public static synchronized UserDAO getUserDAO() {
+        if (userDAO == null && !usesDatabase()) {
+            InMemoryUserDAO users = new InMemoryUserDAO();
+            Path usersFile = getSettings().getMemoryUsersFile();
+            if (usersFile != null) {
+                try {
+                    users.loadFile(usersFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot load users from " + usersFile, e);
+                }
+            }
+            userDAO = users;
+        } else if (userDAO == null) {
+            userDAO = new CachingUserDAO(new UserDAOImpl(),
+                    getSettings().getInt("cache.users", DEFAULT_CACHED_USERS), cacheTtlMillis());
+        }
+        return userDAO;
+    }
+
+    /**
+     * Gets the shared {@link AsyncBookDAO}, backed by the shared {@link BookDAO}.
+     *
+     * @return the shared {@link AsyncBookDAO}.
+     */
+    public static synchronized AsyncBookDAO getAsyncBookDAO() {
+        if (asyncBookDAO == null) {
+            asyncBookDAO = new AsyncBookDAOImpl(getBookDAO(), getAsyncExecutor());
+        }
+        return asyncBookDAO;
+    }
+
+    /**
+     * Gets the shared {@link AsyncUserDAO}, backed by the shared {@link UserDAO}.
+     *
+     * @return the shared {@link AsyncUserDAO}.
+     */
+    public static synchronized AsyncUserDAO getAsyncUserDAO() {
+        if (asyncUserDAO == null) {
+            asyncUserDAO = new AsyncUserDAOImpl(getUserDAO(), getAsyncExecutor());
+        }
+        return asyncUserDAO;
+    }
+
+    /**
+     * Gets the source of changes to the book catalog: the shared {@link BookChangeStream}, or the local
+     * book DAO when the data is not kept in MongoDB.
+     *
+     * @return the shared {@link BookChangeSource}.
+     */
+    public static synchronized BookChangeSource getBookChangeSource() {
+        return usesDatabase() ? getBookChangeStream() : getLocalBookDAO();
+    }
+
+    /**
+     * Gets the settings the DAOs are chosen and configured with, loaded on first use.
+     *
+     * @return the {@link DatabaseSettings}.
+     */
+    public static synchronized DatabaseSettings getSettings() {
+        if (settings == null) {
+            settings = DatabaseSettings.load();
+        }
+        return settings;
+    }
+
+    /**
+     * Checks whether the DAOs keep their data in MongoDB, and so whether there is a database connection to close.
+     *
+     * @return {@code true} unless {@code bookdb.dao} is {@code memory} or {@code log}.
+     */
+    public static synchronized boolean usesDatabase() {
+        return getSettings().getDaoType() == DatabaseSettings.DaoType.MONGO;
+    }
+
+    /**
+     * Gets the shared {@link BookChangeStream}, creating and starting it on first use. Starting it does not wait
+     * for the server, so this does not block the calling thread.
+     *
+     * @return the shared {@link BookChangeStream}.
+     */
+    public static synchronized BookChangeStream getBookChangeStream() {
+        if (bookChangeStream == null) {
+            bookChangeStream = new BookChangeStream(DatabaseConnection.getDatabase(), catalogSnapshotFile());
+            if (getSettings().getBoolean("changeStream.enabled", true)) {
+                bookChangeStream.start();
+            }
+        }
+        return bookChangeStream;
+    }
+
+    /**
+     * Stops the background work of the shared DAOs: it tells the change stream to stop, shuts the asynchronous
+     * executor down and closes the book log. Does not wait for the change stream, so it may be called on the JavaFX
+     * Application Thread; call {@link #awaitShutdown(long)} elsewhere before closing the database connection.
+     */
+    public static synchronized void shutdown() {
+        if (bookChangeStream != null) {
+            bookChangeStream.stop();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (bookLog != null) {
+            try {
+                bookLog.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close the book log", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the change stream to release its cursor after {@link #shutdown()}. Must not be called on the JavaFX
+     * Application Thread.
+     *
+     * @param timeoutMillis the longest time to wait, in milliseconds.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public static void awaitShutdown(long timeoutMillis) throws InterruptedException {
+        BookChangeStream stream;
+        synchronized (DAOFactory.class) {
+            stream = bookChangeStream;
+        }
+        if (stream != null) {
+            stream.awaitStop(timeoutMillis); // Outside the lock, so other DAO getters are not held up
+        }
+    }
+
+    private static LocalBookDAO getLocalBookDAO() {
+        if (localBookDAO == null) {
+            DatabaseSettings settings = getSettings();
+            LocalBookDAO books;
+            if (settings.getDaoType() == DatabaseSettings.DaoType.LOG) {
+                try {
+                    bookLog = new BookLog(settings.getLogDirectory(), settings.getLogSegmentBytes(), settings.isLogSync());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open the book log in " + settings.getLogDirectory(), e);
+                }
+                books = new LocalBookDAO(bookLog);
+            } else {
+                books = new InMemoryBookDAO();
+            }
+            Path catalogFile = settings.getMemoryCatalogFile();
+            if (catalogFile != null && books.size() == 0) {
+                try {
+                    books.loadFile(catalogFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot load the catalog from " + catalogFile, e);
+                }
+            }
+            localBookDAO = books;
+        }
+        return localBookDAO;
+    }
+
+    private static DAOExecutor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = new DAOExecutor(
+                    getSettings().getInt("async.threads", DEFAULT_ASYNC_THREADS),
+                    getSettings().getInt("async.queueSize", DEFAULT_ASYNC_QUEUE_SIZE),
+                    getSettings().getInt("async.timeoutMs", DEFAULT_ASYNC_TIMEOUT_MILLIS));
+        }
+        return asyncExecutor;
+    }
+
+    private static Path catalogSnapshotFile() {
+        if (!getSettings().getBoolean("changeStream.snapshot", true)) {
+            return null;
+        }
+        String defaultFile = Paths.get(System.getProperty("user.home"), ".bookdb",
+                getSettings().getDatabaseName() + "-books.snapshot").toString();
+        return Paths.get(getSettings().getString("changeStream.snapshotFile", defaultFile));
+    }
+
+    private static long cacheTtlMillis() {
+        return getSettings().getInt("cache.ttlSeconds", DEFAULT_CACHE_TTL_SECONDS) * 1000L;
+    }
+}
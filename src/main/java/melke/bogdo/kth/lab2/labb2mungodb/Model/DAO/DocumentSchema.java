@@ -0,0 +1,68 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * Describes the current shape of the book and user documents and the fields used to track it.
+ * <p>
+ * Every document written in the current shape carries a {@code schema_version}. Documents written before
+ * versioning have none and count as version 0; they are brought up to date by the
+ * {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration.MigrationRunner}. The book versions are:
+ * </p>
+ * <ol>
+ *     <li>rating aggregates ({@link RatingAggregates}) are stored on the book;</li>
+ *     <li>review dates are BSON dates at midnight UTC instead of {@code yyyy-MM-dd} strings;</li>
+ *     <li>{@code updated_at} holds the time of the last write.</li>
+ * </ol>
+ * <p>
+ * User version 1 adds {@code updated_at}. Readers accept every version, so the application can run while a
+ * migration is in progress.
+ * </p>
+ */
+public final class DocumentSchema {
+
+    public static final String VERSION = "schema_version";
+    public static final String UPDATED_AT = "updated_at";
+    public static final int BOOKS_VERSION = 3;
+    public static final int USERS_VERSION = 1;
+
+    private DocumentSchema() {
+    }
+
+    /**
+     * Builds an update pipeline stage that sets {@code updated_at} to the server's current time.
+     *
+     * @return a {@code $set} stage as {@link Bson}.
+     */
+    public static Bson touchStage() {
+        return new Document("$set", new Document(UPDATED_AT, "$$NOW"));
+    }
+
+    /**
+     * Converts a review date to the stored BSON date.
+     *
+     * @param date the date.
+     * @return midnight UTC of the date, or {@code null} if {@code date} is null.
+     */
+    public static Date toStoredDate(LocalDate date) {
+        return date != null ? Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant()) : null;
+    }
+
+    /**
+     * Reads a stored review date in either shape.
+     *
+     * @param value a {@link Date} or a {@code yyyy-MM-dd} string.
+     * @return the date, or {@code null} if {@code value} is null or of another type.
+     */
+    public static LocalDate fromStoredDate(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+        }
+        return value instanceof String ? LocalDate.parse((String) value) : null;
+    }
+}
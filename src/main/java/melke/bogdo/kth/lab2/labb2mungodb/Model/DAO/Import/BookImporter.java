@@ -0,0 +1,323 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Import;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import org.bson.Document;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports large book catalogs from JSON Lines or CSV files into the "books" collection.
+ * <p>
+ * The input is read sequentially and cut into batches of lines. Each batch is parsed and validated
+ * on a pool of parser threads, and a single writer thread inserts the parsed batches in input order
+ * with unordered {@code bulkWrite} calls. At most a fixed number of batches can be waiting for the
+ * writer, so the reader blocks instead of buffering the whole file when the database falls behind.
+ * </p>
+ * <p>
+ * Records that fail parsing, validation or insertion (e.g. a duplicate ISBN) do not stop the import;
+ * they are collected in the {@link ImportReport} with their line numbers.
+ * </p>
+ */
+public class BookImporter {
+
+    /**
+     * Receives progress updates after each batch has been written.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * Called from the writer thread after each batch.
+         *
+         * @param processed the number of records handled so far.
+         * @param inserted  the number of documents inserted so far.
+         * @param failed    the number of records rejected so far.
+         */
+        void onProgress(long processed, long inserted, long failed);
+    }
+
+    private static final Logger logger = Logger.getLogger(BookImporter.class.getName());
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final MongoCollection<Document> booksCollection;
+    private final int batchSize;
+    private final int parserThreads;
+    private final int maxPendingBatches;
+
+    /**
+     * Constructs a new {@code BookImporter} writing to the "books" collection of the configured database,
+     * using {@value #DEFAULT_BATCH_SIZE} documents per batch and one parser thread per processor.
+     */
+    public BookImporter() {
+        this(DatabaseConnection.getDatabase().getCollection("books"), DEFAULT_BATCH_SIZE,
+                Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new {@code BookImporter} with explicit tuning.
+     *
+     * @param booksCollection   the collection to insert into.
+     * @param batchSize         the number of records per {@code bulkWrite}.
+     * @param parserThreads     the number of threads parsing and validating records.
+     * @param maxPendingBatches the number of batches that may wait for the writer before the reader blocks.
+     * @throws IllegalArgumentException if any numeric setting is not positive.
+     */
+    public BookImporter(MongoCollection<Document> booksCollection, int batchSize, int parserThreads, int maxPendingBatches) {
+        if (batchSize <= 0 || parserThreads <= 0 || maxPendingBatches <= 0) {
+            throw new IllegalArgumentException("Batch size, parser threads and pending batches must be positive.");
+        }
+        this.booksCollection = booksCollection;
+        this.batchSize = batchSize;
+        this.parserThreads = parserThreads;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    /**
+     * Imports all records of a file. The format is chosen from the file extension
+     * ({@code .csv} for CSV, anything else for JSON Lines).
+     *
+     * @param file     the file to import.
+     * @param listener receives progress updates, or {@code null} for none.
+     * @return the {@link ImportReport} describing the outcome.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a CSV file does not start with the expected header.
+     * @throws InterruptedException     if the importing thread is interrupted.
+     */
+    public ImportReport importFile(Path file, ProgressListener listener) throws IOException, InterruptedException {
+        BookRecordParser parser = new BookRecordParser(BookRecordParser.Format.fromFileName(file.getFileName().toString()));
+        BlockingQueue<PendingBatch> pending = new ArrayBlockingQueue<>(maxPendingBatches);
+        WriterState state = new WriterState(listener);
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "book-import-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread writer = new Thread(() -> writeAll(pending, state), "book-import-writer");
+        writer.setDaemon(true);
+
+        long start = System.nanoTime();
+        long recordsRead = 0;
+        writer.start();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            if (parser.getFormat() == BookRecordParser.Format.CSV) {
+                String header = reader.readLine();
+                lineNumber++;
+                parser.validateHeader(header != null ? header : "");
+            }
+
+            List<String> lines = new ArrayList<>(batchSize);
+            long[] lineNumbers = new long[batchSize];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                lineNumbers[lines.size()] = lineNumber;
+                lines.add(line);
+                recordsRead++;
+                if (lines.size() == batchSize) {
+                    submit(parsers, pending, parser, lines, lineNumbers);
+                    lines = new ArrayList<>(batchSize);
+                    lineNumbers = new long[batchSize];
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(parsers, pending, parser, lines, lineNumbers);
+            }
+        } finally {
+            pending.put(PendingBatch.END); // End of input
+            writer.join();
+            parsers.shutdownNow();
+        }
+
+        List<ImportReport.RecordError> errors = state.errors;
+        errors.sort(Comparator.comparingLong(ImportReport.RecordError::getLineNumber));
+        ImportReport report = new ImportReport(recordsRead, state.inserted, errors, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Import of " + file + " finished: " + report);
+        return report;
+    }
+
+    /**
+     * Hands a batch of lines to the parser pool; blocks while {@code maxPendingBatches} batches are waiting.
+     */
+    private static void submit(ExecutorService parsers, BlockingQueue<PendingBatch> pending,
+                               BookRecordParser parser, List<String> lines, long[] lineNumbers) throws InterruptedException {
+        pending.put(new PendingBatch(parsers.submit(() -> parseBatch(parser, lines, lineNumbers)), lineNumbers, lines.size()));
+    }
+
+    private static ParsedBatch parseBatch(BookRecordParser parser, List<String> lines, long[] lineNumbers) {
+        ParsedBatch batch = new ParsedBatch(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                batch.documents.add(parser.parse(lines.get(i)));
+                batch.documentLines[batch.documents.size() - 1] = lineNumbers[i];
+            } catch (RuntimeException e) {
+                batch.errors.add(new ImportReport.RecordError(lineNumbers[i], e.getMessage()));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Writer loop: takes parsed batches in input order until the end marker and inserts them.
+     * Keeps draining the queue after any failure so the reader can never block forever; the records of a batch
+     * that could not be handled are reported as errors.
+     */
+    private void writeAll(BlockingQueue<PendingBatch> pending, WriterState state) {
+        try {
+            while (true) {
+                PendingBatch next = pending.take();
+                if (next == PendingBatch.END) {
+                    return;
+                }
+                try {
+                    write(next.parsed.get(), state);
+                } catch (ExecutionException e) {
+                    logger.log(Level.SEVERE, "Parsing a batch failed", e.getCause());
+                    failAll(next, "Batch parsing failed: " + e.getCause(), state);
+                }
+                if (state.listener != null) {
+                    try {
+                        state.listener.onProgress(state.processed, state.inserted, state.errors.size());
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Import progress listener failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reports every record of a batch that could not be parsed as an error.
+     */
+    private static void failAll(PendingBatch batch, String message, WriterState state) {
+        for (int i = 0; i < batch.size; i++) {
+            state.errors.add(new ImportReport.RecordError(batch.lineNumbers[i], message));
+        }
+        state.processed += batch.size;
+    }
+
+    private void write(ParsedBatch batch, WriterState state) {
+        state.errors.addAll(batch.errors);
+        state.processed += batch.errors.size() + batch.documents.size();
+        if (batch.documents.isEmpty()) {
+            return;
+        }
+
+        List<InsertOneModel<Document>> inserts = new ArrayList<>(batch.documents.size());
+        for (Document document : batch.documents) {
+            inserts.add(new InsertOneModel<>(document));
+        }
+        try {
+            state.inserted += booksCollection.bulkWrite(inserts, new BulkWriteOptions().ordered(false)).getInsertedCount();
+        } catch (MongoBulkWriteException e) {
+            state.inserted += e.getWriteResult().getInsertedCount();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                state.errors.add(new ImportReport.RecordError(batch.documentLines[error.getIndex()], error.getMessage()));
+            }
+        } catch (RuntimeException e) { // MongoException, or e.g. a document the codecs cannot encode
+            for (int i = 0; i < batch.documents.size(); i++) {
+                state.errors.add(new ImportReport.RecordError(batch.documentLines[i], "Batch write failed: " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Imports a file from the command line.
+     * Usage: {@code BookImporter <file> [batchSize]}.
+     *
+     * @param args the file to import and an optional batch size.
+     * @throws Exception if the import fails.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BookImporter <file.jsonl|file.csv> [batchSize]");
+            return;
+        }
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            BookImporter importer = new BookImporter(DatabaseConnection.getDatabase().getCollection("books"),
+                    batchSize, threads, 2 * threads);
+            ImportReport report = importer.importFile(Paths.get(args[0]), (processed, inserted, failed) ->
+                    System.out.println("Processed " + processed + " records, inserted " + inserted + ", failed " + failed));
+            System.out.println(report);
+            report.getErrors().stream().limit(100).forEach(System.err::println);
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    /**
+     * A batch handed to the parser pool, with the line numbers of its records.
+     */
+    private static final class PendingBatch {
+
+        private static final PendingBatch END = new PendingBatch(null, new long[0], 0);
+
+        private final Future<ParsedBatch> parsed;
+        private final long[] lineNumbers;
+        private final int size;
+
+        private PendingBatch(Future<ParsedBatch> parsed, long[] lineNumbers, int size) {
+            this.parsed = parsed;
+            this.lineNumbers = lineNumbers;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The parsed documents of one batch, their line numbers and the records rejected while parsing.
+     */
+    private static final class ParsedBatch {
+
+        private final List<Document> documents;
+        private final long[] documentLines;
+        private final List<ImportReport.RecordError> errors = new ArrayList<>();
+
+        private ParsedBatch(int size) {
+            this.documents = new ArrayList<>(size);
+            this.documentLines = new long[size];
+        }
+    }
+
+    /**
+     * Counters owned by the writer thread; read by the importing thread only after the writer has finished.
+     */
+    private static final class WriterState {
+
+        private final ProgressListener listener;
+        private final List<ImportReport.RecordError> errors = new ArrayList<>();
+        private long processed;
+        private long inserted;
+
+        private WriterState(ProgressListener listener) {
+            this.listener = listener;
+        }
+    }
+}
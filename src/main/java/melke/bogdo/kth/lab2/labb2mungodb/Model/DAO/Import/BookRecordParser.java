@@ -0,0 +1,237 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Import;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.RatingAggregates;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses and validates single catalog records into book documents ready for insertion.
+ * <p>
+ * Two formats are supported:
+ * <ul>
+ *     <li>JSON Lines: one book per line, in the shape shown in {@code collectionInsertion.txt}.</li>
+ *     <li>CSV: a header line followed by one book per line with the columns
+ *     {@code title,isbn,genre_id,genre_name,authors}; multiple authors are separated by {@code ;}.</li>
+ * </ul>
+ * Every parsed document gets empty {@code reviews}/{@code ratings} arrays if they are missing,
+ * and rating aggregates matching its ratings. Documents are produced in the current {@link DocumentSchema}
+ * version, with review dates converted to BSON dates.
+ * </p>
+ */
+public class BookRecordParser {
+
+    /**
+     * The supported input formats.
+     */
+    public enum Format {
+        JSON_LINES,
+        CSV;
+
+        /**
+         * Determines the format of a file from its extension.
+         *
+         * @param fileName the file name.
+         * @return {@link #CSV} for {@code .csv} files, {@link #JSON_LINES} otherwise.
+         */
+        public static Format fromFileName(String fileName) {
+            return fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    private static final String[] CSV_COLUMNS = {"title", "isbn", "genre_id", "genre_name", "authors"};
+
+    private final Format format;
+
+    /**
+     * Constructs a new {@code BookRecordParser} for the given format.
+     *
+     * @param format the input format.
+     */
+    public BookRecordParser(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets the input format of this parser.
+     *
+     * @return the {@link Format}.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Checks that a CSV header line has the expected columns.
+     *
+     * @param header the first line of the file.
+     * @throws IllegalArgumentException if the columns do not match.
+     */
+    public void validateHeader(String header) {
+        List<String> columns = splitCsv(header);
+        if (columns.size() != CSV_COLUMNS.length) {
+            throw new IllegalArgumentException("Expected CSV header " + String.join(",", CSV_COLUMNS) + " but got: " + header);
+        }
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            if (!CSV_COLUMNS[i].equalsIgnoreCase(columns.get(i).trim())) {
+                throw new IllegalArgumentException("Expected CSV header " + String.join(",", CSV_COLUMNS) + " but got: " + header);
+            }
+        }
+    }
+
+    /**
+     * Parses and validates one record.
+     *
+     * @param line the raw line.
+     * @return a book {@link Document} ready for insertion.
+     * @throws IllegalArgumentException if the line cannot be parsed or the record is invalid.
+     */
+    public Document parse(String line) {
+        Document bookDoc = format == Format.CSV ? parseCsv(line) : parseJson(line);
+        validate(bookDoc);
+        if (!bookDoc.containsKey("reviews")) {
+            bookDoc.append("reviews", new ArrayList<>());
+        }
+        if (!bookDoc.containsKey("ratings")) {
+            bookDoc.append("ratings", new ArrayList<>());
+        }
+        if (!bookDoc.containsKey("user_id")) {
+            bookDoc.append("user_id", null);
+        }
+        for (Document review : bookDoc.getList("reviews", Document.class)) {
+            LocalDate reviewDate = LocalDate.parse(String.valueOf(review.get("review_date")));
+            review.put("review_date", DocumentSchema.toStoredDate(reviewDate));
+        }
+        return RatingAggregates.appendComputed(bookDoc)
+                .append(DocumentSchema.UPDATED_AT, new Date())
+                .append(DocumentSchema.VERSION, DocumentSchema.BOOKS_VERSION);
+    }
+
+    private Document parseJson(String line) {
+        try {
+            return Document.parse(line);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private Document parseCsv(String line) {
+        List<String> columns = splitCsv(line);
+        if (columns.size() != CSV_COLUMNS.length) {
+            throw new IllegalArgumentException("Expected " + CSV_COLUMNS.length + " columns but got " + columns.size());
+        }
+        int genreId;
+        try {
+            genreId = Integer.parseInt(columns.get(2).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid genre_id: " + columns.get(2));
+        }
+
+        List<Document> authors = new ArrayList<>();
+        for (String name : columns.get(4).split(";")) {
+            if (!name.isBlank()) {
+                authors.add(new Document("name", name.trim()).append("birthdate", null).append("user_id", null));
+            }
+        }
+        return new Document("title", columns.get(0).trim())
+                .append("isbn", columns.get(1).trim())
+                .append("genre", new Document("id", genreId).append("name", columns.get(3).trim()))
+                .append("authors", authors);
+    }
+
+    private void validate(Document bookDoc) {
+        requireText(bookDoc.get("title"), "title");
+        requireText(bookDoc.get("isbn"), "isbn");
+
+        Object genre = bookDoc.get("genre");
+        if (!(genre instanceof Document) || !(((Document) genre).get("id") instanceof Integer)) {
+            throw new IllegalArgumentException("Missing or invalid genre.");
+        }
+        requireText(((Document) genre).get("name"), "genre.name");
+
+        List<Document> authors = listOf(bookDoc, "authors");
+        if (authors == null || authors.isEmpty()) {
+            throw new IllegalArgumentException("At least one author is required.");
+        }
+        for (Document author : authors) {
+            requireText(author.get("name"), "authors.name");
+        }
+
+        List<Document> ratings = listOf(bookDoc, "ratings");
+        if (ratings != null) {
+            for (Document rating : ratings) {
+                Object value = rating.get("rating");
+                if (!(value instanceof Integer) || (Integer) value < RatingAggregates.MIN_RATING
+                        || (Integer) value > RatingAggregates.MAX_RATING) {
+                    throw new IllegalArgumentException("Rating must be an integer between 1 and 5: " + value);
+                }
+            }
+        }
+
+        List<Document> reviews = listOf(bookDoc, "reviews");
+        if (reviews != null) {
+            for (Document review : reviews) {
+                try {
+                    LocalDate.parse(String.valueOf(review.get("review_date")));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid review_date: " + review.get("review_date"));
+                }
+            }
+        }
+    }
+
+    private static List<Document> listOf(Document bookDoc, String key) {
+        try {
+            return bookDoc.getList(key, Document.class);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Field " + key + " must be an array of objects.");
+        }
+    }
+
+    private static void requireText(Object value, String field) {
+        if (!(value instanceof String) || ((String) value).isBlank()) {
+            throw new IllegalArgumentException("Missing or empty " + field + ".");
+        }
+    }
+
+    /**
+     * Splits one CSV line into columns, honouring double-quoted fields and {@code ""} escapes.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+}
@@ -0,0 +1,150 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Import;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summarizes a finished catalog import: how many records were read, inserted and rejected,
+ * how long it took, and why each rejected record failed.
+ */
+public class ImportReport {
+
+    private final long recordsRead;
+    private final long inserted;
+    private final List<RecordError> errors;
+    private final long elapsedMillis;
+
+    /**
+     * Constructs a new {@code ImportReport} with the specified results.
+     *
+     * @param recordsRead   the number of non-blank records read from the input.
+     * @param inserted      the number of documents inserted into the database.
+     * @param errors        the per-record errors, in input order.
+     * @param elapsedMillis the wall-clock duration of the import in milliseconds.
+     */
+    public ImportReport(long recordsRead, long inserted, List<RecordError> errors, long elapsedMillis) {
+        this.recordsRead = recordsRead;
+        this.inserted = inserted;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the number of records read from the input.
+     *
+     * @return the record count.
+     */
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /**
+     * Gets the number of documents inserted into the database.
+     *
+     * @return the inserted count.
+     */
+    public long getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Gets the number of records that were rejected during parsing, validation or writing.
+     *
+     * @return the failed count.
+     */
+    public long getFailed() {
+        return errors.size();
+    }
+
+    /**
+     * Gets the per-record errors.
+     *
+     * @return an unmodifiable {@link List} of {@link RecordError} objects, in input order.
+     */
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the wall-clock duration of the import.
+     *
+     * @return the duration in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Calculates the import throughput.
+     *
+     * @return the number of inserted documents per second.
+     */
+    public double getDocumentsPerSecond() {
+        return elapsedMillis == 0 ? inserted : inserted * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Returns a string representation of the {@code ImportReport} object.
+     *
+     * @return a string containing the counters, the duration and the throughput.
+     */
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+                "recordsRead=" + recordsRead +
+                ", inserted=" + inserted +
+                ", failed=" + errors.size() +
+                ", elapsedMillis=" + elapsedMillis +
+                ", documentsPerSecond=" + String.format("%.0f", getDocumentsPerSecond()) +
+                '}';
+    }
+
+    /**
+     * Describes why a single input record was not imported.
+     */
+    public static class RecordError {
+
+        private final long lineNumber;
+        private final String message;
+
+        /**
+         * Constructs a new {@code RecordError}.
+         *
+         * @param lineNumber the 1-based line number of the record in the input file.
+         * @param message    the reason the record was rejected.
+         */
+        public RecordError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * Gets the line number of the rejected record.
+         *
+         * @return the 1-based line number.
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Gets the reason the record was rejected.
+         *
+         * @return the error message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns a string representation of the {@code RecordError} object.
+         *
+         * @return a string containing the line number and message.
+         */
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A {@link LocalBookDAO} keeping the whole catalog in memory.
+ * <p>
+ * Books are stored in a sorted concurrent map by ID. Stored books are never modified: every write stores a fresh
+ * copy and every read returns one, so readers never see a half-applied change. Searches and summaries look at the
+ * stored books and only copy the matches.
+ * </p>
+ */
+public class InMemoryBookDAO extends LocalBookDAO {
+
+    /**
+     * Constructs a new, empty {@code InMemoryBookDAO}.
+     */
+    public InMemoryBookDAO() {
+        super(new MemoryBookStore());
+    }
+
+    /**
+     * A {@link BookStore} holding copies of the books in a {@link ConcurrentSkipListMap}.
+     */
+    private static final class MemoryBookStore implements BookStore {
+
+        private final ConcurrentSkipListMap<String, Book> booksById = new ConcurrentSkipListMap<>();
+
+        @Override
+        public Book get(String bookId) {
+            Book book = booksById.get(bookId);
+            return book != null ? copyOf(book) : null;
+        }
+
+        @Override
+        public boolean contains(String bookId) {
+            return booksById.containsKey(bookId);
+        }
+
+        @Override
+        public void put(Book book) {
+            booksById.put(book.getId(), copyOf(book));
+        }
+
+        @Override
+        public void remove(String bookId) {
+            booksById.remove(bookId);
+        }
+
+        @Override
+        public Stream<Book> books(String afterId) {
+            return stored(afterId).map(MemoryBookStore::copyOf);
+        }
+
+        @Override
+        public Stream<Book> books(String afterId, Predicate<? super Book> filter) {
+            return stored(afterId).filter(filter).map(MemoryBookStore::copyOf);
+        }
+
+        @Override
+        public <R> Stream<R> project(String afterId, Function<? super Book, ? extends R> projection) {
+            return stored(afterId).map(projection);
+        }
+
+        @Override
+        public int size() {
+            return booksById.size();
+        }
+
+        /**
+         * Streams the stored books themselves, which must not leave the store.
+         */
+        private Stream<Book> stored(String afterId) {
+            return (afterId != null ? booksById.tailMap(afterId, false) : booksById).values().stream();
+        }
+
+        /**
+         * Copies a book with its lists and embedded objects, so neither the stored book nor a returned copy can
+         * be changed through the other.
+         */
+        private static Book copyOf(Book book) {
+            List<Author> authors = new ArrayList<>();
+            if (book.getAuthors() != null) {
+                for (Author author : book.getAuthors()) {
+                    authors.add(new Author(author.getName(), author.getBirthdate(), author.getUserId()));
+                }
+            }
+            List<Review> reviews = new ArrayList<>();
+            if (book.getReviews() != null) {
+                for (Review review : book.getReviews()) {
+                    reviews.add(new Review(review.getUserId(), review.getReviewText(), review.getReviewDate(), review.getUsername()));
+                }
+            }
+            List<Rating> ratings = new ArrayList<>();
+            long ratingSum = 0;
+            if (book.getRatings() != null) {
+                for (Rating rating : book.getRatings()) {
+                    ratings.add(new Rating(rating.getUserId(), rating.getRating()));
+                    ratingSum += rating.getRating() != null ? rating.getRating() : 0;
+                }
+            }
+            Genre genre = book.getGenre() != null ? new Genre(book.getGenre().getId(), book.getGenre().getName()) : null;
+            Book copy = new Book(book.getId(), book.getTitle(), book.getIsbn(), genre, authors, reviews, ratings, book.getUserId());
+            copy.setRatingAggregates(ratings.size(), ratingSum);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * A {@link UserDAO} keeping all users in memory, the counterpart of the {@link InMemoryBookDAO}.
+ * <p>
+ * Users are stored by ID, with a unique index from username to user. Lookups and credential checks behave like
+ * those of {@link UserDAOImpl}.
+ * </p>
+ */
+public class InMemoryUserDAO implements UserDAO {
+
+    private static final Logger logger = Logger.getLogger(InMemoryUserDAO.class.getName());
+
+    private final ConcurrentMap<String, User> usersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, User> usersByUsername = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a new user.
+     *
+     * @param username     the unique username.
+     * @param passwordHash the hashed password, as produced by {@link melke.bogdo.kth.lab2.labb2mungodb.Controller.HashUtil}.
+     * @return the stored {@link User}, with its generated ID.
+     * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty,
+     *                                  or the username is taken.
+     */
+    public User addUser(String username, String passwordHash) {
+        requireCredentials(username, passwordHash);
+        User user = new User(new ObjectId().toHexString(), username, passwordHash);
+        if (usersByUsername.putIfAbsent(username, user) != null) {
+            throw new IllegalArgumentException("Username already exists: " + username);
+        }
+        usersById.put(user.getId(), user);
+        return copyOf(user);
+    }
+
+    /**
+     * Loads users from a properties file mapping each username to its password hash.
+     *
+     * @param file the users file.
+     * @return the number of users added.
+     * @throws IOException if the file cannot be read.
+     */
+    public int loadFile(Path file) throws IOException {
+        Properties users = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            users.load(in);
+        }
+        int added = 0;
+        for (String username : users.stringPropertyNames()) {
+            try {
+                addUser(username, users.getProperty(username).trim());
+                added++;
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping user in " + file + ": " + e.getMessage());
+            }
+        }
+        logger.info("Loaded " + added + " users from " + file);
+        return added;
+    }
+
+    /**
+     * Retrieves a user by their unique ID.
+     *
+     * @param userId the {@link ObjectId} of the user.
+     * @return a {@link User} object if the user is found, or {@code null} if not found.
+     * @throws IllegalArgumentException if {@code userId} is null.
+     */
+    @Override
+    public User getUserById(ObjectId userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null.");
+        }
+        User user = usersById.get(userId.toHexString());
+        return user != null ? copyOf(user) : null;
+    }
+
+    /**
+     * Retrieves a user by their username.
+     *
+     * @param username the username of the user.
+     * @return a {@link User} object if the user is found.
+     * @throws IllegalArgumentException if {@code username} is null, empty, or if no user is found with the given username.
+     */
+    @Override
+    public User getUserByUsername(String username) {
+        if (username == null || username.trim().isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty.");
+        }
+        User user = usersByUsername.get(username);
+        if (user == null) {
+            throw new IllegalArgumentException("User not found: " + username);
+        }
+        return copyOf(user);
+    }
+
+    /**
+     * Validates a user's credentials by matching their username and hashed password.
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return {@code true} if the credentials are valid, {@code false} otherwise.
+     * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty.
+     */
+    @Override
+    public boolean validateUser(String username, String passwordHash) {
+        return authenticate(username, passwordHash) != null;
+    }
+
+    /**
+     * Authenticates a user by username and hashed password.
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return the authenticated {@link User} without its password hash, or {@code null} if the credentials are invalid.
+     * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty.
+     */
+    @Override
+    public User authenticate(String username, String passwordHash) {
+        requireCredentials(username, passwordHash);
+        User user = usersByUsername.get(username);
+        if (user == null || !user.getPasswordHash().equals(passwordHash)) {
+            return null;
+        }
+        return new User(user.getId(), user.getUsername(), null);
+    }
+
+    private static void requireCredentials(String username, String passwordHash) {
+        if (username == null || username.trim().isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty.");
+        }
+        if (passwordHash == null || passwordHash.trim().isEmpty()) {
+            throw new IllegalArgumentException("Password hash cannot be null or empty.");
+        }
+    }
+
+    private static User copyOf(User user) {
+        return new User(user.getId(), user.getUsername(), user.getPasswordHash());
+    }
+}
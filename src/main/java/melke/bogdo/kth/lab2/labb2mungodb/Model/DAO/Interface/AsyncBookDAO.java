@@ -0,0 +1,145 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous counterpart of {@link BookDAO}.
+ * <p>
+ * Every method starts the operation and returns immediately. The returned {@link CompletableFuture} completes with
+ * the result of the matching {@link BookDAO} method, or exceptionally with its exception, a
+ * {@link java.util.concurrent.TimeoutException} when the call takes too long, or a
+ * {@link java.util.concurrent.RejectedExecutionException} when too many calls are pending. Cancelling a future
+ * aborts the database operation. Independent calls can be combined, e.g. with {@link CompletableFuture#allOf}, to
+ * run them in parallel.
+ * </p>
+ * <p>
+ * The streaming reads of {@link BookDAO} are offered as {@link #forEachBook(int, Consumer)}, since a stream that
+ * holds an open cursor cannot be handed across threads safely.
+ * </p>
+ */
+public interface AsyncBookDAO {
+
+    /**
+     * Retrieves all books. See {@link BookDAO#getAllBooks()}.
+     *
+     * @return a future of all {@link Book} objects.
+     */
+    CompletableFuture<List<Book>> getAllBooks();
+
+    /**
+     * Retrieves a summary of every book. See {@link BookDAO#getBookSummaries()}.
+     *
+     * @return a future of the {@link BookSummary} objects.
+     */
+    CompletableFuture<List<BookSummary>> getBookSummaries();
+
+    /**
+     * Retrieves a single book. See {@link BookDAO#getBookById(String)}.
+     *
+     * @param bookId the unique ID of the book.
+     * @return a future of the {@link Book}, or of {@code null} if no book has this ID.
+     */
+    CompletableFuture<Book> getBookById(String bookId);
+
+    /**
+     * Adds a new book. See {@link BookDAO#addBook(Book)}.
+     *
+     * @param book the {@link Book} to add.
+     * @return a future completed when the book is stored.
+     */
+    CompletableFuture<Void> addBook(Book book);
+
+    /**
+     * Deletes a book. See {@link BookDAO#deleteBook(String)}.
+     *
+     * @param bookId the unique ID of the book.
+     * @return a future completed when the book is deleted.
+     */
+    CompletableFuture<Void> deleteBook(String bookId);
+
+    /**
+     * Adds or updates a review. See {@link BookDAO#addReview(String, Review)}.
+     *
+     * @param bookId the unique ID of the book.
+     * @param review the {@link Review} to store.
+     * @return a future completed when the review is stored.
+     */
+    CompletableFuture<Void> addReview(String bookId, Review review);
+
+    /**
+     * Retrieves one page of the reviews of a book. See {@link BookDAO#getReviewsPage(String, String)}.
+     *
+     * @param bookId            the unique ID of the book.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @return a future of the {@link Page} of {@link Review} objects.
+     */
+    CompletableFuture<Page<Review>> getReviewsPage(String bookId, String continuationToken);
+
+    /**
+     * Adds or updates a rating. See {@link BookDAO#addRating(String, Rating)}.
+     *
+     * @param bookId the unique ID of the book.
+     * @param rating the {@link Rating} to store.
+     * @return a future completed when the rating is stored.
+     */
+    CompletableFuture<Void> addRating(String bookId, Rating rating);
+
+    /**
+     * Adds or updates many ratings at once. See {@link BookDAO#addRatings(List)}.
+     *
+     * @param ratings the ratings to apply, each paired with its book ID.
+     * @return a future of one {@link BatchOutcome} per submitted item.
+     */
+    CompletableFuture<List<BatchOutcome>> addRatings(List<BookUpdate<Rating>> ratings);
+
+    /**
+     * Adds or updates many reviews at once. See {@link BookDAO#addReviews(List)}.
+     *
+     * @param reviews the reviews to apply, each paired with its book ID.
+     * @return a future of one {@link BatchOutcome} per submitted item.
+     */
+    CompletableFuture<List<BatchOutcome>> addReviews(List<BookUpdate<Review>> reviews);
+
+    /**
+     * Searches for books. See {@link BookDAO#searchBooks(String, String)}.
+     *
+     * @param type    the type of search (e.g., "Keyword", "Title", "Author", "Genre").
+     * @param keyword the search keyword.
+     * @return a future of the matching {@link Book} objects.
+     */
+    CompletableFuture<List<Book>> searchBooks(String type, String keyword);
+
+    /**
+     * Retrieves one page of books. See {@link BookDAO#getBooksPage(String, int)}.
+     *
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a future of the {@link Page} of {@link Book} objects.
+     */
+    CompletableFuture<Page<Book>> getBooksPage(String continuationToken, int pageSize);
+
+    /**
+     * Retrieves one page of matching books. See {@link BookDAO#searchBooksPage(String, String, String, int)}.
+     *
+     * @param type              the type of search.
+     * @param keyword           the search keyword.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a future of the {@link Page} of matching {@link Book} objects.
+     */
+    CompletableFuture<Page<Book>> searchBooksPage(String type, String keyword, String continuationToken, int pageSize);
+
+    /**
+     * Performs an action for every book on a DAO thread. See {@link BookDAO#forEachBook(int, Consumer)}.
+     * Cancelling the future stops the iteration and closes the cursor.
+     *
+     * @param batchSize the number of books fetched from the database per round trip.
+     * @param action    the action to perform for each {@link Book}; it runs on the DAO thread.
+     * @return a future completed when every book has been visited.
+     */
+    CompletableFuture<Void> forEachBook(int batchSize, Consumer<Book> action);
+}
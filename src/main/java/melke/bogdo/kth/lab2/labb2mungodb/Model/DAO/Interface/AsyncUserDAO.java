@@ -0,0 +1,49 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
+import org.bson.types.ObjectId;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link UserDAO}.
+ * <p>
+ * The returned futures complete as described for {@link AsyncBookDAO}.
+ * </p>
+ */
+public interface AsyncUserDAO {
+
+    /**
+     * Retrieves a user by ID. See {@link UserDAO#getUserById(ObjectId)}.
+     *
+     * @param userId the unique {@link ObjectId} of the user.
+     * @return a future of the {@link User}, or of {@code null} if not found.
+     */
+    CompletableFuture<User> getUserById(ObjectId userId);
+
+    /**
+     * Retrieves a user by username. See {@link UserDAO#getUserByUsername(String)}.
+     *
+     * @param username the username of the user.
+     * @return a future of the {@link User}.
+     */
+    CompletableFuture<User> getUserByUsername(String username);
+
+    /**
+     * Validates a user's credentials. See {@link UserDAO#validateUser(String, String)}.
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return a future of {@code true} if the credentials are valid.
+     */
+    CompletableFuture<Boolean> validateUser(String username, String passwordHash);
+
+    /**
+     * Authenticates a user. See {@link UserDAO#authenticate(String, String)}.
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return a future of the authenticated {@link User}, or of {@code null} if the credentials are invalid.
+     */
+    CompletableFuture<User> authenticate(String username, String passwordHash);
+}
@@ -0,0 +1,21 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
+
+/**
+ * Receives changes to the book catalog from a {@link BookChangeSource}.
+ * <p>
+ * Events are delivered one at a time, in the order they happened, on the source's own thread or the writing
+ * thread. Implementations must return quickly and hand UI updates over to the JavaFX Application Thread.
+ * </p>
+ */
+@FunctionalInterface
+public interface BookChangeListener {
+
+    /**
+     * Called for every change to the book catalog.
+     *
+     * @param event the {@link BookChangeEvent} describing the change.
+     */
+    void onBookChange(BookChangeEvent event);
+}
@@ -0,0 +1,77 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A source of changes to the book catalog, such as the
+ * {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.BookChangeStream} watching the database or an in-memory
+ * {@link BookDAO} reporting its own writes.
+ */
+public interface BookChangeSource {
+
+    /**
+     * Registers a listener for all following changes.
+     *
+     * @param listener the {@link BookChangeListener} to add.
+     * @throws IllegalArgumentException if {@code listener} is null.
+     */
+    void addListener(BookChangeListener listener);
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the {@link BookChangeListener} to remove.
+     */
+    void removeListener(BookChangeListener listener);
+
+    /**
+     * Registers a listener and hands it the catalog the source has kept since it started, if any, so the listener
+     * does not have to read the whole catalog. The catalog includes every change made before the listener's first
+     * event; changes after that are delivered to the listener. Call it once {@link #started()} has completed.
+     *
+     * @param listener the {@link BookChangeListener} to add.
+     * @return the catalog, or {@code null} if the listener has to read the catalog itself, after this call.
+     * @throws IllegalArgumentException if {@code listener} is null.
+     */
+    default List<Book> addListenerWithCatalog(BookChangeListener listener) {
+        addListener(listener);
+        return null;
+    }
+
+    /**
+     * Sets the catalog to save when the source stops, which a listener keeps up to date with every change it
+     * receives, so the next start can hand it out through {@link #addListenerWithCatalog(BookChangeListener)}.
+     * Sources that cannot resume from a saved position ignore it.
+     *
+     * @param catalog supplies the current catalog, or {@code null} if there is none to save.
+     */
+    default void setCatalogToSave(Supplier<? extends Collection<Book>> catalog) {
+    }
+
+    /**
+     * Gets a future completed once every following change is reported to the listeners. A listener that registers
+     * and waits for it before reading the catalog misses no change made after that read. Sources that report their
+     * changes from the start return a completed future.
+     *
+     * @return a future completed when the source reports every change.
+     */
+    default CompletableFuture<Void> started() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Checks whether changes are currently being reported. Data kept up to date by a source that is not live may be
+     * stale.
+     *
+     * @return {@code true} if every change is reported; sources that always report their changes return
+     * {@code true}.
+     */
+    default boolean isLive() {
+        return true;
+    }
+}
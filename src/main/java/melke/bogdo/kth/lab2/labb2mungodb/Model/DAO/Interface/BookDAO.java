@@ -3,6 +3,8 @@ package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interface for managing book-related operations in the database.
@@ -23,6 +25,26 @@ public interface BookDAO {
      */
     List<Book> getAllBooks();
 
+    /**
+     * Retrieves a lightweight summary of every book in the database.
+     * <p>
+     * Only the ID, title, ISBN, genre name and average rating are read, which makes this
+     * the preferred call for lists and pickers that do not need authors, reviews or ratings.
+     * </p>
+     *
+     * @return a {@link List} of {@link BookSummary} objects for all books in the database.
+     */
+    List<BookSummary> getBookSummaries();
+
+    /**
+     * Retrieves a single book by its unique identifier.
+     *
+     * @param bookId the unique ID of the book.
+     * @return the {@link Book}, or {@code null} if no book has this ID.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ID.
+     */
+    Book getBookById(String bookId);
+
     /**
      * Adds a new book to the database.
      *
@@ -54,6 +76,19 @@ public interface BookDAO {
      */
     void addReview(String bookId, Review review);
 
+    /**
+     * Retrieves one page of the reviews of a book.
+     * <p>
+     * Reviews are read on demand, page by page, instead of with every book read.
+     * </p>
+     *
+     * @param bookId            the unique ID of the book.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @return a {@link Page} of {@link Review} objects.
+     * @throws IllegalArgumentException if {@code bookId} or the token is invalid.
+     */
+    Page<Review> getReviewsPage(String bookId, String continuationToken);
+
     // Embedded Ratings
 
     /**
@@ -68,6 +103,32 @@ public interface BookDAO {
      */
     void addRating(String bookId, Rating rating);
 
+    // Batch Ingestion
+
+    /**
+     * Adds or updates many ratings at once.
+     * <p>
+     * Ratings are grouped by book and written together, keeping at most one rating per user per book.
+     * When the batch holds several ratings by the same user for the same book, the last one wins.
+     * </p>
+     *
+     * @param ratings the ratings to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    List<BatchOutcome> addRatings(List<BookUpdate<Rating>> ratings);
+
+    /**
+     * Adds or updates many reviews at once.
+     * <p>
+     * Reviews are grouped by book and written together, keeping at most one review per user per book.
+     * When the batch holds several reviews by the same user for the same book, the last one wins.
+     * </p>
+     *
+     * @param reviews the reviews to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    List<BatchOutcome> addReviews(List<BookUpdate<Review>> reviews);
+
     // Embedded Search
 
     /**
@@ -75,13 +136,99 @@ public interface BookDAO {
      * <p>
      * Supports searching by book title, author name, genre, or other attributes.
      * The {@code type} parameter specifies the attribute to search by,
-     * and {@code keyword} specifies the search term.
+     * and {@code keyword} specifies the search term. The "Keyword" type searches
+     * title, author names and genre at once and orders the results by relevance.
      * </p>
      *
-     * @param type    the type of search (e.g., "Title", "Author", "Genre").
+     * @param type    the type of search (e.g., "Keyword", "Title", "Author", "Genre").
      * @param keyword the search keyword.
      * @return a {@link List} of {@link Book} objects matching the search criteria.
      * @throws IllegalArgumentException if {@code type} or {@code keyword} is null or empty.
      */
     List<Book> searchBooks(String type, String keyword);
+
+    // Paginated and Streaming Reads
+
+    /**
+     * Retrieves one page of books, ordered by their unique ID.
+     * <p>
+     * Pages are keyset-paginated: the continuation token identifies the last book of the previous page,
+     * so fetching a page costs the same regardless of how deep into the catalog it is.
+     * </p>
+     *
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of {@link Book} objects.
+     * @throws IllegalArgumentException if {@code pageSize} is not positive or the token is invalid.
+     */
+    Page<Book> getBooksPage(String continuationToken, int pageSize);
+
+    /**
+     * Retrieves one page of books matching the search criteria, ordered by their unique ID.
+     *
+     * @param type              the type of search (e.g., "Keyword", "Title", "Author", "Genre").
+     * @param keyword           the search keyword.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of {@link Book} objects matching the search criteria.
+     * @throws IllegalArgumentException if the search parameters, {@code pageSize} or the token are invalid.
+     */
+    Page<Book> searchBooksPage(String type, String keyword, String continuationToken, int pageSize);
+
+    /**
+     * Streams all books, decoding each one only when the stream reaches it.
+     * <p>
+     * The stream holds an open database cursor and must be closed, preferably with try-with-resources.
+     * </p>
+     *
+     * @param batchSize the number of books fetched from the database per round trip.
+     * @return a lazily populated {@link Stream} of {@link Book} objects.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    Stream<Book> streamAllBooks(int batchSize);
+
+    /**
+     * Streams the books matching the search criteria, decoding each one only when the stream reaches it.
+     * <p>
+     * The stream holds an open database cursor and must be closed, preferably with try-with-resources.
+     * </p>
+     *
+     * @param type      the type of search (e.g., "Keyword", "Title", "Author", "Genre").
+     * @param keyword   the search keyword.
+     * @param batchSize the number of books fetched from the database per round trip.
+     * @return a lazily populated {@link Stream} of matching {@link Book} objects.
+     * @throws IllegalArgumentException if the search parameters or {@code batchSize} are invalid.
+     */
+    Stream<Book> streamSearchBooks(String type, String keyword, int batchSize);
+
+    /**
+     * Streams the books matching the search criteria, giving up once the query has run for a time limit.
+     * <p>
+     * Intended for interactive searches: a query that is no longer wanted should be abandoned by closing
+     * the stream, and one that takes too long fails instead of occupying the database. Implementations
+     * without a way to limit query time ignore the limit.
+     * </p>
+     *
+     * @param type          the type of search (e.g., "Keyword", "Title", "Author", "Genre").
+     * @param keyword       the search keyword.
+     * @param batchSize     the number of books fetched from the database per round trip.
+     * @param maxTimeMillis the time limit in milliseconds, or 0 for none.
+     * @return a lazily populated {@link Stream} of matching {@link Book} objects.
+     * @throws IllegalArgumentException if the search parameters, {@code batchSize} or {@code maxTimeMillis} are invalid.
+     */
+    default Stream<Book> streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis) {
+        return streamSearchBooks(type, keyword, batchSize);
+    }
+
+    /**
+     * Performs the given action for every book without holding the whole catalog in memory.
+     *
+     * @param batchSize the number of books fetched from the database per round trip.
+     * @param action    the action to perform for each {@link Book}.
+     */
+    default void forEachBook(int batchSize, Consumer<Book> action) {
+        try (Stream<Book> books = streamAllBooks(batchSize)) {
+            books.forEach(action);
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * The primary storage of a {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.LocalBookDAO}: complete books keyed
+ * by their ID, kept in memory or in local files.
+ * <p>
+ * Books handed in and out are never shared with the store: every read returns a book the caller may modify, and
+ * the caller may keep using a book after storing it. Stores are safe for concurrent use; the DAO serializes writes
+ * to the same book.
+ * </p>
+ */
+public interface BookStore {
+
+    /**
+     * Reads a book.
+     *
+     * @param bookId the ID of the book, as lowercase hexadecimal.
+     * @return the {@link Book}, or {@code null} if no book has this ID.
+     */
+    Book get(String bookId);
+
+    /**
+     * Checks whether a book is stored, without reading it.
+     *
+     * @param bookId the ID of the book, as lowercase hexadecimal.
+     * @return {@code true} if a book has this ID.
+     */
+    boolean contains(String bookId);
+
+    /**
+     * Stores a book, replacing any book with the same ID. When this method returns, the book is as durable as the
+     * store can make it.
+     *
+     * @param book the {@link Book} to store; its ID must be set.
+     */
+    void put(Book book);
+
+    /**
+     * Removes a book, if it is stored.
+     *
+     * @param bookId the ID of the book, as lowercase hexadecimal.
+     */
+    void remove(String bookId);
+
+    /**
+     * Streams the stored books in ID order, reading each one only when the stream reaches it.
+     * The stream reflects changes made while it is consumed, like a database cursor.
+     *
+     * @param afterId the ID the stream starts after, or {@code null} to start with the first book.
+     * @return a {@link Stream} of {@link Book} objects.
+     */
+    Stream<Book> books(String afterId);
+
+    /**
+     * Streams the stored books that match a filter, in ID order. A store that keeps books as objects applies the
+     * filter to the stored books and only copies the matches, so the filter must neither modify nor keep the book
+     * it is given.
+     *
+     * @param afterId the ID the stream starts after, or {@code null} to start with the first book.
+     * @param filter  selects the books to return.
+     * @return a {@link Stream} of the matching {@link Book} objects.
+     */
+    default Stream<Book> books(String afterId, Predicate<? super Book> filter) {
+        return books(afterId).filter(filter);
+    }
+
+    /**
+     * Streams a projection of every stored book, in ID order. A store that keeps books as objects applies the
+     * projection to the stored books without copying them, so the projection must neither modify the book nor
+     * return it or any of its mutable parts.
+     *
+     * @param afterId    the ID the stream starts after, or {@code null} to start with the first book.
+     * @param projection extracts the result from a book.
+     * @param <R>        the type of the results.
+     * @return a {@link Stream} of the results.
+     */
+    default <R> Stream<R> project(String afterId, Function<? super Book, ? extends R> projection) {
+        return books(afterId).map(projection);
+    }
+
+    /**
+     * Gets the number of stored books.
+     *
+     * @return the number of books.
+     */
+    int size();
+}
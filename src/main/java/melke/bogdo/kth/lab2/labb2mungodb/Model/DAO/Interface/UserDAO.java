@@ -36,4 +36,18 @@ public interface UserDAO {
      * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty.
      */
     boolean validateUser(String username, String passwordHash);
+
+    /**
+     * Checks a user's credentials and returns the matching user, in a single query.
+     * <p>
+     * This is the preferred login call: it replaces a {@link #validateUser} check followed by
+     * {@link #getUserByUsername}. The returned user does not carry the password hash.
+     * </p>
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return the authenticated {@link User}, or {@code null} if the credentials are invalid.
+     * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty.
+     */
+    User authenticate(String username, String passwordHash);
 }
@@ -0,0 +1,826 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import com.mongodb.MongoClientSettings;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.*;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Import.BookRecordParser;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeListener;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookChangeSource;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookDAO;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookStore;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BookDAO} working on local {@link BookStore}, for running the application, benchmarks and experiments
+ * without a MongoDB server.
+ * <p>
+ * The store holds the books by ID and keeps them in ID order, so pages follow the same {@code _id} order as on the
+ * server. Writes to the same book are serialized by one of {@value #LOCK_STRIPES} striped locks chosen by the
+ * book's ID: each write reads the book, applies the change to that private copy and stores it again, while writes
+ * to different books mostly run in parallel and reads never lock. Secondary indexes, rebuilt from the store on
+ * construction, map each ISBN, genre name and author name to the IDs of its books; searches on these fields match
+ * the keyword against the distinct indexed values instead of every book.
+ * </p>
+ * <p>
+ * The semantics follow {@link BookDAOImpl} with embedded reviews: ratings and reviews are kept at one per user and
+ * book, rating aggregates are recomputed on every rating write, batch outcomes carry the same statuses and messages,
+ * and field searches match the keyword as a case-insensitive regex. ISBNs are unique, as with the
+ * {@code books_isbn_unique} index. Keyword searches match whole words of the title, author names and genre
+ * name, most matches first, which approximates the server's text search without its stemming and stop words.
+ * </p>
+ * <p>
+ * The DAO is also the {@link BookChangeSource} for its own writes, which are reported to listeners on the writing
+ * thread, in order for each book.
+ * </p>
+ */
+public class LocalBookDAO implements BookDAO, BookChangeSource {
+
+    private static final Logger logger = Logger.getLogger(LocalBookDAO.class.getName());
+
+    /**
+     * Number of locks that writes are spread over.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final BookStore store;
+    private final ConcurrentMap<String, String> idsByIsbn = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> idsByGenre = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> idsByAuthor = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a new {@code LocalBookDAO} and indexes the books already in the store.
+     *
+     * @param store the {@link BookStore} holding the books.
+     * @throws IllegalArgumentException if {@code store} is null.
+     */
+    public LocalBookDAO(BookStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("The BookStore must be provided.");
+        }
+        this.store = store;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        try (Stream<Book> books = store.books(null)) {
+            books.forEach(this::index);
+        }
+    }
+
+    /**
+     * Retrieves all books, in ID order.
+     *
+     * @return a {@link List} of copies of all stored books.
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        try (Stream<Book> books = store.books(null)) {
+            return books.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Retrieves a summary of every book, in ID order.
+     *
+     * @return a {@link List} of {@link BookSummary} objects for all books.
+     */
+    @Override
+    public List<BookSummary> getBookSummaries() {
+        try (Stream<BookSummary> summaries = store.project(null, book -> new BookSummary(book.getId(), book.getTitle(),
+                book.getIsbn(), book.getGenre() != null ? book.getGenre().getName() : null, book.getAverageRating()))) {
+            return summaries.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Retrieves a single book by its unique ID.
+     *
+     * @param bookId the unique ID of the book.
+     * @return the {@link Book}, or {@code null} if no book has this ID.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public Book getBookById(String bookId) {
+        return store.get(requireObjectId(bookId));
+    }
+
+    /**
+     * Adds a new book without reviews or ratings, and sets the generated ID on the given {@link Book}.
+     *
+     * @param book the {@link Book} object to add.
+     * @throws IllegalArgumentException if {@code book} is null or another book has the same ISBN.
+     */
+    @Override
+    public void addBook(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null.");
+        }
+        Book stored = new Book(new ObjectId().toHexString(), book.getTitle(), book.getIsbn(), book.getGenre(),
+                book.getAuthors() != null ? book.getAuthors() : new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                book.getUserId());
+        stored.setRatingAggregates(0, 0);
+        insert(stored);
+        book.setId(stored.getId());
+    }
+
+    /**
+     * Stores a complete book, including its reviews, ratings and ID, e.g. to seed the catalog.
+     * A book without an ID is given a new one.
+     *
+     * @param book the {@link Book} to store.
+     * @throws IllegalArgumentException if {@code book} is null, its ID is invalid or already used,
+     *                                  or another book has the same ISBN.
+     */
+    public void putBook(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null.");
+        }
+        Book stored = new Book(book.getId() != null ? requireObjectId(book.getId()) : new ObjectId().toHexString(),
+                book.getTitle(), book.getIsbn(), book.getGenre(),
+                book.getAuthors() != null ? book.getAuthors() : new ArrayList<>(),
+                book.getReviews() != null ? book.getReviews() : new ArrayList<>(),
+                book.getRatings() != null ? book.getRatings() : new ArrayList<>(), book.getUserId());
+        stored.setRatingAggregates(stored.getRatings().size(), sumOf(stored.getRatings()));
+        insert(stored);
+    }
+
+    /**
+     * Loads a catalog file in one of the {@link BookRecordParser} formats, chosen from the file extension.
+     * Invalid records and records with an ISBN that is already stored are skipped and logged.
+     *
+     * @param file the catalog file.
+     * @return the number of books stored.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a CSV file does not start with the expected header.
+     */
+    public int loadFile(Path file) throws IOException {
+        BookRecordParser parser = new BookRecordParser(BookRecordParser.Format.fromFileName(file.getFileName().toString()));
+        DecoderContext decoderContext = DecoderContext.builder().build();
+        int stored = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            if (parser.getFormat() == BookRecordParser.Format.CSV) {
+                String header = reader.readLine();
+                lineNumber++;
+                parser.validateHeader(header != null ? header : "");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    BsonDocument bookDoc = parser.parse(line).toBsonDocument(Document.class, MongoClientSettings.getDefaultCodecRegistry());
+                    putBook(BookCodecs.getBookCodec().decode(new BsonDocumentReader(bookDoc), decoderContext));
+                    stored++;
+                } catch (RuntimeException e) {
+                    logger.warning("Skipping line " + lineNumber + " of " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        logger.info("Loaded " + stored + " books from " + file);
+        return stored;
+    }
+
+    /**
+     * Deletes a book by its unique ID.
+     *
+     * @param bookId the unique ID of the book to delete.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public void deleteBook(String bookId) {
+        String id = requireObjectId(bookId);
+        synchronized (lockFor(id)) {
+            Book removed = store.get(id);
+            if (removed != null) {
+                store.remove(id);
+                unindex(removed);
+                publish(new BookChangeEvent(BookChangeEvent.Type.DELETE, id, null));
+            }
+        }
+    }
+
+    /**
+     * Adds or updates a review for a specific book. An existing review by the same user keeps its username
+     * and gets the new text and date.
+     *
+     * @param bookId the unique ID of the book.
+     * @param review the {@link Review} object containing the review details.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public void addReview(String bookId, Review review) {
+        if (!update(requireObjectId(bookId), book -> upsertReview(book, review))) {
+            logger.warning("Cannot review missing book: " + bookId);
+        }
+    }
+
+    /**
+     * Retrieves the reviews of a book as a single page.
+     *
+     * @param bookId            the unique ID of the book.
+     * @param continuationToken {@code null} for the first page; any other token yields an empty page.
+     * @return a {@link Page} of {@link Review} objects.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public Page<Review> getReviewsPage(String bookId, String continuationToken) {
+        Book book = store.get(requireObjectId(bookId));
+        List<Review> reviews = continuationToken == null && book != null ? book.getReviews() : new ArrayList<>();
+        return new Page<>(reviews, null);
+    }
+
+    /**
+     * Adds or updates a rating for a specific book and recomputes its rating aggregates.
+     *
+     * @param bookId the unique ID of the book.
+     * @param rating the {@link Rating} object containing the rating details.
+     * @throws IllegalArgumentException if {@code bookId} is not a valid ObjectId.
+     */
+    @Override
+    public void addRating(String bookId, Rating rating) {
+        if (!update(requireObjectId(bookId), book -> {
+            upsertRating(book, rating);
+            recomputeAggregates(book);
+        })) {
+            logger.warning("Cannot rate missing book: " + bookId);
+        }
+    }
+
+    /**
+     * Adds or updates many ratings, writing each book once.
+     *
+     * @param ratings the ratings to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    @Override
+    public List<BatchOutcome> addRatings(List<BookUpdate<Rating>> ratings) {
+        return applyBatch(ratings, Rating::getUserId, rating -> {
+            if (rating.getRating() == null || rating.getRating() < RatingAggregates.MIN_RATING
+                    || rating.getRating() > RatingAggregates.MAX_RATING) {
+                return "Rating must be between 1 and 5.";
+            }
+            return null;
+        }, LocalBookDAO::upsertRating, LocalBookDAO::recomputeAggregates);
+    }
+
+    /**
+     * Adds or updates many reviews, writing each book once.
+     *
+     * @param reviews the reviews to apply, each paired with its book ID.
+     * @return one {@link BatchOutcome} per submitted item, in submission order.
+     */
+    @Override
+    public List<BatchOutcome> addReviews(List<BookUpdate<Review>> reviews) {
+        return applyBatch(reviews, Review::getUserId, review -> {
+            if (review.getReviewText() == null || review.getReviewText().trim().isEmpty()) {
+                return "Review text cannot be null or empty.";
+            }
+            if (review.getReviewDate() == null) {
+                return "Review date is required.";
+            }
+            return null;
+        }, LocalBookDAO::upsertReview, book -> {
+        });
+    }
+
+    /**
+     * Searches for books by type and keyword. Keyword searches are ordered by the number of matching words,
+     * all other searches by ID.
+     *
+     * @param type    the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword the search keyword.
+     * @return a {@link List} of the matching books.
+     * @throws IllegalArgumentException if {@code type} or {@code keyword} is null or empty, or the type is unknown.
+     */
+    @Override
+    public List<Book> searchBooks(String type, String keyword) {
+        requireSearch(type, keyword);
+        if (type.equalsIgnoreCase("keyword")) {
+            Set<String> terms = words(keyword);
+            Map<String, Integer> scores = new HashMap<>();
+            List<Book> results = new ArrayList<>();
+            try (Stream<Book> books = store.books(null, book -> textScore(book, terms) > 0)) {
+                books.forEach(book -> {
+                    scores.put(book.getId(), textScore(book, terms));
+                    results.add(book);
+                });
+            }
+            results.sort((a, b) -> scores.get(b.getId()) - scores.get(a.getId())); // Stable, so ties stay in ID order
+            return results;
+        }
+        try (Stream<Book> books = find(type, keyword, null)) {
+            return books.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Retrieves one page of books, ordered by ID.
+     *
+     * @param continuationToken the ID of the last book on the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of {@link Book} objects.
+     * @throws IllegalArgumentException if {@code pageSize} is not positive or the token is not a valid ObjectId.
+     */
+    @Override
+    public Page<Book> getBooksPage(String continuationToken, int pageSize) {
+        return toPage(store.books(requirePage(continuationToken, pageSize)), pageSize);
+    }
+
+    /**
+     * Retrieves one page of books matching the search criteria, ordered by ID.
+     *
+     * @param type              the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword           the search keyword.
+     * @param continuationToken the ID of the last book on the previous page, or {@code null} for the first page.
+     * @param pageSize          the maximum number of books on the page.
+     * @return a {@link Page} of matching {@link Book} objects.
+     * @throws IllegalArgumentException if the search parameters, {@code pageSize} or the token are invalid.
+     */
+    @Override
+    public Page<Book> searchBooksPage(String type, String keyword, String continuationToken, int pageSize) {
+        requireSearch(type, keyword);
+        return toPage(find(type, keyword, requirePage(continuationToken, pageSize)), pageSize);
+    }
+
+    /**
+     * Streams all books in ID order. The stream reflects the catalog as it is iterated, like a database cursor.
+     *
+     * @param batchSize has no effect beyond validation, since nothing is fetched.
+     * @return a {@link Stream} of the stored books.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     */
+    @Override
+    public Stream<Book> streamAllBooks(int batchSize) {
+        requireBatchSize(batchSize);
+        return store.books(null);
+    }
+
+    /**
+     * Streams the books matching the search criteria in ID order.
+     *
+     * @param type      the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword   the search keyword.
+     * @param batchSize has no effect beyond validation, since nothing is fetched.
+     * @return a {@link Stream} of the matching books.
+     * @throws IllegalArgumentException if the search parameters or {@code batchSize} are invalid.
+     */
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize) {
+        return streamSearchBooks(type, keyword, batchSize, 0);
+    }
+
+    /**
+     * Streams the books matching the search criteria in ID order. Searches run in memory, so the time limit
+     * is only validated.
+     *
+     * @param type          the type of search (e.g., "keyword", "title", "author", "genre", "isbn").
+     * @param keyword       the search keyword.
+     * @param batchSize     has no effect beyond validation, since nothing is fetched.
+     * @param maxTimeMillis the time limit in milliseconds, or 0 for none.
+     * @return a {@link Stream} of the matching books.
+     * @throws IllegalArgumentException if the search parameters, {@code batchSize} or {@code maxTimeMillis} are invalid.
+     */
+    @Override
+    public Stream<Book> streamSearchBooks(String type, String keyword, int batchSize, long maxTimeMillis) {
+        requireSearch(type, keyword);
+        if (maxTimeMillis < 0) {
+            throw new IllegalArgumentException("Time limit cannot be negative.");
+        }
+        requireBatchSize(batchSize);
+        return find(type, keyword, null);
+    }
+
+    /**
+     * Registers a listener for all following writes.
+     *
+     * @param listener the {@link BookChangeListener} to add.
+     * @throws IllegalArgumentException if {@code listener} is null.
+     */
+    @Override
+    public void addListener(BookChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the {@link BookChangeListener} to remove.
+     */
+    @Override
+    public void removeListener(BookChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the number of stored books.
+     *
+     * @return the number of books.
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Stores a new book, reserving its ISBN first so two books can never share one.
+     */
+    private void insert(Book book) {
+        String id = book.getId();
+        String isbn = book.getIsbn();
+        if (isbn != null && idsByIsbn.putIfAbsent(isbn, id) != null) {
+            throw new IllegalArgumentException("Duplicate ISBN: " + isbn);
+        }
+        synchronized (lockFor(id)) {
+            if (store.contains(id)) {
+                if (isbn != null) {
+                    idsByIsbn.remove(isbn, id);
+                }
+                throw new IllegalArgumentException("Duplicate book ID: " + id);
+            }
+            try {
+                store.put(book);
+            } catch (RuntimeException e) {
+                if (isbn != null) {
+                    idsByIsbn.remove(isbn, id);
+                }
+                throw e;
+            }
+            indexFields(book);
+            publish(new BookChangeEvent(BookChangeEvent.Type.INSERT, id, book));
+        }
+    }
+
+    /**
+     * Reads, changes and stores a book under the book's lock. Reviews and ratings do not change
+     * the indexed fields, so the indexes are left alone.
+     *
+     * @param id     the ID of the book.
+     * @param change modifies the book read from the store.
+     * @return {@code true} if the book exists, {@code false} otherwise.
+     */
+    private boolean update(String id, Consumer<Book> change) {
+        synchronized (lockFor(id)) {
+            Book book = store.get(id);
+            if (book == null) {
+                return false;
+            }
+            change.accept(book);
+            store.put(book);
+            publish(new BookChangeEvent(BookChangeEvent.Type.UPDATE, id, book));
+            return true;
+        }
+    }
+
+    /**
+     * Validates and de-duplicates batch items like {@link BookDAOImpl}, then applies all items for a book
+     * in one update of that book.
+     */
+    private <T> List<BatchOutcome> applyBatch(List<BookUpdate<T>> updates, Function<T, String> userIdOf,
+                                              Function<T, String> validate, BiConsumer<Book, T> upsert,
+                                              Consumer<Book> finish) {
+        BatchOutcome[] outcomes = new BatchOutcome[updates.size()];
+        Map<String, Map<String, Integer>> itemsByBook = new LinkedHashMap<>(); // bookId -> userId -> item index
+
+        for (int i = 0; i < updates.size(); i++) {
+            BookUpdate<T> update = updates.get(i);
+            String bookId = update != null ? update.getBookId() : null;
+            String problem;
+            if (update == null || update.getPayload() == null) {
+                problem = "Item cannot be null.";
+            } else if (bookId == null || !ObjectId.isValid(bookId)) {
+                problem = "Invalid ObjectId: " + bookId;
+            } else if (userIdOf.apply(update.getPayload()) == null) {
+                problem = "User ID is required.";
+            } else {
+                problem = validate.apply(update.getPayload());
+            }
+            if (problem != null) {
+                outcomes[i] = new BatchOutcome(i, bookId, BatchOutcome.Status.INVALID, problem);
+                continue;
+            }
+
+            Integer superseded = itemsByBook.computeIfAbsent(bookId, id -> new LinkedHashMap<>())
+                    .put(userIdOf.apply(update.getPayload()), i);
+            if (superseded != null) {
+                outcomes[superseded] = new BatchOutcome(superseded, bookId, BatchOutcome.Status.SUPERSEDED,
+                        "Replaced by item " + i + " in the same batch.");
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Integer>> book : itemsByBook.entrySet()) {
+            String bookId = book.getKey();
+            Iterable<Integer> indexes = book.getValue().values();
+            boolean found = update(bookId, stored -> {
+                for (int index : indexes) {
+                    upsert.accept(stored, updates.get(index).getPayload());
+                }
+                finish.accept(stored);
+            });
+            for (int index : indexes) {
+                outcomes[index] = found
+                        ? new BatchOutcome(index, bookId, BatchOutcome.Status.APPLIED, null)
+                        : new BatchOutcome(index, bookId, BatchOutcome.Status.BOOK_NOT_FOUND, "Book not found: " + bookId);
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Finds the books matching a field search, in ID order, after an optional ID. Author, genre and ISBN searches
+     * match the keyword against the indexed values; title and keyword searches scan the books.
+     *
+     * @return a {@link Stream} of the matching books.
+     */
+    private Stream<Book> find(String type, String keyword, String afterId) {
+        switch (type.toLowerCase()) {
+            case "keyword":
+                Set<String> terms = words(keyword);
+                return store.books(afterId, book -> textScore(book, terms) > 0);
+            case "title":
+                Pattern title = regex(keyword);
+                return store.books(afterId, book -> matches(title, book.getTitle()));
+            case "author":
+                return byIds(indexedIds(idsByAuthor, regex(keyword)), afterId);
+            case "genre":
+                return byIds(indexedIds(idsByGenre, regex(keyword)), afterId);
+            case "isbn":
+                Pattern isbn = regex(keyword);
+                NavigableSet<String> ids = new TreeSet<>();
+                idsByIsbn.forEach((value, id) -> {
+                    if (matches(isbn, value)) {
+                        ids.add(id);
+                    }
+                });
+                return byIds(ids, afterId);
+            default:
+                throw new IllegalArgumentException("Invalid search type: " + type);
+        }
+    }
+
+    private Stream<Book> byIds(NavigableSet<String> ids, String afterId) {
+        return (afterId != null ? ids.tailSet(afterId, false) : ids).stream()
+                .map(store::get)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Collects the IDs of all books with an indexed value matching the pattern.
+     */
+    private static NavigableSet<String> indexedIds(Map<String, Set<String>> index, Pattern pattern) {
+        NavigableSet<String> ids = new TreeSet<>();
+        index.forEach((value, bookIds) -> {
+            if (matches(pattern, value)) {
+                ids.addAll(bookIds);
+            }
+        });
+        return ids;
+    }
+
+    private static void addToIndex(ConcurrentMap<String, Set<String>> index, String value, String id) {
+        if (value != null) {
+            index.compute(value, (key, ids) -> {
+                Set<String> updated = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                updated.add(id);
+                return updated;
+            });
+        }
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, Set<String>> index, String value, String id) {
+        if (value != null) {
+            index.computeIfPresent(value, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Adds a stored book to the secondary indexes, when rebuilding them from the store.
+     */
+    private void index(Book book) {
+        if (book.getIsbn() != null && idsByIsbn.putIfAbsent(book.getIsbn(), book.getId()) != null) {
+            logger.warning("Stored book " + book.getId() + " repeats ISBN " + book.getIsbn());
+        }
+        indexFields(book);
+    }
+
+    private void indexFields(Book book) {
+        if (book.getGenre() != null) {
+            addToIndex(idsByGenre, book.getGenre().getName(), book.getId());
+        }
+        for (Author author : book.getAuthors()) {
+            addToIndex(idsByAuthor, author.getName(), book.getId());
+        }
+    }
+
+    private void unindex(Book book) {
+        if (book.getIsbn() != null) {
+            idsByIsbn.remove(book.getIsbn(), book.getId());
+        }
+        if (book.getGenre() != null) {
+            removeFromIndex(idsByGenre, book.getGenre().getName(), book.getId());
+        }
+        for (Author author : book.getAuthors()) {
+            removeFromIndex(idsByAuthor, author.getName(), book.getId());
+        }
+    }
+
+    private static Page<Book> toPage(Stream<Book> books, int pageSize) {
+        List<Book> page;
+        try (books) {
+            page = books.limit(pageSize + 1L).collect(Collectors.toList());
+        }
+        String nextToken = null;
+        if (page.size() > pageSize) {
+            page.remove(pageSize);
+            nextToken = page.get(pageSize - 1).getId();
+        }
+        return new Page<>(page, nextToken);
+    }
+
+    private void publish(BookChangeEvent event) {
+        for (BookChangeListener listener : listeners) {
+            try {
+                listener.onBookChange(event);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Book change listener failed for " + event, e);
+            }
+        }
+    }
+
+    private Object lockFor(String id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    /**
+     * Sets the user's review on a book, replacing the text and date of an existing one.
+     */
+    private static void upsertReview(Book book, Review review) {
+        List<Review> reviews = book.getReviews();
+        boolean replaced = false;
+        for (int i = 0; i < reviews.size(); i++) {
+            Review existing = reviews.get(i);
+            if (Objects.equals(existing.getUserId(), review.getUserId())) {
+                reviews.set(i, new Review(existing.getUserId(), review.getReviewText(), review.getReviewDate(), existing.getUsername()));
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            reviews.add(new Review(review.getUserId(), review.getReviewText(), review.getReviewDate(), review.getUsername()));
+        }
+    }
+
+    /**
+     * Sets the user's rating on a book, replacing the value of an existing one. The aggregates are not updated.
+     */
+    private static void upsertRating(Book book, Rating rating) {
+        List<Rating> ratings = book.getRatings();
+        boolean replaced = false;
+        for (int i = 0; i < ratings.size(); i++) {
+            Rating existing = ratings.get(i);
+            if (Objects.equals(existing.getUserId(), rating.getUserId())) {
+                ratings.set(i, new Rating(existing.getUserId(), rating.getRating()));
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            ratings.add(new Rating(rating.getUserId(), rating.getRating()));
+        }
+    }
+
+    private static void recomputeAggregates(Book book) {
+        book.setRatingAggregates(book.getRatings().size(), sumOf(book.getRatings()));
+    }
+
+    private static long sumOf(List<Rating> ratings) {
+        long sum = 0;
+        for (Rating rating : ratings) {
+            if (rating.getRating() != null) {
+                sum += rating.getRating();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the words of the title, author names and genre name that are search terms.
+     */
+    private static int textScore(Book book, Set<String> terms) {
+        int score = countWords(book.getTitle(), terms);
+        for (Author author : book.getAuthors()) {
+            score += countWords(author.getName(), terms);
+        }
+        return book.getGenre() != null ? score + countWords(book.getGenre().getName(), terms) : score;
+    }
+
+    private static int countWords(String text, Set<String> terms) {
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (terms.contains(word)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>(Arrays.asList(WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))));
+        words.remove("");
+        return words;
+    }
+
+    /**
+     * Compiles the keyword as the case-insensitive regex the server would match it with.
+     *
+     * @throws IllegalArgumentException if the keyword is not a valid regex.
+     */
+    private static Pattern regex(String keyword) {
+        return Pattern.compile(keyword, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private static boolean matches(Pattern pattern, String value) {
+        return value != null && pattern.matcher(value).find();
+    }
+
+    private static String requireObjectId(String bookId) {
+        if (bookId == null || !ObjectId.isValid(bookId)) {
+            throw new IllegalArgumentException("Invalid ObjectId: " + bookId);
+        }
+        return bookId.toLowerCase(Locale.ROOT);
+    }
+
+    private static void requireSearch(String type, String keyword) {
+        if (type == null || keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search type and keyword must be provided.");
+        }
+    }
+
+    /**
+     * Validates the page parameters.
+     *
+     * @return the book ID the page starts after, or {@code null} for the first page.
+     */
+    private static String requirePage(String continuationToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        if (continuationToken == null) {
+            return null;
+        }
+        if (!ObjectId.isValid(continuationToken)) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+        }
+        return continuationToken.toLowerCase(Locale.ROOT);
+    }
+
+    private static void requireBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+    }
+}
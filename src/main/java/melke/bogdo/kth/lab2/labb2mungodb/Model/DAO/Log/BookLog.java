@@ -0,0 +1,688 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodecs;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.BookStore;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A {@link BookStore} keeping books in an append-only log of segment files, for single-node installs without MongoDB.
+ * <p>
+ * Every write appends one record to the active {@link LogSegment}: the complete book encoded by the
+ * {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Codec.BookCodec}, or a tombstone for a deleted book. A record
+ * is framed as {@code [body length: int][CRC32C of body: int][type: byte][book ID: 12 bytes][BSON document]}.
+ * An in-memory index maps each book ID to its latest record, so a read is one positional read; it is rebuilt on
+ * startup by replaying all segments in order. A record that is cut short or fails its checksum, as left by a crash in
+ * the middle of a write, is truncated away with everything after it, but only at the end of the last segment, or of a
+ * compaction output whose inputs are all still there. Anywhere else, dropping records could lose books or bring deleted
+ * ones back, so the log refuses to open instead.
+ * </p>
+ * <p>
+ * With {@code sync} enabled, a write returns only once its record is on the storage device. Writers waiting at the
+ * same time share a single {@code fsync} (group commit): one of them syncs everything appended so far while the
+ * others wait for it, so concurrent writes cost far fewer syncs than writes. Records are readable as soon as they
+ * are appended. When the active segment reaches the segment size, it is synced and sealed, and a new one is started.
+ * </p>
+ * <p>
+ * Once at least half of the sealed bytes, and at least one segment's worth, belong to superseded records, a background
+ * compaction copies the live records of all sealed segments into a single new segment and deletes the old ones,
+ * oldest first. Tombstones are dropped, which is safe because a crash part way through the deletions only leaves
+ * newer segments behind, and the tombstone of a book is never older than its earlier records.
+ * </p>
+ */
+public class BookLog implements BookStore, Closeable {
+
+    private static final Logger logger = Logger.getLogger(BookLog.class.getName());
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int ID_BYTES = 12;
+    private static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean sync;
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final FileChannel lockChannel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<LogSegment> sealed = new ArrayList<>(); // Guarded by writeLock, in replay order
+    private LogSegment active; // Guarded by writeLock
+    private long appended; // Records appended since opening, guarded by writeLock
+    private final Object commitLock = new Object();
+    private long durable; // Records known to be synced, guarded by commitLock
+    private boolean syncing; // Guarded by commitLock
+    private final Object compactionLock = new Object();
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Opens the log in a directory, creating the directory if needed, and recovers the index from its segments.
+     *
+     * @param directory    the log directory; only one {@code BookLog} may use it at a time.
+     * @param segmentBytes the size at which the active segment is sealed.
+     * @param sync         whether writes wait until their records are synced to the storage device.
+     * @throws IOException              if the directory or a segment cannot be read, or a segment is corrupt other
+     *                                  than at the end of the log or of an interrupted compaction.
+     * @throws IllegalArgumentException if {@code segmentBytes} is not positive.
+     * @throws IllegalStateException    if the directory is used by another log.
+     */
+    public BookLog(Path directory, long segmentBytes, boolean sync) throws IOException {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        this.lockChannel = lockDirectory(directory);
+
+        long start = System.nanoTime();
+        List<LogSegment> segments = new ArrayList<>();
+        long records = 0;
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+                for (Path file : files) {
+                    if (LogSegment.isSegmentFile(file)) {
+                        segments.add(LogSegment.open(file));
+                    }
+                }
+            }
+            segments.sort(LogSegment.REPLAY_ORDER);
+            for (int i = 0; i < segments.size(); i++) {
+                LogSegment segment = segments.get(i);
+                records += replay(segment, i == segments.size() - 1 || isInterruptedCompaction(segment, segments));
+            }
+
+            LogSegment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last.getGeneration() == 0 && last.getSize() == 0) {
+                segments.remove(last);
+                active = last;
+            } else {
+                active = LogSegment.create(directory, last != null ? last.getSequence() + 1 : 1, 0);
+                syncDirectory();
+            }
+        } catch (IOException | RuntimeException e) {
+            for (LogSegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            lockChannel.close();
+            throw e;
+        }
+        sealed.addAll(segments);
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Recovered " + index.size() + " books from " + records + " records in " + segments.size()
+                + " segments of " + directory + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    @Override
+    public Book get(String bookId) {
+        while (true) {
+            Location location = index.get(bookId);
+            if (location == null) {
+                return null;
+            }
+            try {
+                ByteBuffer record = read(location);
+                record.position(HEADER_BYTES + 1 + ID_BYTES);
+                return BookCodecs.getBookCodec().decode(new BsonBinaryReader(record.slice()), DECODER_CONTEXT);
+            } catch (ClosedByInterruptException e) {
+                throw new UncheckedIOException("Interrupted while reading book " + bookId, e);
+            } catch (ClosedChannelException e) {
+                if (closed || index.get(bookId) == location) {
+                    throw new UncheckedIOException("Cannot read book " + bookId + ": the book log is closed", e);
+                }
+                // The record was moved by a compaction; read it from its new location
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read book " + bookId + " from " + location, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(String bookId) {
+        return index.containsKey(bookId);
+    }
+
+    @Override
+    public void put(Book book) {
+        BasicOutputBuffer output = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(output)) {
+            BookCodecs.getBookCodec().encode(writer, book, ENCODER_CONTEXT);
+        }
+        append(PUT, book.getId(), output.getInternalBuffer(), output.getSize());
+    }
+
+    @Override
+    public void remove(String bookId) {
+        if (index.containsKey(bookId)) {
+            append(DELETE, bookId, null, 0);
+        }
+    }
+
+    @Override
+    public Stream<Book> books(String afterId) {
+        return (afterId != null ? index.tailMap(afterId, false) : index).keySet().stream()
+                .map(this::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Gets the number of bytes in all segment files.
+     *
+     * @return the size of the log in bytes.
+     */
+    public long getDiskBytes() {
+        writeLock.lock();
+        try {
+            long bytes = active.getSize();
+            for (LogSegment segment : sealed) {
+                bytes += segment.getSize();
+            }
+            return bytes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes taken by the current version of every book.
+     *
+     * @return the live bytes.
+     */
+    public long getLiveBytes() {
+        writeLock.lock();
+        try {
+            long bytes = active.getLiveBytes();
+            for (LogSegment segment : sealed) {
+                bytes += segment.getLiveBytes();
+            }
+            return bytes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copies the live records of all sealed segments into one new segment and deletes the sealed segments.
+     * Runs in the background when enough of the log is superseded, but can also be called directly.
+     * Reads and writes continue while the records are copied.
+     *
+     * @throws UncheckedIOException  if a segment cannot be read or written.
+     * @throws IllegalStateException if the log is closed.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            List<LogSegment> inputs;
+            writeLock.lock();
+            try {
+                requireOpen();
+                inputs = new ArrayList<>(sealed);
+            } finally {
+                writeLock.unlock();
+            }
+            if (inputs.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            Set<LogSegment> compacted = Collections.newSetFromMap(new IdentityHashMap<>());
+            compacted.addAll(inputs);
+            LogSegment last = inputs.get(inputs.size() - 1);
+            LogSegment output = null;
+            List<String> movedIds = new ArrayList<>();
+            List<Location> movedFrom = new ArrayList<>();
+            List<Location> movedTo = new ArrayList<>();
+            try {
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    if (!compacted.contains(location.segment)) {
+                        continue;
+                    }
+                    ByteBuffer record = read(location);
+                    if (output == null) {
+                        output = LogSegment.create(directory, last.getSequence(), last.getGeneration() + 1);
+                    }
+                    long offset = output.append(record);
+                    movedIds.add(entry.getKey());
+                    movedFrom.add(location);
+                    movedTo.add(new Location(output, offset, location.size));
+                }
+                if (output != null) {
+                    output.force();
+                    syncDirectory();
+                }
+            } catch (IOException e) {
+                deleteQuietly(output);
+                throw new UncheckedIOException("Cannot compact the book log in " + directory, e);
+            }
+
+            writeLock.lock();
+            try {
+                for (int i = 0; i < movedIds.size(); i++) {
+                    Location from = movedFrom.get(i);
+                    Location to = movedTo.get(i);
+                    if (index.replace(movedIds.get(i), from, to)) { // Unless the book changed meanwhile
+                        from.segment.addLiveBytes(-from.size);
+                        to.segment.addLiveBytes(to.size);
+                    }
+                }
+                sealed.removeAll(inputs);
+                if (output != null) {
+                    sealed.add(output);
+                    sealed.sort(LogSegment.REPLAY_ORDER);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            long freed = 0;
+            for (int i = 0; i < inputs.size(); i++) {
+                LogSegment input = inputs.get(i);
+                try {
+                    input.delete();
+                    freed += input.getSize();
+                } catch (IOException e) {
+                    // Keep the rest: deleting out of order could bring deleted books back on the next recovery
+                    logger.log(Level.WARNING, "Cannot delete compacted segment " + input.getPath(), e);
+                    writeLock.lock();
+                    try {
+                        sealed.addAll(inputs.subList(i, inputs.size()));
+                        sealed.sort(LogSegment.REPLAY_ORDER);
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    break;
+                }
+            }
+            syncDirectory();
+            logger.info("Compacted " + inputs.size() + " segments of " + directory + " into "
+                    + (output != null ? output.getPath().getFileName() : "nothing") + ", freeing " + freed
+                    + " bytes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Stops the background compaction, syncs the active segment and closes all segment files.
+     *
+     * @throws IOException if the active segment cannot be synced or a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (compactionLock) {
+            writeLock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    active.force();
+                } finally {
+                    active.close();
+                    for (LogSegment segment : sealed) {
+                        segment.close();
+                    }
+                    lockChannel.close(); // Releases the directory lock
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Frames and appends a record, updates the index, and with {@code sync} waits until the record is synced.
+     */
+    private void append(byte type, String bookId, byte[] payload, int payloadLength) {
+        int bodyLength = 1 + ID_BYTES + payloadLength;
+        if (bodyLength > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Book is too large to store: " + bookId);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.position(HEADER_BYTES);
+        record.put(type).put(new ObjectId(bookId).toByteArray());
+        if (payloadLength > 0) {
+            record.put(payload, 0, payloadLength);
+        }
+        record.putInt(0, bodyLength).putInt(4, checksum(record.array(), HEADER_BYTES, bodyLength));
+        record.clear();
+
+        long sequence;
+        boolean compact = false;
+        writeLock.lock();
+        try {
+            requireOpen();
+            if (active.getSize() > 0 && active.getSize() + record.limit() > segmentBytes) {
+                roll();
+                compact = isWorthCompacting();
+            }
+            long offset = active.append(record);
+            apply(type, bookId, new Location(active, offset, record.limit()));
+            sequence = ++appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to the book log in " + directory, e);
+        } finally {
+            writeLock.unlock();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+        if (sync) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Points the index at a record and keeps the live bytes of the affected segments in step.
+     */
+    private void apply(byte type, String bookId, Location location) {
+        Location previous;
+        if (type == PUT) {
+            previous = index.put(bookId, location);
+            location.segment.addLiveBytes(location.size);
+        } else {
+            previous = index.remove(bookId);
+        }
+        if (previous != null) {
+            previous.segment.addLiveBytes(-previous.size);
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence number is synced, syncing the active segment itself when no
+     * other writer is doing so. Sealed segments were synced when they were sealed, so syncing the active segment
+     * covers every record appended before it. Interrupts are deferred until the record is synced.
+     */
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                synchronized (commitLock) {
+                    while (syncing && durable < sequence) {
+                        try {
+                            commitLock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (durable >= sequence) {
+                        return;
+                    }
+                    syncing = true;
+                }
+
+                long target;
+                LogSegment segment;
+                writeLock.lock();
+                try {
+                    target = appended;
+                    segment = active;
+                } finally {
+                    writeLock.unlock();
+                }
+                boolean synced = false;
+                try {
+                    interrupted |= Thread.interrupted(); // An interrupt would close the channel during the sync
+                    segment.force();
+                    synced = true;
+                } catch (ClosedChannelException e) {
+                    if (!segment.isClosed()) {
+                        throw new UncheckedIOException("Cannot sync the book log in " + directory, e);
+                    }
+                    synced = true; // Sealed and synced, then compacted or closed
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot sync the book log in " + directory, e);
+                } finally {
+                    synchronized (commitLock) {
+                        syncing = false;
+                        if (synced) {
+                            durable = Math.max(durable, target);
+                        }
+                        commitLock.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Syncs and seals the active segment and starts the next one.
+     */
+    private void roll() throws IOException {
+        active.force();
+        sealed.add(active);
+        active = LogSegment.create(directory, active.getSequence() + 1, 0);
+        syncDirectory();
+    }
+
+    private boolean isWorthCompacting() {
+        long total = 0;
+        long live = 0;
+        for (LogSegment segment : sealed) {
+            total += segment.getSize();
+            live += segment.getLiveBytes();
+        }
+        long dead = total - live;
+        return dead >= segmentBytes && dead * 2 >= total;
+    }
+
+    private void scheduleCompaction() {
+        if (compactionPending.compareAndSet(false, true)) {
+            try {
+                compactor.execute(() -> {
+                    compactionPending.set(false);
+                    try {
+                        compact();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Compaction of the book log in " + directory + " failed", e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                compactionPending.set(false); // Closing
+            }
+        }
+    }
+
+    /**
+     * Checks whether a segment is the output of a compaction that was interrupted before it deleted its inputs:
+     * the last input, with the same sequence number and the previous generation, is still there. Until the output
+     * is synced, no input is deleted, so every record cut off the output is still in the inputs.
+     */
+    private static boolean isInterruptedCompaction(LogSegment segment, List<LogSegment> segments) {
+        for (LogSegment other : segments) {
+            if (other.getSequence() == segment.getSequence() && other.getGeneration() == segment.getGeneration() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replays the records of a segment into the index. A record that is cut short or corrupt ends the segment: if it
+     * may be torn by a crash, the segment is truncated there, otherwise the replay fails.
+     *
+     * @param repairable whether the segment may end in a torn write and be truncated.
+     * @return the number of valid records.
+     * @throws IOException if the segment cannot be read, or is corrupt and not {@code repairable}.
+     */
+    private long replay(LogSegment segment, boolean repairable) throws IOException {
+        long size = segment.getSize();
+        long offset = 0;
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.getPath()), 1 << 16))) {
+            while (size - offset >= HEADER_BYTES) {
+                int bodyLength = in.readInt();
+                int checksum = in.readInt();
+                if (bodyLength < 1 + ID_BYTES || bodyLength > MAX_BODY_BYTES || bodyLength > size - offset - HEADER_BYTES) {
+                    break;
+                }
+                byte[] body = new byte[bodyLength];
+                in.readFully(body);
+                byte type = body[0];
+                if (checksum(body, 0, bodyLength) != checksum || (type != PUT && type != DELETE)) {
+                    break;
+                }
+                String bookId = new ObjectId(ByteBuffer.wrap(body, 1, ID_BYTES)).toHexString();
+                apply(type, bookId, new Location(segment, offset, HEADER_BYTES + bodyLength));
+                offset += HEADER_BYTES + bodyLength;
+                records++;
+            }
+        }
+        if (offset < size && !repairable) {
+            throw new IOException("Corrupt record at offset " + offset + " of " + segment.getPath()
+                    + ", which is neither the end of the log nor an interrupted compaction; dropping the rest of"
+                    + " the segment could lose books or bring deleted ones back");
+        }
+        if (offset < size) {
+            logger.warning("Dropping " + (size - offset) + " bytes of torn or corrupt records at offset " + offset
+                    + " of " + segment.getPath());
+            segment.truncate(offset);
+        }
+        return records;
+    }
+
+    /**
+     * Reads a complete record and verifies its checksum.
+     *
+     * @return the record, positioned at its start.
+     */
+    private static ByteBuffer read(Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.size);
+        location.segment.read(location.offset, record);
+        record.flip();
+        int bodyLength = location.size - HEADER_BYTES;
+        if (record.getInt(0) != bodyLength || record.getInt(4) != checksum(record.array(), HEADER_BYTES, bodyLength)) {
+            throw new IOException("Corrupt record at " + location);
+        }
+        return record;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private void requireOpen() {
+        if (closed) {
+            throw new IllegalStateException("The book log in " + directory + " is closed.");
+        }
+    }
+
+    /**
+     * Syncs the directory, so created and deleted segment files survive a crash. Not supported on every platform.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.fine("Cannot sync directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static FileChannel lockDirectory(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Locked by this process
+        }
+        channel.close();
+        throw new IllegalStateException("The book log in " + directory + " is already in use.");
+    }
+
+    private static void deleteQuietly(LogSegment segment) {
+        if (segment != null) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot delete " + segment.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * The position of a book's latest record.
+     */
+    private static final class Location {
+
+        private final LogSegment segment;
+        private final long offset;
+        private final int size;
+
+        private Location(LogSegment segment, long offset, int size) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return "offset " + offset + " of " + segment.getPath();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One file of a {@link BookLog}, holding records one after the other.
+ * <p>
+ * Segments are named {@code segment-<sequence>-<generation>.log} and replayed in sequence and generation order.
+ * New segments get the next sequence number and generation 0; a compaction writes the live records of the segments
+ * up to sequence {@code n} into segment {@code n} of the next generation, which replays after them and before any
+ * newer segment.
+ * </p>
+ * <p>
+ * Records are appended by one thread at a time, while reads use positional reads and may run concurrently.
+ * A {@link FileChannel} is closed when a thread using it is interrupted; the segment then reopens its file, so one
+ * interrupted reader does not break the segment for everybody else.
+ * </p>
+ */
+public class LogSegment {
+
+    /**
+     * Orders segments the way they are replayed.
+     */
+    public static final Comparator<LogSegment> REPLAY_ORDER =
+            Comparator.comparingLong(LogSegment::getSequence).thenComparingInt(LogSegment::getGeneration);
+
+    private static final Pattern FILE_NAME = Pattern.compile("segment-(\\d{20})-(\\d+)\\.log");
+
+    private final Path path;
+    private final long sequence;
+    private final int generation;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private volatile FileChannel channel;
+    private volatile long size;
+    private volatile boolean closed;
+
+    private LogSegment(Path path, long sequence, int generation, FileChannel channel) throws IOException {
+        this.path = path;
+        this.sequence = sequence;
+        this.generation = generation;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Creates a new, empty segment file.
+     *
+     * @param directory  the log directory.
+     * @param sequence   the sequence number.
+     * @param generation the compaction generation, 0 for segments written by the log itself.
+     * @return the new {@code LogSegment}.
+     * @throws IOException if the file exists or cannot be created.
+     */
+    public static LogSegment create(Path directory, long sequence, int generation) throws IOException {
+        Path path = directory.resolve(String.format("segment-%020d-%d.log", sequence, generation));
+        return new LogSegment(path, sequence, generation, FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param path the segment file.
+     * @return the {@code LogSegment}.
+     * @throws IOException              if the file cannot be opened.
+     * @throws IllegalArgumentException if the file name is not a segment name.
+     */
+    public static LogSegment open(Path path) throws IOException {
+        Matcher name = FILE_NAME.matcher(path.getFileName().toString());
+        if (!name.matches()) {
+            throw new IllegalArgumentException("Not a log segment: " + path);
+        }
+        return new LogSegment(path, Long.parseLong(name.group(1)), Integer.parseInt(name.group(2)),
+                FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Checks whether a file is named like a segment.
+     *
+     * @param path the file.
+     * @return {@code true} for segment files.
+     */
+    public static boolean isSegmentFile(Path path) {
+        return FILE_NAME.matcher(path.getFileName().toString()).matches();
+    }
+
+    /**
+     * Appends a record at the end of the segment. Must not be called concurrently.
+     * If the write fails, the partly written record is cut off again.
+     *
+     * @param record the framed record, from its position to its limit.
+     * @return the offset the record was written at.
+     * @throws IOException if the record cannot be written.
+     */
+    public long append(ByteBuffer record) throws IOException {
+        long offset = size;
+        FileChannel current = channel;
+        try {
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += current.write(record, position);
+            }
+        } catch (IOException e) {
+            if (e instanceof ClosedChannelException) {
+                current = reopen(current);
+            }
+            current.truncate(offset);
+            throw e;
+        }
+        size = offset + record.limit();
+        return offset;
+    }
+
+    /**
+     * Reads bytes from the segment until the buffer is full.
+     *
+     * @param offset the offset to read from.
+     * @param target the buffer to fill from its position.
+     * @throws IOException if the bytes cannot be read, the segment ends first, or the segment was closed.
+     */
+    public void read(long offset, ByteBuffer target) throws IOException {
+        int start = target.position();
+        FileChannel current = channel;
+        while (true) {
+            try {
+                long position = offset;
+                while (target.hasRemaining()) {
+                    int read = current.read(target, position);
+                    if (read < 0) {
+                        throw new EOFException("Segment " + path + " ends before offset " + (offset + target.limit() - start));
+                    }
+                    position += read;
+                }
+                return;
+            } catch (ClosedByInterruptException e) {
+                reopen(current);
+                throw e;
+            } catch (ClosedChannelException e) {
+                current = reopen(current); // Closed by another thread's interrupt
+                target.position(start);
+            }
+        }
+    }
+
+    /**
+     * Writes everything appended so far to the storage device.
+     *
+     * @throws IOException if the data cannot be synced.
+     */
+    public void force() throws IOException {
+        FileChannel current = channel;
+        while (true) {
+            try {
+                current.force(false);
+                return;
+            } catch (ClosedByInterruptException e) {
+                reopen(current);
+                throw e;
+            } catch (ClosedChannelException e) {
+                current = reopen(current);
+            }
+        }
+    }
+
+    /**
+     * Cuts the segment off after a given number of bytes, e.g. to drop a torn record.
+     *
+     * @param newSize the new size in bytes.
+     * @throws IOException if the file cannot be truncated.
+     */
+    public void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+    }
+
+    /**
+     * Closes the segment file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the segment file. Readers still holding the segment fail with a
+     * {@link ClosedChannelException}.
+     *
+     * @throws IOException if the file cannot be deleted.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Reopens the file after a channel was closed by an interrupt, unless the segment itself was closed.
+     */
+    private synchronized FileChannel reopen(FileChannel failed) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (channel == failed) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    /**
+     * Checks whether the segment was closed or deleted.
+     *
+     * @return {@code true} once {@link #close()} or {@link #delete()} was called.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Gets the segment file.
+     *
+     * @return the path of the file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the sequence number.
+     *
+     * @return the sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the compaction generation.
+     *
+     * @return the generation, 0 for segments written by the log itself.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return the size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes taken by records that are still the current version of a book.
+     *
+     * @return the live bytes.
+     */
+    public long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Adjusts the live bytes when a record becomes current or is superseded.
+     *
+     * @param delta the change in bytes.
+     */
+    public void addLiveBytes(long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Returns a string representation of the {@code LogSegment}.
+     *
+     * @return the file name with its size and live bytes.
+     */
+    @Override
+    public String toString() {
+        return path.getFileName() + "{size=" + size + ", live=" + liveBytes.get() + '}';
+    }
+}
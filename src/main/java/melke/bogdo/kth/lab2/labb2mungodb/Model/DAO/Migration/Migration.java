@@ -0,0 +1,45 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration;
+
+import org.bson.conversions.Bson;
+
+import java.util.List;
+
+/**
+ * A versioned change to the shape of the documents in one collection.
+ * <p>
+ * A migration is an update pipeline run against each document still below its version, so the whole change to a
+ * document happens atomically on the server and cannot overwrite a concurrent write by the application.
+ * The pipeline must be idempotent: an interrupted run applies it again to documents it may already have changed.
+ * </p>
+ */
+public interface Migration {
+
+    /**
+     * Gets the name of the collection the migration applies to.
+     *
+     * @return the collection name, e.g. {@code books}.
+     */
+    String getCollectionName();
+
+    /**
+     * Gets the schema version documents have once this migration is applied.
+     * Versions of the migrations of one collection must be unique.
+     *
+     * @return the version, at least 1.
+     */
+    int getVersion();
+
+    /**
+     * Gets a short description for logs and the checkpoint.
+     *
+     * @return the description.
+     */
+    String getDescription();
+
+    /**
+     * Gets the update pipeline that migrates a document from the previous version.
+     *
+     * @return the pipeline stages.
+     */
+    List<Bson> getPipeline();
+}
@@ -0,0 +1,225 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseSettings;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.or;
+
+/**
+ * Applies {@link Migration}s to their collections in batches while the application keeps running.
+ * <p>
+ * Each collection is migrated in one pass in {@code _id} order. For every document below the newest version, the
+ * pipelines of all migrations above the document's {@code schema_version} are combined with a final stage setting
+ * the new version, and each batch is written with one unordered {@code bulkWrite}. The updates only match documents
+ * still at the version that was read, so documents the application rewrites in the meantime are not migrated twice.
+ * </p>
+ * <p>
+ * Progress is checkpointed in the {@value #CHECKPOINT_COLLECTION} collection after every batch, as the last migrated
+ * {@code _id} per collection. A run that is interrupted resumes after that ID, and a later run with the same
+ * migrations only visits documents inserted since. Adding a migration starts a new pass over the whole collection.
+ * </p>
+ * <p>
+ * To protect the latency of the application, the runner writes at most a configured number of documents per second,
+ * and after a batch that took longer than a configured time it pauses for as long as the batch took.
+ * </p>
+ */
+public class MigrationRunner {
+
+    private static final Logger logger = Logger.getLogger(MigrationRunner.class.getName());
+
+    public static final String CHECKPOINT_COLLECTION = "migrations";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_DOCUMENTS_PER_SECOND = 2000;
+    public static final int DEFAULT_MAX_BATCH_MILLIS = 200;
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> checkpoints;
+    private final int batchSize;
+    private final int documentsPerSecond;
+    private final long maxBatchMillis;
+
+    /**
+     * Constructs a new {@code MigrationRunner}.
+     *
+     * @param database           the database holding the collections and the checkpoints.
+     * @param batchSize          the number of documents per {@code bulkWrite}.
+     * @param documentsPerSecond the maximum number of documents migrated per second, or 0 for no limit.
+     * @param maxBatchMillis     the batch duration above which the runner pauses for as long as the batch took.
+     * @throws IllegalArgumentException if {@code database} is null, {@code batchSize} or {@code maxBatchMillis}
+     *                                  is not positive, or {@code documentsPerSecond} is negative.
+     */
+    public MigrationRunner(MongoDatabase database, int batchSize, int documentsPerSecond, long maxBatchMillis) {
+        if (database == null) {
+            throw new IllegalArgumentException("Database cannot be null.");
+        }
+        if (batchSize <= 0 || maxBatchMillis <= 0 || documentsPerSecond < 0) {
+            throw new IllegalArgumentException("Batch size and batch duration must be positive, "
+                    + "and the rate cannot be negative.");
+        }
+        this.database = database;
+        this.checkpoints = database.getCollection(CHECKPOINT_COLLECTION);
+        this.batchSize = batchSize;
+        this.documentsPerSecond = documentsPerSecond;
+        this.maxBatchMillis = maxBatchMillis;
+    }
+
+    /**
+     * Migrates every collection named by the given migrations to its newest version.
+     *
+     * @param migrations the migrations, in any order.
+     * @return the number of documents that were changed.
+     * @throws IllegalArgumentException if two migrations of one collection have the same version.
+     * @throws InterruptedException     if the thread is interrupted; the run resumes from the last checkpoint.
+     */
+    public long run(List<Migration> migrations) throws InterruptedException {
+        Map<String, List<Migration>> byCollection = new LinkedHashMap<>();
+        for (Migration migration : migrations) {
+            byCollection.computeIfAbsent(migration.getCollectionName(), name -> new ArrayList<>()).add(migration);
+        }
+
+        long migrated = 0;
+        for (Map.Entry<String, List<Migration>> collection : byCollection.entrySet()) {
+            List<Migration> ordered = collection.getValue();
+            ordered.sort(Comparator.comparingInt(Migration::getVersion));
+            for (int i = 1; i < ordered.size(); i++) {
+                if (ordered.get(i).getVersion() == ordered.get(i - 1).getVersion()) {
+                    throw new IllegalArgumentException("Duplicate version " + ordered.get(i).getVersion()
+                            + " for collection " + collection.getKey() + ".");
+                }
+            }
+            migrated += migrateCollection(collection.getKey(), ordered);
+        }
+        return migrated;
+    }
+
+    private long migrateCollection(String name, List<Migration> migrations) throws InterruptedException {
+        MongoCollection<Document> collection = database.getCollection(name);
+        int target = migrations.get(migrations.size() - 1).getVersion();
+
+        Object lastId = null;
+        Document checkpoint = checkpoints.find(eq("_id", name)).first();
+        if (checkpoint != null && Integer.valueOf(target).equals(checkpoint.getInteger("target_version"))) {
+            lastId = checkpoint.get("last_id");
+            logger.info("Resuming migration of " + name + " to version " + target
+                    + (lastId != null ? " after " + lastId : ""));
+        } else {
+            checkpoints.replaceOne(eq("_id", name), new Document("_id", name)
+                    .append("target_version", target)
+                    .append("migrated", 0L)
+                    .append("started_at", new Date()), new ReplaceOptions().upsert(true));
+            logger.info("Migrating " + name + " to version " + target);
+        }
+
+        Bson pending = or(eq(DocumentSchema.VERSION, null), lt(DocumentSchema.VERSION, target));
+        Map<Integer, List<Bson>> pipelines = new HashMap<>(); // document version -> combined pipeline
+        long migrated = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Migration of " + name + " interrupted after " + lastId);
+            }
+            long started = System.nanoTime();
+            List<Document> batch = collection.find(lastId != null ? and(gt("_id", lastId), pending) : pending)
+                    .projection(Projections.include("_id", DocumentSchema.VERSION))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            List<UpdateOneModel<Document>> models = new ArrayList<>(batch.size());
+            for (Document document : batch) {
+                Object version = document.get(DocumentSchema.VERSION);
+                int from = version instanceof Number ? ((Number) version).intValue() : 0;
+                List<Bson> pipeline = pipelines.computeIfAbsent(from, v -> combine(migrations, v, target));
+                models.add(new UpdateOneModel<>(and(eq("_id", document.get("_id")),
+                        eq(DocumentSchema.VERSION, version)), pipeline));
+            }
+            long modified = collection.bulkWrite(models, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            migrated += modified;
+            lastId = batch.get(batch.size() - 1).get("_id");
+            checkpoints.updateOne(eq("_id", name), Updates.combine(
+                    Updates.set("last_id", lastId),
+                    Updates.inc("migrated", modified),
+                    Updates.set("updated_at", new Date())));
+            throttle(batch.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+
+        checkpoints.updateOne(eq("_id", name), Updates.set("completed_at", new Date()));
+        logger.info("Migrated " + migrated + " documents in " + name + " to version " + target);
+        return migrated;
+    }
+
+    /**
+     * Combines the pipelines of all migrations above a version, followed by the stage setting the target version.
+     */
+    private static List<Bson> combine(List<Migration> migrations, int from, int target) {
+        List<Bson> pipeline = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.getVersion() > from) {
+                pipeline.addAll(migration.getPipeline());
+            }
+        }
+        pipeline.add(new Document("$set", new Document(DocumentSchema.VERSION, target)));
+        return pipeline;
+    }
+
+    /**
+     * Sleeps long enough to stay below the configured rate, or for as long as the batch took if it was slow.
+     */
+    private void throttle(int documents, long batchMillis) throws InterruptedException {
+        long pauseMillis = documentsPerSecond > 0 ? documents * 1000L / documentsPerSecond - batchMillis : 0;
+        if (batchMillis > maxBatchMillis) {
+            pauseMillis = Math.max(pauseMillis, batchMillis);
+        }
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    /**
+     * Runs all {@link SchemaMigrations} against the configured database, tuned with the settings
+     * {@code bookdb.migration.batchSize}, {@code bookdb.migration.documentsPerSecond} and
+     * {@code bookdb.migration.maxBatchMillis}.
+     *
+     * @param args unused.
+     * @throws InterruptedException if the migration is interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        try {
+            DatabaseSettings settings = DatabaseConnection.getSettings();
+            MigrationRunner runner = new MigrationRunner(DatabaseConnection.getDatabase(),
+                    settings.getInt("migration.batchSize", DEFAULT_BATCH_SIZE),
+                    settings.getInt("migration.documentsPerSecond", DEFAULT_DOCUMENTS_PER_SECOND),
+                    settings.getInt("migration.maxBatchMillis", DEFAULT_MAX_BATCH_MILLIS));
+            runner.run(SchemaMigrations.all());
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+}
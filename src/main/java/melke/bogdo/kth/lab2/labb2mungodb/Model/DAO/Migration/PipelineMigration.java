@@ -0,0 +1,64 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration;
+
+import org.bson.conversions.Bson;
+
+import java.util.List;
+
+/**
+ * A {@link Migration} defined by a fixed update pipeline.
+ */
+public class PipelineMigration implements Migration {
+
+    private final String collectionName;
+    private final int version;
+    private final String description;
+    private final List<Bson> pipeline;
+
+    /**
+     * Constructs a new {@code PipelineMigration}.
+     *
+     * @param collectionName the collection the migration applies to.
+     * @param version        the schema version documents have after the migration.
+     * @param description    a short description.
+     * @param pipeline       the update pipeline.
+     * @throws IllegalArgumentException if an argument is null or empty, or {@code version} is not positive.
+     */
+    public PipelineMigration(String collectionName, int version, String description, List<Bson> pipeline) {
+        if (collectionName == null || collectionName.isEmpty() || description == null
+                || pipeline == null || pipeline.isEmpty()) {
+            throw new IllegalArgumentException("Collection name, description and pipeline must be provided.");
+        }
+        if (version <= 0) {
+            throw new IllegalArgumentException("Version must be positive.");
+        }
+        this.collectionName = collectionName;
+        this.version = version;
+        this.description = description;
+        this.pipeline = List.copyOf(pipeline);
+    }
+
+    @Override
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public List<Bson> getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public String toString() {
+        return collectionName + " v" + version + " (" + description + ")";
+    }
+}
@@ -0,0 +1,67 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DocumentSchema;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.RatingAggregates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+
+/**
+ * The migrations bringing the {@code books} and {@code users} collections to the versions described by
+ * {@link DocumentSchema}.
+ */
+public final class SchemaMigrations {
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Gets all migrations, in version order per collection.
+     *
+     * @return the list of {@link Migration}s.
+     */
+    public static List<Migration> all() {
+        return List.of(
+                new PipelineMigration("books", 1, "Store rating aggregates",
+                        List.of(RatingAggregates.recomputeStage())),
+                new PipelineMigration("books", 2, "Store review dates as BSON dates",
+                        List.of(reviewDatesStage())),
+                new PipelineMigration("books", 3, "Add updated_at",
+                        List.of(updatedAtStage())),
+                new PipelineMigration("users", 1, "Add updated_at",
+                        List.of(updatedAtStage())));
+    }
+
+    /**
+     * Builds a {@code $set} stage converting every {@code yyyy-MM-dd} review date string to a date at midnight UTC.
+     * Dates that are already BSON dates, and strings that cannot be parsed, are left as they are.
+     */
+    private static Bson reviewDatesStage() {
+        Document converted = new Document("$dateFromString", new Document("dateString", "$$r.review_date")
+                .append("format", "%Y-%m-%d")
+                .append("timezone", "UTC")
+                .append("onError", "$$r.review_date"));
+        Document review = new Document("$cond", List.of(
+                new Document("$eq", List.of(new Document("$type", "$$r.review_date"), "string")),
+                new Document("$mergeObjects", List.of("$$r", new Document("review_date", converted))),
+                "$$r"));
+        Document reviews = new Document("$cond", List.of(
+                new Document("$isArray", "$reviews"),
+                new Document("$map", new Document("input", "$reviews").append("as", "r").append("in", review)),
+                "$reviews"));
+        return new Document("$set", new Document("reviews", reviews));
+    }
+
+    /**
+     * Builds a {@code $set} stage initializing {@code updated_at} from the creation time in the ObjectId,
+     * or the current time for other IDs. An existing value is kept.
+     */
+    private static Bson updatedAtStage() {
+        Document created = new Document("$convert", new Document("input", "$_id")
+                .append("to", "date")
+                .append("onError", "$$NOW"));
+        return new Document("$set", new Document(DocumentSchema.UPDATED_AT,
+                new Document("$ifNull", List.of("$" + DocumentSchema.UPDATED_AT, created))));
+    }
+}
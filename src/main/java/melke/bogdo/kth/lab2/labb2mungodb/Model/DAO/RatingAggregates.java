@@ -0,0 +1,108 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import com.mongodb.client.MongoCollection;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static com.mongodb.client.model.Filters.exists;
+
+/**
+ * Describes the rating aggregates stored on each book document and provides the one-off backfill
+ * that computes them for documents written before they existed.
+ * <p>
+ * Every book carries {@code rating_count}, {@code rating_sum} and a {@code rating_histogram}
+ * sub-document with one counter per star ({@code "1"} to {@code "5"}). They are maintained on every
+ * rating write, so the average rating can be read, sorted and filtered on without the ratings array.
+ * </p>
+ */
+public final class RatingAggregates {
+
+    private static final Logger logger = Logger.getLogger(RatingAggregates.class.getName());
+
+    public static final String COUNT = "rating_count";
+    public static final String SUM = "rating_sum";
+    public static final String HISTOGRAM = "rating_histogram";
+    public static final int MIN_RATING = 1;
+    public static final int MAX_RATING = 5;
+
+    private RatingAggregates() {
+    }
+
+    /**
+     * Computes the aggregate fields from the document's own ratings array, for documents built client-side.
+     *
+     * @param bookDoc the book document to extend; its {@code ratings} must hold values between 1 and 5.
+     * @return the same document, with aggregates matching its ratings appended.
+     */
+    public static Document appendComputed(Document bookDoc) {
+        int[] counts = new int[MAX_RATING + 1];
+        int count = 0;
+        long sum = 0;
+        List<Document> ratings = bookDoc.getList("ratings", Document.class);
+        if (ratings != null) {
+            for (Document rating : ratings) {
+                int value = rating.getInteger("rating");
+                counts[value]++;
+                count++;
+                sum += value;
+            }
+        }
+        Document histogram = new Document();
+        for (int star = MIN_RATING; star <= MAX_RATING; star++) {
+            histogram.append(String.valueOf(star), counts[star]);
+        }
+        return bookDoc.append(COUNT, count).append(SUM, sum).append(HISTOGRAM, histogram);
+    }
+
+    /**
+     * Builds an update pipeline stage that recomputes all aggregates from the document's ratings array.
+     *
+     * @return a {@code $set} stage as {@link Bson}.
+     */
+    public static Bson recomputeStage() {
+        Document ratings = new Document("$ifNull", List.of("$ratings", Collections.emptyList()));
+        Document histogram = new Document();
+        for (int star = MIN_RATING; star <= MAX_RATING; star++) {
+            histogram.append(String.valueOf(star), new Document("$size", new Document("$filter",
+                    new Document("input", ratings)
+                            .append("as", "r")
+                            .append("cond", new Document("$eq", List.of("$$r.rating", star))))));
+        }
+        return new Document("$set", new Document(COUNT, new Document("$size", ratings))
+                .append(SUM, new Document("$toLong", new Document("$sum", "$ratings.rating")))
+                .append(HISTOGRAM, histogram));
+    }
+
+    /**
+     * Computes the aggregates for every book document that does not have them yet.
+     * The update runs entirely on the server in a single {@code updateMany}; on large collections the batched
+     * {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Migration.MigrationRunner} should be used instead.
+     *
+     * @param booksCollection the books collection.
+     * @return the number of documents that were updated.
+     */
+    public static long backfill(MongoCollection<Document> booksCollection) {
+        long modified = booksCollection.updateMany(exists(COUNT, false),
+                Collections.singletonList(recomputeStage())).getModifiedCount();
+        logger.info("Rating aggregates backfilled for " + modified + " books.");
+        return modified;
+    }
+
+    /**
+     * Runs the backfill against the configured database.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) {
+        try {
+            backfill(DatabaseConnection.getDatabase().getCollection("books"));
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Page;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Stores book reviews outside the book documents, in the "review_buckets" collection, using the bucket pattern.
+ * <p>
+ * Each bucket document holds up to {@link #getBucketSize()} reviews of one book:
+ * {@code {book_id, count, reviews: [...]}}. New reviews are appended to a bucket of the book that still has room,
+ * and a new bucket is created when all are full. Reviews are read one bucket at a time, so neither book reads
+ * nor review pages ever load the full review history of a popular book.
+ * </p>
+ * <p>
+ * Each user has at most one review per book. This relies on the unique {@code review_buckets_book_id_user_id} index
+ * provisioned by {@link melke.bogdo.kth.lab2.labb2mungodb.Model.IndexBootstrap}: a review is only appended to a
+ * bucket without one by the same user, so two concurrent first reviews by a user either meet in the same bucket,
+ * where the second append no longer matches, or collide on the index in different buckets, and the loser retries
+ * as an update of the stored review.
+ * </p>
+ * <p>
+ * Bucketed storage is enabled with the setting {@code bookdb.reviews.storage=bucketed}; the bucket size
+ * is set with {@code bookdb.reviews.bucketSize} (default 50). Existing embedded reviews are moved with
+ * {@link #migrateEmbeddedReviews(MongoCollection)}, which can also be run through {@link #main(String[])}.
+ * </p>
+ */
+public class ReviewBucketStore {
+
+    private static final Logger logger = Logger.getLogger(ReviewBucketStore.class.getName());
+
+    public static final String COLLECTION_NAME = "review_buckets";
+    private static final String STORAGE_SETTING = "reviews.storage";
+    private static final String BUCKET_SIZE_SETTING = "reviews.bucketSize";
+    private static final int DEFAULT_BUCKET_SIZE = 50;
+    private static final int MAX_UPSERT_ATTEMPTS = 3;
+
+    private final MongoCollection<Document> bucketsCollection;
+    private final MongoCollection<Document> booksCollection;
+    private final int bucketSize;
+
+    /**
+     * Constructs a new {@code ReviewBucketStore} on the "review_buckets" collection of the given database.
+     *
+     * @param database the database holding the buckets and the books they belong to.
+     */
+    public ReviewBucketStore(MongoDatabase database) {
+        this.bucketsCollection = database.getCollection(COLLECTION_NAME);
+        this.booksCollection = database.getCollection("books");
+        this.bucketSize = getBucketSize();
+    }
+
+    /**
+     * Checks whether reviews are configured to be stored in buckets instead of embedded in books.
+     *
+     * @return {@code true} if bucketed review storage is enabled.
+     */
+    public static boolean isEnabled() {
+        return "bucketed".equalsIgnoreCase(DatabaseConnection.getSettings().getString(STORAGE_SETTING, "embedded"));
+    }
+
+    /**
+     * Gets the configured maximum number of reviews per bucket.
+     *
+     * @return the bucket size.
+     */
+    public static int getBucketSize() {
+        return DatabaseConnection.getSettings().getInt(BUCKET_SIZE_SETTING, DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * Adds or updates a user's review of a book.
+     * <p>
+     * If the user already has a review in one of the book's buckets, its text and date are replaced.
+     * Otherwise the review is appended to a bucket with room, creating a new bucket if necessary, as long as the
+     * book exists.
+     * </p>
+     *
+     * @param bookId the ID of the book.
+     * @param review the {@link Review} to store.
+     * @return {@code false} if the book does not exist and the review was not stored.
+     * @throws MongoWriteException if the review keeps colliding with concurrent reviews by the same user.
+     */
+    public boolean upsert(ObjectId bookId, Review review) {
+        for (int attempt = 1; ; attempt++) {
+            long matched = bucketsCollection.updateOne(
+                    Filters.and(eq("book_id", bookId), eq("reviews.user_id", review.getUserId())),
+                    Updates.combine(
+                            Updates.set("reviews.$.review_text", review.getReviewText()),
+                            Updates.set("reviews.$.review_date", DocumentSchema.toStoredDate(review.getReviewDate())))
+            ).getMatchedCount();
+            if (matched > 0) {
+                return true;
+            }
+            if (booksCollection.countDocuments(eq("_id", bookId), new CountOptions().limit(1)) == 0) {
+                return false;
+            }
+            try {
+                bucketsCollection.updateOne(appendFilter(bookId, review.getUserId()), appendUpdate(toDocument(review)),
+                        new UpdateOptions().upsert(true));
+                return true;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY || attempt == MAX_UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+                // A concurrent first review by the same user won; update it instead
+            }
+        }
+    }
+
+    /**
+     * Matches a bucket of the book with room and without a review by the user. With no such bucket, an upsert
+     * creates one holding just {@code book_id}, since the other conditions are not equalities.
+     */
+    private Bson appendFilter(ObjectId bookId, String userId) {
+        return Filters.and(eq("book_id", bookId), Filters.lt("count", bucketSize), Filters.ne("reviews.user_id", userId));
+    }
+
+    private static Bson appendUpdate(Document reviewDoc) {
+        return Updates.combine(Updates.push("reviews", reviewDoc), Updates.inc("count", 1));
+    }
+
+    /**
+     * Reads one bucket of a book's reviews, oldest bucket first.
+     *
+     * @param bookId            the ID of the book.
+     * @param continuationToken the token returned with the previous page, or {@code null} for the first page.
+     * @return a {@link Page} holding the reviews of one bucket.
+     * @throws IllegalArgumentException if the token is not a valid ObjectId.
+     */
+    public Page<Review> getReviewsPage(ObjectId bookId, String continuationToken) {
+        Document filter = new Document("book_id", bookId);
+        if (continuationToken != null) {
+            if (!ObjectId.isValid(continuationToken)) {
+                throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+            }
+            filter.append("_id", new Document("$gt", new ObjectId(continuationToken)));
+        }
+
+        List<Document> buckets = bucketsCollection.find(filter).sort(Sorts.ascending("_id")).limit(2).into(new ArrayList<>());
+        if (buckets.isEmpty()) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        List<Review> reviews = new ArrayList<>();
+        List<Document> reviewDocs = buckets.get(0).getList("reviews", Document.class);
+        if (reviewDocs != null) {
+            for (Document reviewDoc : reviewDocs) {
+                reviews.add(toReview(reviewDoc));
+            }
+        }
+        String nextToken = buckets.size() > 1 ? buckets.get(0).getObjectId("_id").toString() : null;
+        return new Page<>(reviews, nextToken);
+    }
+
+    /**
+     * Deletes all review buckets of a book.
+     *
+     * @param bookId the ID of the book.
+     */
+    public void deleteForBook(ObjectId bookId) {
+        bucketsCollection.deleteMany(eq("book_id", bookId));
+    }
+
+    /**
+     * Moves the embedded reviews of every book into buckets and empties the embedded arrays.
+     * <p>
+     * Books are migrated one at a time. A user who already has a bucketed review of the book, written after
+     * the switch to bucketed storage or by an earlier, interrupted run, keeps that review, and the embedded one
+     * is dropped. The embedded array is only emptied if it still holds the reviews that were moved; if a review
+     * was embedded meanwhile, the book is merged again. So the migration never loses or duplicates reviews and
+     * can simply be run again until it reports no remaining books.
+     * </p>
+     *
+     * @param booksCollection the books collection.
+     * @return the number of books whose reviews were moved.
+     */
+    public long migrateEmbeddedReviews(MongoCollection<Document> booksCollection) {
+        long migrated = 0;
+        for (Document book : booksCollection.find(Filters.exists("reviews.0")).projection(Projections.include("reviews"))) {
+            ObjectId bookId = book.getObjectId("_id");
+            List<Document> reviews = book.getList("reviews", Document.class);
+            while (reviews != null && !reviews.isEmpty()) {
+                moveToBuckets(bookId, reviews);
+                if (booksCollection.updateOne(Filters.and(eq("_id", bookId), eq("reviews", reviews)),
+                        Updates.set("reviews", new ArrayList<>())).getMatchedCount() > 0) {
+                    break;
+                }
+                Document current = booksCollection.find(eq("_id", bookId)).projection(Projections.include("reviews")).first();
+                reviews = current != null ? current.getList("reviews", Document.class) : null;
+            }
+            migrated++;
+        }
+        logger.info("Moved embedded reviews of " + migrated + " books into buckets.");
+        return migrated;
+    }
+
+    /**
+     * Appends the reviews of users without a bucketed review of the book, in order, with one ordered
+     * {@code bulkWrite}. Starts over when a user's review was bucketed concurrently.
+     */
+    private void moveToBuckets(ObjectId bookId, List<Document> reviews) {
+        while (true) {
+            Set<String> bucketed = bucketsCollection.distinct("reviews.user_id", eq("book_id", bookId), String.class)
+                    .into(new HashSet<>());
+            List<WriteModel<Document>> appends = new ArrayList<>();
+            for (Document review : reviews) {
+                String userId = review.getString("user_id");
+                if (userId != null && bucketed.add(userId)) {
+                    appends.add(new UpdateOneModel<>(appendFilter(bookId, userId), appendUpdate(review),
+                            new UpdateOptions().upsert(true)));
+                }
+            }
+            if (appends.isEmpty()) {
+                return;
+            }
+            try {
+                bucketsCollection.bulkWrite(appends, new BulkWriteOptions().ordered(true));
+                return;
+            } catch (MongoBulkWriteException e) {
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                        throw e;
+                    }
+                }
+                // A user reviewed the book in bucketed storage meanwhile; keep that review and move the rest
+            }
+        }
+    }
+
+    static Document toDocument(Review review) {
+        return new Document("user_id", review.getUserId())
+                .append("review_text", review.getReviewText())
+                .append("review_date", DocumentSchema.toStoredDate(review.getReviewDate()))
+                .append("username", review.getUsername());
+    }
+
+    static Review toReview(Document reviewDoc) {
+        return new Review(
+                reviewDoc.getString("user_id"),
+                reviewDoc.getString("review_text"),
+                DocumentSchema.fromStoredDate(reviewDoc.get("review_date")),
+                reviewDoc.getString("username")
+        );
+    }
+
+    /**
+     * Runs the migration from embedded reviews to buckets against the configured database.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) {
+        try {
+            MongoDatabase database = DatabaseConnection.getDatabase();
+            new ReviewBucketStore(database).migrateEmbeddedReviews(database.getCollection("books"));
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+}
@@ -2,12 +2,15 @@ package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.User;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Interface.UserDAO;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.DatabaseConnection;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 
+import java.util.logging.Logger;
+
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 
@@ -20,6 +23,8 @@ import static com.mongodb.client.model.Filters.eq;
  */
 public class UserDAOImpl implements UserDAO {
 
+    private static final Logger logger = Logger.getLogger(UserDAOImpl.class.getName());
+
     private final MongoCollection<Document> usersCollection;
 
     /**
@@ -62,12 +67,10 @@ public class UserDAOImpl implements UserDAO {
             throw new IllegalArgumentException("Username cannot be null or empty.");
         }
 
-        System.out.println("Fetching user with username: " + username);
-
         // Find the user document in the MongoDB collection
         Document userDoc = usersCollection.find(eq("username", username)).first();
         if (userDoc != null) {
-            System.out.println("User found: " + userDoc.toJson());
+            logger.fine("User found: " + username);
             // Convert the document to a User object
             return new User(
                     userDoc.getObjectId("_id").toString(),
@@ -75,7 +78,7 @@ public class UserDAOImpl implements UserDAO {
                     userDoc.getString("password_hash")
             );
         } else {
-            System.err.println("User not found for username: " + username);
+            logger.fine("User not found for username: " + username);
             throw new IllegalArgumentException("User not found: " + username);
         }
     }
@@ -102,4 +105,31 @@ public class UserDAOImpl implements UserDAO {
         )).first();
         return user != null;
     }
+
+    /**
+     * Authenticates a user with one query on the unique username index, reading only the ID and username.
+     *
+     * @param username     the username of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return the authenticated {@link User} without its password hash, or {@code null} if the credentials are invalid.
+     * @throws IllegalArgumentException if {@code username} or {@code passwordHash} is null or empty.
+     */
+    @Override
+    public User authenticate(String username, String passwordHash) {
+        if (username == null || username.trim().isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty.");
+        }
+        if (passwordHash == null || passwordHash.trim().isEmpty()) {
+            throw new IllegalArgumentException("Password hash cannot be null or empty.");
+        }
+
+        Document userDoc = usersCollection.find(and(
+                eq("username", username),
+                eq("password_hash", passwordHash)
+        )).projection(Projections.include("username")).first();
+        if (userDoc == null) {
+            return null;
+        }
+        return new User(userDoc.getObjectId("_id").toString(), userDoc.getString("username"), null);
+    }
 }
@@ -4,19 +4,29 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 
+import java.util.logging.Logger;
+
 /**
  * Provides a singleton-style connection to the MongoDB database.
  * This class handles the initialization and management of the MongoDB client and database.
+ * The client is configured from the {@link DatabaseSettings} profile, and connection pool usage
+ * is recorded in a shared {@link ConnectionPoolMetrics}.
  */
 public class DatabaseConnection {
 
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
-    private static final String DATABASE_NAME = "bookdatabase";
+    private static final Logger logger = Logger.getLogger(DatabaseConnection.class.getName());
+    private static final long SLOW_CHECKOUT_MILLIS = 100;
+    private static final DatabaseSettings settings;
+    private static final ConnectionPoolMetrics poolMetrics;
     private static MongoClient mongoClient;
 
-    // Static initializer to configure the MongoDB client
+    // Static initializer to configure the MongoDB client and provision the required indexes
     static {
-        mongoClient = MongoClients.create(CONNECTION_STRING);
+        settings = DatabaseSettings.load();
+        poolMetrics = new ConnectionPoolMetrics(SLOW_CHECKOUT_MILLIS);
+        mongoClient = MongoClients.create(settings.toMongoClientSettings(poolMetrics));
+        logger.info("Connecting with " + settings);
+        IndexBootstrap.startInBackground(getDatabase());
     }
 
     /**
@@ -25,7 +35,25 @@ public class DatabaseConnection {
      * @return the {@link MongoDatabase} object representing the database connection.
      */
     public static MongoDatabase getDatabase() {
-        return mongoClient.getDatabase(DATABASE_NAME);
+        return mongoClient.getDatabase(settings.getDatabaseName());
+    }
+
+    /**
+     * Retrieves the settings profile the client was created with.
+     *
+     * @return the {@link DatabaseSettings}.
+     */
+    public static DatabaseSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Retrieves the connection pool metrics of the client.
+     *
+     * @return the {@link ConnectionPoolMetrics}.
+     */
+    public static ConnectionPoolMetrics getPoolMetrics() {
+        return poolMetrics;
     }
 
     /**
@@ -34,6 +62,7 @@ public class DatabaseConnection {
      */
     public static void closeConnection() {
         if (mongoClient != null) {
+            logger.info("Closing connection: " + poolMetrics);
             mongoClient.close();
         }
     }
@@ -0,0 +1,379 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client settings profile used to connect to MongoDB.
+ * <p>
+ * Settings are read from the properties file named by the system property {@code bookdb.config}, if set,
+ * and can be overridden one by one with system properties of the same name. Supported keys:
+ * </p>
+ * <ul>
+ *     <li>{@code bookdb.connectionString} (default {@code mongodb://localhost:27017}) and {@code bookdb.database}
+ *     (default {@code bookdatabase})</li>
+ *     <li>{@code bookdb.pool.minSize}, {@code bookdb.pool.maxSize}, {@code bookdb.pool.maxIdleTimeMs}
+ *     and {@code bookdb.pool.maxWaitTimeMs} (how long a thread waits for a free connection)</li>
+ *     <li>{@code bookdb.connectTimeoutMs}, {@code bookdb.socketTimeoutMs} and {@code bookdb.serverSelectionTimeoutMs}</li>
+ *     <li>{@code bookdb.compressors}: a comma-separated list of {@code zlib}, {@code snappy} and {@code zstd};
+ *     snappy and zstd also need their compression library on the module path</li>
+ *     <li>{@code bookdb.readConcern} (e.g. {@code local}, {@code majority}), {@code bookdb.readPreference}
+ *     (e.g. {@code primary}, {@code secondaryPreferred}) and {@code bookdb.writeConcern}
+ *     (e.g. {@code acknowledged}, {@code majority}, {@code journaled})</li>
+ *     <li>{@code bookdb.batchSize}: the cursor batch size for reads that do not choose their own (default 1000)</li>
+ *     <li>{@code bookdb.dao}: {@code mongo} (default) to store data in MongoDB, or {@code memory} to keep it in
+ *     memory without connecting; an in-memory catalog and user list can be loaded at startup from the files named
+ *     by {@code bookdb.memory.catalog} (a catalog import file) and {@code bookdb.memory.users} (a properties file
+ *     mapping usernames to password hashes)</li>
+ *     <li>{@code bookdb.dao=log} keeps the books in an append-only log of files in {@code bookdb.log.directory}
+ *     (default {@code ~/.bookdb/<database>-books-log}) instead, with segments of {@code bookdb.log.segmentMb}
+ *     megabytes (default 64); writes wait until they are on disk unless {@code bookdb.log.sync} is {@code false}.
+ *     The catalog file is then only loaded into an empty log, and users are kept in memory</li>
+ *     <li>the {@code bookdb.cache.*}, {@code bookdb.coalesce.*}, {@code bookdb.async.*} and
+ *     {@code bookdb.changeStream.*} settings of the shared DAOs, described in
+ *     {@link melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.DAOFactory}</li>
+ * </ul>
+ * <p>
+ * Options that are not configured keep the value from the connection string or the driver default,
+ * so the profile only needs to list what differs.
+ * </p>
+ */
+public class DatabaseSettings {
+
+    public static final String CONFIG_FILE_PROPERTY = "bookdb.config";
+    private static final String PREFIX = "bookdb.";
+    private static final String DEFAULT_CONNECTION_STRING = "mongodb://localhost:27017";
+    private static final String DEFAULT_DATABASE_NAME = "bookdatabase";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_LOG_SEGMENT_MB = 64;
+
+    /**
+     * Where the DAOs keep their data.
+     */
+    public enum DaoType {
+        /**
+         * In MongoDB.
+         */
+        MONGO,
+        /**
+         * In memory, lost when the application exits.
+         */
+        MEMORY,
+        /**
+         * Books in a log of files on the local disk, users in memory.
+         */
+        LOG
+    }
+
+    private final Properties properties;
+
+    /**
+     * Constructs a new {@code DatabaseSettings} from already merged properties.
+     *
+     * @param properties the settings, keyed by their full {@code bookdb.*} names.
+     */
+    public DatabaseSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the settings from the file named by {@code bookdb.config}, if any, and applies
+     * {@code bookdb.*} system property overrides.
+     *
+     * @return the loaded {@code DatabaseSettings}.
+     * @throws IllegalStateException if the configured file cannot be read.
+     */
+    public static DatabaseSettings load() {
+        Properties properties = new Properties();
+        String file = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (file != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read database settings from " + file, e);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new DatabaseSettings(properties);
+    }
+
+    /**
+     * Gets the MongoDB connection string.
+     *
+     * @return the connection string.
+     */
+    public String getConnectionString() {
+        return properties.getProperty(PREFIX + "connectionString", DEFAULT_CONNECTION_STRING);
+    }
+
+    /**
+     * Gets the name of the application database.
+     *
+     * @return the database name.
+     */
+    public String getDatabaseName() {
+        return properties.getProperty(PREFIX + "database", DEFAULT_DATABASE_NAME);
+    }
+
+    /**
+     * Gets the cursor batch size used by reads that do not choose their own.
+     *
+     * @return the default batch size.
+     */
+    public int getDefaultBatchSize() {
+        Integer batchSize = getInt("batchSize");
+        return batchSize != null ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Gets where the DAOs keep their data.
+     *
+     * @return the {@link DaoType} named by {@code bookdb.dao}, {@link DaoType#MONGO} if it is not set.
+     * @throws IllegalArgumentException if {@code bookdb.dao} is not a known type.
+     */
+    public DaoType getDaoType() {
+        String dao = getString("dao");
+        if (dao == null) {
+            return DaoType.MONGO;
+        }
+        try {
+            return DaoType.valueOf(dao.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown DAO type: " + dao);
+        }
+    }
+
+    /**
+     * Gets the directory of the book log used with {@code bookdb.dao=log}.
+     *
+     * @return {@code bookdb.log.directory}, by default {@code ~/.bookdb/<database>-books-log}.
+     */
+    public Path getLogDirectory() {
+        String directory = getString("log.directory");
+        return directory != null ? Paths.get(directory)
+                : Paths.get(System.getProperty("user.home"), ".bookdb", getDatabaseName() + "-books-log");
+    }
+
+    /**
+     * Gets the size at which a book log segment is sealed and a new one started.
+     *
+     * @return {@code bookdb.log.segmentMb} (default 64) in bytes.
+     */
+    public long getLogSegmentBytes() {
+        Integer megabytes = getInt("log.segmentMb");
+        return (megabytes != null ? megabytes : DEFAULT_LOG_SEGMENT_MB) * 1024L * 1024L;
+    }
+
+    /**
+     * Checks whether writes to the book log wait until they are synced to the storage device.
+     *
+     * @return {@code bookdb.log.sync}, {@code true} unless set to {@code false}.
+     */
+    public boolean isLogSync() {
+        String sync = getString("log.sync");
+        return sync == null || Boolean.parseBoolean(sync);
+    }
+
+    /**
+     * Gets the catalog file loaded into the in-memory book DAO at startup, or into an empty book log.
+     *
+     * @return the file, or {@code null} if none is configured.
+     */
+    public Path getMemoryCatalogFile() {
+        String file = getString("memory.catalog");
+        return file != null ? Paths.get(file) : null;
+    }
+
+    /**
+     * Gets the users file loaded into the in-memory user DAO at startup, which also holds the users when the books
+     * are kept in a book log.
+     *
+     * @return the file, or {@code null} if none is configured.
+     */
+    public Path getMemoryUsersFile() {
+        String file = getString("memory.users");
+        return file != null ? Paths.get(file) : null;
+    }
+
+    /**
+     * Gets a text setting that has no getter of its own, such as {@code reviews.storage}.
+     *
+     * @param key          the key without the {@code bookdb.} prefix.
+     * @param defaultValue the value to use if the setting is not configured.
+     * @return the configured value, trimmed, or {@code defaultValue}.
+     */
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Gets a numeric setting that has no getter of its own, such as the DAO cache sizes.
+     *
+     * @param key          the key without the {@code bookdb.} prefix, e.g. {@code cache.books}.
+     * @param defaultValue the value to use if the setting is not configured.
+     * @return the configured value, or {@code defaultValue}.
+     * @throws IllegalArgumentException if the configured value is not a number.
+     */
+    public int getInt(String key, int defaultValue) {
+        Integer value = getInt(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Gets a switch that has no getter of its own, such as {@code changeStream.enabled}.
+     *
+     * @param key          the key without the {@code bookdb.} prefix.
+     * @param defaultValue the value to use if the setting is not configured.
+     * @return {@code true} if the setting is {@code true}, {@code defaultValue} if it is not configured.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * Builds the driver settings from the connection string and the configured options.
+     *
+     * @param poolListener a listener for connection pool events, or {@code null} for none.
+     * @return the {@link MongoClientSettings}.
+     * @throws IllegalArgumentException if a configured value is invalid.
+     */
+    public MongoClientSettings toMongoClientSettings(ConnectionPoolListener poolListener) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(getConnectionString()));
+
+        builder.applyToConnectionPoolSettings(pool -> {
+            Integer value;
+            if ((value = getInt("pool.minSize")) != null) {
+                pool.minSize(value);
+            }
+            if ((value = getInt("pool.maxSize")) != null) {
+                pool.maxSize(value);
+            }
+            if ((value = getInt("pool.maxIdleTimeMs")) != null) {
+                pool.maxConnectionIdleTime(value, TimeUnit.MILLISECONDS);
+            }
+            if ((value = getInt("pool.maxWaitTimeMs")) != null) {
+                pool.maxWaitTime(value, TimeUnit.MILLISECONDS);
+            }
+            if (poolListener != null) {
+                pool.addConnectionPoolListener(poolListener);
+            }
+        });
+        builder.applyToSocketSettings(socket -> {
+            Integer value;
+            if ((value = getInt("connectTimeoutMs")) != null) {
+                socket.connectTimeout(value, TimeUnit.MILLISECONDS);
+            }
+            if ((value = getInt("socketTimeoutMs")) != null) {
+                socket.readTimeout(value, TimeUnit.MILLISECONDS);
+            }
+        });
+        Integer serverSelectionTimeout = getInt("serverSelectionTimeoutMs");
+        if (serverSelectionTimeout != null) {
+            builder.applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(serverSelectionTimeout, TimeUnit.MILLISECONDS));
+        }
+
+        String compressors = getString("compressors");
+        if (compressors != null) {
+            builder.compressorList(parseCompressors(compressors));
+        }
+        String readConcern = getString("readConcern");
+        if (readConcern != null) {
+            builder.readConcern("default".equalsIgnoreCase(readConcern)
+                    ? ReadConcern.DEFAULT : new ReadConcern(ReadConcernLevel.fromString(readConcern)));
+        }
+        String readPreference = getString("readPreference");
+        if (readPreference != null) {
+            builder.readPreference(ReadPreference.valueOf(readPreference));
+        }
+        String writeConcern = getString("writeConcern");
+        if (writeConcern != null) {
+            WriteConcern concern = WriteConcern.valueOf(writeConcern);
+            if (concern == null) {
+                throw new IllegalArgumentException("Unknown write concern: " + writeConcern);
+            }
+            builder.writeConcern(concern);
+        }
+        return builder.build();
+    }
+
+    private static List<MongoCompressor> parseCompressors(String names) {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "zlib":
+                    compressors.add(MongoCompressor.createZlibCompressor());
+                    break;
+                case "snappy":
+                    compressors.add(MongoCompressor.createSnappyCompressor());
+                    break;
+                case "zstd":
+                    compressors.add(MongoCompressor.createZstdCompressor());
+                    break;
+                case "":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown compressor: " + name);
+            }
+        }
+        return compressors;
+    }
+
+    private String getString(String key) {
+        String value = properties.getProperty(PREFIX + key);
+        return value != null && !value.trim().isEmpty() ? value.trim() : null;
+    }
+
+    private Integer getInt(String key) {
+        String value = getString(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Setting " + PREFIX + key + " must be a number: " + value);
+        }
+    }
+
+    /**
+     * Returns a string representation of the {@code DatabaseSettings} object.
+     * The connection string is omitted, since it may contain credentials.
+     *
+     * @return a string containing the database name and the configured options.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("DatabaseSettings{database=").append(getDatabaseName());
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            if (!name.equals(PREFIX + "connectionString") && !name.equals(PREFIX + "database")) {
+                text.append(", ").append(name.substring(PREFIX.length())).append('=').append(properties.getProperty(name));
+            }
+        }
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,168 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Declares the indexes the application relies on and makes sure they exist.
+ * <p>
+ * On startup, {@link DatabaseConnection} calls {@link #startInBackground(MongoDatabase)}, which creates every
+ * missing index on a daemon thread (as a background build on the server) and then logs a warning for each
+ * query-critical index that is still absent, for example because existing data violates a unique constraint.
+ * </p>
+ */
+public final class IndexBootstrap {
+
+    private static final Logger logger = Logger.getLogger(IndexBootstrap.class.getName());
+
+    /**
+     * Name of the text index used by keyword searches.
+     */
+    public static final String BOOKS_TEXT_INDEX = "books_text";
+
+    private static final List<IndexSpec> REQUIRED_INDEXES = List.of(
+            new IndexSpec("users", "users_username_unique", Indexes.ascending("username"), true, true),
+            new IndexSpec("books", "books_isbn_unique", Indexes.ascending("isbn"), true, true),
+            new IndexSpec("books", "books_ratings_user_id", Indexes.ascending("ratings.user_id"), false, true),
+            new IndexSpec("books", "books_reviews_user_id", Indexes.ascending("reviews.user_id"), false, true),
+            new IndexSpec("books", "books_authors_name", Indexes.ascending("authors.name"), false, false),
+            new IndexSpec("books", BOOKS_TEXT_INDEX, Indexes.compoundIndex(
+                    Indexes.text("title"), Indexes.text("authors.name"), Indexes.text("genre.name")), false, true),
+            new IndexSpec("review_buckets", "review_buckets_book_id", Indexes.ascending("book_id", "_id"), false, true),
+            new IndexSpec("review_buckets", "review_buckets_book_id_user_id",
+                    Indexes.ascending("book_id", "reviews.user_id"), true, true)
+    );
+
+    private IndexBootstrap() {
+    }
+
+    /**
+     * Provisions and verifies the required indexes on a daemon thread, so startup is not delayed.
+     *
+     * @param database the database to provision.
+     */
+    public static void startInBackground(MongoDatabase database) {
+        Thread thread = new Thread(() -> {
+            try {
+                run(database);
+            } catch (MongoException e) {
+                logger.warning("Index provisioning failed: " + e.getMessage());
+            }
+        }, "index-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates every missing required index and reports the query-critical ones that could not be created.
+     *
+     * @param database the database to provision.
+     * @return the names of query-critical indexes that are still missing.
+     */
+    public static List<String> run(MongoDatabase database) {
+        for (IndexSpec spec : REQUIRED_INDEXES) {
+            MongoCollection<Document> collection = database.getCollection(spec.collection);
+            if (exists(collection, spec)) {
+                continue;
+            }
+            try {
+                collection.createIndex(spec.keys, new IndexOptions().name(spec.name).unique(spec.unique).background(true));
+                logger.info("Created index " + spec.collection + "." + spec.name);
+            } catch (MongoException e) {
+                logger.severe("Could not create index " + spec.collection + "." + spec.name + ": " + e.getMessage());
+            }
+        }
+        return verify(database);
+    }
+
+    /**
+     * Lists the query-critical indexes that do not exist, logging a warning for each.
+     *
+     * @param database the database to check.
+     * @return the names of the missing query-critical indexes.
+     */
+    public static List<String> verify(MongoDatabase database) {
+        List<String> missing = new ArrayList<>();
+        for (IndexSpec spec : REQUIRED_INDEXES) {
+            if (!spec.queryCritical) {
+                continue;
+            }
+            Document index = find(database.getCollection(spec.collection), spec);
+            if (index == null) {
+                missing.add(spec.collection + "." + spec.name);
+                logger.warning("Query-critical index missing: " + spec.collection + "." + spec.name);
+            } else if (!satisfies(index, spec)) {
+                missing.add(spec.collection + "." + spec.name);
+                logger.warning("Query-critical index missing: " + spec.collection + "." + spec.name
+                        + " (index " + index.getString("name") + " has the same keys but is not unique)");
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Checks whether an index with the spec's name or keys exists and, for a unique spec, is unique.
+     */
+    private static boolean exists(MongoCollection<Document> collection, IndexSpec spec) {
+        Document index = find(collection, spec);
+        return index != null && satisfies(index, spec);
+    }
+
+    private static boolean satisfies(Document index, IndexSpec spec) {
+        return !spec.unique || index.getBoolean("unique", false);
+    }
+
+    /**
+     * Finds the index with the spec's name or keys, preferring one that satisfies the spec. Text indexes are matched
+     * by name or by the presence of any text index, since the server stores their keys differently.
+     *
+     * @return the index description, or {@code null} if there is none.
+     */
+    private static Document find(MongoCollection<Document> collection, IndexSpec spec) {
+        BsonDocument keys = spec.keys.toBsonDocument(BsonDocument.class, collection.getCodecRegistry());
+        boolean text = keys.values().stream().anyMatch(value -> value.isString() && "text".equals(value.asString().getValue()));
+        Document match = null;
+        for (Document index : collection.listIndexes()) {
+            Document indexKeys = index.get("key", Document.class);
+            if (spec.name.equals(index.getString("name"))
+                    || (text && indexKeys != null && indexKeys.containsKey("_fts"))
+                    || (!text && indexKeys != null && indexKeys.toBsonDocument(BsonDocument.class, collection.getCodecRegistry()).equals(keys))) {
+                if (satisfies(index, spec)) {
+                    return index;
+                }
+                match = index;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Declaration of one required index.
+     */
+    private static final class IndexSpec {
+
+        private final String collection;
+        private final String name;
+        private final Bson keys;
+        private final boolean unique;
+        private final boolean queryCritical;
+
+        private IndexSpec(String collection, String name, Bson keys, boolean unique, boolean queryCritical) {
+            this.collection = collection;
+            this.name = name;
+            this.keys = keys;
+            this.unique = unique;
+            this.queryCritical = queryCritical;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import java.util.List;
+
+/**
+ * Represents one page of a keyset-paginated result.
+ * A page holds its items and an opaque continuation token that is passed back to fetch the next page.
+ *
+ * @param <T> the type of the items on the page
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String continuationToken; // Null when this is the last page
+
+    /**
+     * Constructs a new {@code Page} with the specified items and continuation token.
+     *
+     * @param items             the items on this page.
+     * @param continuationToken the token for the next page, or {@code null} if there are no more pages.
+     */
+    public Page(List<T> items, String continuationToken) {
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Gets the items on this page.
+     *
+     * @return a {@link List} of items.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the token used to request the page following this one.
+     *
+     * @return the continuation token, or {@code null} if this is the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Checks whether another page follows this one.
+     *
+     * @return {@code true} if there is a next page, {@code false} otherwise.
+     */
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    /**
+     * Returns a string representation of the {@code Page} object.
+     *
+     * @return a string containing the number of items and the continuation token.
+     */
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", continuationToken='" + continuationToken + '\'' +
+                '}';
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.BookController;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.TaskScheduler;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
 
@@ -85,13 +86,17 @@ public class AddBookView {
         Button submitButton = new Button("Submit");
         Button backButton = new Button("Back");
 
-        submitButton.setOnAction(e -> handleSubmit(titleField, isbnField, genreComboBox, selectedAuthors, stage));
+        submitButton.setOnAction(e -> handleSubmit(titleField, isbnField, genreComboBox, selectedAuthors, submitButton));
         backButton.setOnAction(e -> SceneManager.showUserMenu());
 
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(24, 24);
+        progressIndicator.visibleProperty().bind(TaskScheduler.getInstance().busyProperty());
+
         // Layout
         HBox authorControls = new HBox(10, authorComboBox, addAuthorButton);
         VBox layout = new VBox(10, new Label("Add Book"), titleField, isbnField, genreComboBox,
-                new Label("Authors"), authorControls, selectedAuthorsListView, submitButton, backButton);
+                new Label("Authors"), authorControls, selectedAuthorsListView, submitButton, backButton, progressIndicator);
         layout.setPadding(new Insets(20));
 
         return layout;
@@ -160,15 +165,16 @@ public class AddBookView {
 
     /**
      * Handles the submission of the book details to the system.
+     * The book is stored in the background; the submit button is disabled until it completes.
      *
      * @param titleField       the {@link TextField} for the book's title.
      * @param isbnField        the {@link TextField} for the book's ISBN.
      * @param genreComboBox    the {@link ComboBox} for selecting the book's genre.
      * @param selectedAuthors  the list of selected authors.
-     * @param stage            the current {@link Stage} of the application.
+     * @param submitButton     the {@link Button} that submitted the form.
      */
     private static void handleSubmit(TextField titleField, TextField isbnField, ComboBox<Genre> genreComboBox,
-                                     ObservableList<Author> selectedAuthors, Stage stage) {
+                                     ObservableList<Author> selectedAuthors, Button submitButton) {
         String title = titleField.getText();
         String isbn = isbnField.getText();
         Genre selectedGenre = genreComboBox.getSelectionModel().getSelectedItem();
@@ -179,13 +185,18 @@ public class AddBookView {
         }
 
         BookController bookController = new BookController();
-        try {
-            bookController.addBook(title, isbn, selectedGenre, new ArrayList<>(selectedAuthors));
+        List<Author> authors = new ArrayList<>(selectedAuthors);
+        submitButton.setDisable(true);
+        TaskScheduler.getInstance().submit(() -> {
+            bookController.addBook(title, isbn, selectedGenre, authors);
+            return null;
+        }, result -> {
             showAlert(Alert.AlertType.INFORMATION, "Book added successfully.");
             SceneManager.showUserMenu();
-        } catch (Exception ex) {
+        }, ex -> {
+            submitButton.setDisable(false);
             showAlert(Alert.AlertType.ERROR, "Failed to add book: " + ex.getMessage());
-        }
+        });
     }
 
     /**
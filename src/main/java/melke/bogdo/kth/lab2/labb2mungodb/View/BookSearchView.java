@@ -1,25 +1,57 @@
 package melke.bogdo.kth.lab2.labb2mungodb.View;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.BookController;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.TaskScheduler;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.SessionManager;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
 
 /**
  * Provides the graphical interface for searching and displaying books.
- * Users can search books by title, genre, author, or ISBN and view the results in a list.
+ * Users can search books by title, genre, author, ISBN, or keyword and view the results in a list.
+ * <p>
+ * In search-as-you-type mode a search starts once typing pauses for {@value #DEBOUNCE_MILLIS} ms. Each new search
+ * cancels the previous one, whose database cursor is then closed, and results are appended to the list batch by
+ * batch as they arrive. The status line reports how long after the last keystroke the first and the last results
+ * were shown.
+ * </p>
+ * <p>
+ * The list holds the {@link Book} objects themselves. A book is only formatted when a cell shows it, so large
+ * result sets cost no more to display than the visible rows. Sorting and filtering the results works on the books
+ * and does not run a new search. Books in the results that other clients modify or delete are updated in place.
+ * </p>
  */
 public class BookSearchView {
 
+    private static final Logger logger = Logger.getLogger(BookSearchView.class.getName());
+    private static final String SEARCH_TASK_KEY = "book-search";
+    private static final int DEBOUNCE_MILLIS = 300;
+    private static final int BATCH_SIZE = 50;
+    private static final long MAX_SEARCH_MILLIS = 2000;
+
     /**
      * Creates the "Book Search" view layout.
      * Allows users to search for books using various criteria and view the results.
@@ -35,56 +67,140 @@ public class BookSearchView {
         searchField.setPromptText("Enter search keyword");
 
         ComboBox<String> searchTypeCombo = new ComboBox<>();
-        searchTypeCombo.getItems().addAll("Title", "Genre", "Author", "ISBN");
+        searchTypeCombo.getItems().addAll("Title", "Genre", "Author", "ISBN", "Keyword");
         searchTypeCombo.setValue("Title");
 
+        CheckBox searchAsYouType = new CheckBox("Search as you type");
+        searchAsYouType.setSelected(true);
+
         Button searchButton = new Button("Search");
         Button backButton = new Button("Back");
 
-        HBox searchBar = new HBox(10, searchTypeCombo, searchField, searchButton, backButton);
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(24, 24);
+        progressIndicator.visibleProperty().bind(TaskScheduler.getInstance().busyProperty());
+
+        HBox searchBar = new HBox(10, searchTypeCombo, searchField, searchAsYouType, searchButton, backButton, progressIndicator);
         searchBar.setPadding(new Insets(10));
 
-        // Results list
-        ListView<String> bookListView = new ListView<>();
-        ObservableList<String> results = FXCollections.observableArrayList();
-        bookListView.setItems(results);
+        // Result filter and sort order
+        TextField filterField = new TextField();
+        filterField.setPromptText("Filter by title or author");
+
+        ComboBox<String> sortCombo = new ComboBox<>();
+        sortCombo.getItems().addAll("Relevance", "Title", "Rating");
+        sortCombo.setValue("Relevance");
+
+        HBox resultBar = new HBox(10, new Label("Sort by:"), sortCombo, filterField);
+        resultBar.setPadding(new Insets(0, 10, 10, 10));
+
+        // Results list, formatting each book only when a cell displays it
+        ObservableList<Book> results = FXCollections.observableArrayList();
+        FilteredList<Book> filteredResults = new FilteredList<>(results);
+        SortedList<Book> sortedResults = new SortedList<>(filteredResults);
+        ListView<Book> bookListView = new ListView<>(sortedResults);
+        bookListView.setCellFactory(listView -> new BookCell());
+
+        filterField.textProperty().addListener((observable, oldText, newText) ->
+                filteredResults.setPredicate(createFilter(newText)));
+        sortCombo.valueProperty().addListener((observable, oldOrder, newOrder) ->
+                sortedResults.setComparator(createComparator(newOrder)));
+
+        Label statusLabel = new Label();
+        statusLabel.setPadding(new Insets(5, 10, 5, 10));
+
+        SearchState state = new SearchState(bookController, results, statusLabel);
+        SceneManager.onLeave(bookController.subscribeToChanges(state::applyChange));
 
-        // Search action
+        // Search as you type: restart the debounce timer on every keystroke
+        PauseTransition debounce = new PauseTransition(Duration.millis(DEBOUNCE_MILLIS));
+        debounce.setOnFinished(e -> state.search(searchTypeCombo.getValue(), searchField.getText().trim()));
+        searchField.textProperty().addListener((observable, oldText, newText) -> {
+            if (searchAsYouType.isSelected()) {
+                state.lastInputNanos = System.nanoTime();
+                debounce.playFromStart();
+            }
+        });
+        searchTypeCombo.valueProperty().addListener((observable, oldType, newType) -> {
+            if (searchAsYouType.isSelected() && !searchField.getText().trim().isEmpty()) {
+                state.lastInputNanos = System.nanoTime();
+                debounce.playFromStart();
+            }
+        });
+
+        // Search action; runs in the background and replaces any search still in progress
         searchButton.setOnAction(e -> {
-            String searchType = searchTypeCombo.getValue();
             String keyword = searchField.getText().trim();
-
             if (keyword.isEmpty()) {
                 showAlert(Alert.AlertType.ERROR, "Search keyword cannot be empty.");
                 return;
             }
+            debounce.stop();
+            state.lastInputNanos = System.nanoTime();
+            state.search(searchTypeCombo.getValue(), keyword);
+        });
 
-            List<Book> books = bookController.searchBooks(searchType, keyword); // Pass both arguments
-            results.clear();
-
-            if (books.isEmpty()) {
-                showAlert(Alert.AlertType.INFORMATION, "No books found for the given search criteria.");
+        // Back action; a search still in progress is no longer needed
+        backButton.setOnAction(e -> {
+            debounce.stop();
+            TaskScheduler.getInstance().cancel(SEARCH_TASK_KEY);
+            if (SessionManager.getInstance().isLoggedIn()) {
+                SceneManager.showUserMenu();
             } else {
-                for (Book book : books) {
-                    results.add(formatBookDetails(book));
-                }
+                SceneManager.showMainMenu();
             }
         });
 
-        // Back action
-        if (SessionManager.getInstance().isLoggedIn()) {
-            backButton.setOnAction(e -> SceneManager.showUserMenu());
-        } else {
-            backButton.setOnAction(e -> SceneManager.showMainMenu());
-        }
-
         // Layout
         BorderPane layout = new BorderPane();
-        layout.setTop(searchBar);
+        layout.setTop(new VBox(searchBar, resultBar));
         layout.setCenter(bookListView);
+        layout.setBottom(statusLabel);
         return layout;
     }
 
+    /**
+     * Creates the filter for the displayed results.
+     *
+     * @param text the filter text; books whose title or an author name contains it are shown.
+     * @return the predicate, or {@code null} to show all results.
+     */
+    private static Predicate<Book> createFilter(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String filter = text.trim().toLowerCase(Locale.ROOT);
+        return book -> {
+            if (book.getTitle() != null && book.getTitle().toLowerCase(Locale.ROOT).contains(filter)) {
+                return true;
+            }
+            if (book.getAuthors() != null) {
+                for (Author author : book.getAuthors()) {
+                    if (author.getName() != null && author.getName().toLowerCase(Locale.ROOT).contains(filter)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Creates the comparator for a sort order.
+     *
+     * @param order "Title", "Rating", or "Relevance" for the order in which the search returned the books.
+     * @return the comparator, or {@code null} to keep the search order.
+     */
+    private static Comparator<Book> createComparator(String order) {
+        if ("Title".equals(order)) {
+            return Comparator.comparing(Book::getTitle, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+        }
+        if ("Rating".equals(order)) {
+            return Comparator.comparingDouble(Book::getAverageRating).reversed();
+        }
+        return null;
+    }
+
     /**
      * Formats the details of a {@link Book} object into a string representation for display.
      *
@@ -120,4 +236,115 @@ public class BookSearchView {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    /**
+     * A list cell that formats its book when it is displayed. The list view only creates cells
+     * for the visible rows and reuses them while scrolling.
+     */
+    private static final class BookCell extends ListCell<Book> {
+
+        @Override
+        protected void updateItem(Book book, boolean empty) {
+            super.updateItem(book, empty);
+            setText(empty || book == null ? null : formatBookDetails(book));
+        }
+    }
+
+    /**
+     * The state of the incremental search of one view. Only accessed on the JavaFX Application Thread,
+     * except where noted.
+     */
+    private static final class SearchState {
+
+        private final BookController bookController;
+        private final ObservableList<Book> results;
+        private final Label statusLabel;
+        private long lastInputNanos;
+        private String lastType;
+        private String lastKeyword;
+        private int generation;
+        private int shownGeneration;
+
+        private SearchState(BookController bookController, ObservableList<Book> results, Label statusLabel) {
+            this.bookController = bookController;
+            this.results = results;
+            this.statusLabel = statusLabel;
+        }
+
+        /**
+         * Starts a streaming search that replaces the current one. The previous results stay visible until the
+         * first batch replaces them in one update; later batches are appended in one update each. Batches of a
+         * search that has been superseded are dropped.
+         */
+        private void search(String type, String keyword) {
+            int searchGeneration = ++generation;
+            lastType = type;
+            lastKeyword = keyword;
+            if (keyword.isEmpty()) {
+                TaskScheduler.getInstance().cancel(SEARCH_TASK_KEY);
+                results.clear();
+                statusLabel.setText("");
+                return;
+            }
+
+            long inputNanos = lastInputNanos;
+            AtomicLong firstBatchNanos = new AtomicLong();
+            statusLabel.setText("Searching...");
+            TaskScheduler.getInstance().submitLatest(SEARCH_TASK_KEY,
+                    cancelled -> bookController.streamSearchBooks(type, keyword, BATCH_SIZE, MAX_SEARCH_MILLIS, cancelled, batch -> {
+                        List<Book> books = new ArrayList<>(batch);
+                        firstBatchNanos.compareAndSet(0, System.nanoTime());
+                        Platform.runLater(() -> showBatch(searchGeneration, books));
+                    }),
+                    count -> {
+                        if (count == 0) {
+                            results.clear();
+                        }
+                        long totalMillis = (System.nanoTime() - inputNanos) / 1_000_000;
+                        long firstMillis = firstBatchNanos.get() == 0 ? totalMillis : (firstBatchNanos.get() - inputNanos) / 1_000_000;
+                        statusLabel.setText(count == 0
+                                ? "No books found (" + totalMillis + " ms)"
+                                : count + " books; first results after " + firstMillis + " ms, all after " + totalMillis + " ms");
+                        logger.fine("Search " + type + " '" + keyword + "': " + count + " results, first after "
+                                + firstMillis + " ms, all after " + totalMillis + " ms");
+                    },
+                    ex -> statusLabel.setText("Search failed: " + ex.getMessage()));
+        }
+
+        /**
+         * Updates or removes a changed book in the results. New books are only shown by the next search,
+         * since whether they match is decided by the query; after a reload the last search is repeated.
+         */
+        private void applyChange(BookChangeEvent event) {
+            if (event.getType() == BookChangeEvent.Type.RELOAD) {
+                if (lastKeyword != null && !lastKeyword.isEmpty()) {
+                    lastInputNanos = System.nanoTime();
+                    search(lastType, lastKeyword);
+                }
+                return;
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (event.getBookId().equals(results.get(i).getId())) {
+                    if (event.getType() == BookChangeEvent.Type.DELETE) {
+                        results.remove(i);
+                    } else if (event.getBook() != null) {
+                        results.set(i, event.getBook());
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void showBatch(int searchGeneration, List<Book> books) {
+            if (searchGeneration != generation) {
+                return;
+            }
+            if (shownGeneration != searchGeneration) {
+                shownGeneration = searchGeneration;
+                results.setAll(books);
+            } else {
+                results.addAll(books);
+            }
+        }
+    }
 }
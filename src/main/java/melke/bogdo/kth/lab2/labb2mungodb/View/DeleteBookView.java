@@ -8,9 +8,10 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.BookController;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.TaskScheduler;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
-
-import java.util.List;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookSummary;
 
 /**
  * Provides the graphical interface for deleting a book from the system.
@@ -30,33 +31,43 @@ public class DeleteBookView {
 
         // Label and ComboBox for books
         Label bookLabel = new Label("Select a book to delete:");
-        ComboBox<Book> bookComboBox = new ComboBox<>();
+        ComboBox<BookSummary> bookComboBox = new ComboBox<>();
         populateBookList(bookComboBox, bookController);
+        SceneManager.onLeave(bookController.subscribeToChanges(event -> applyChange(bookComboBox, bookController, event)));
 
         // Buttons
         Button deleteButton = new Button("Delete");
         Button backButton = new Button("Back");
 
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(24, 24);
+        progressIndicator.visibleProperty().bind(TaskScheduler.getInstance().busyProperty());
+
         deleteButton.setOnAction(e -> {
-            Book selectedBook = bookComboBox.getValue();
+            BookSummary selectedBook = bookComboBox.getValue();
             if (selectedBook == null) {
                 showAlert(Alert.AlertType.ERROR, "Please select a book to delete.");
                 return;
             }
 
-            try {
+            deleteButton.setDisable(true);
+            TaskScheduler.getInstance().submit(() -> {
                 bookController.deleteBook(selectedBook.getId());
+                return null;
+            }, result -> {
+                deleteButton.setDisable(false);
                 showAlert(Alert.AlertType.INFORMATION, "Book deleted successfully!");
                 populateBookList(bookComboBox, bookController); // Refresh the list
-            } catch (Exception ex) {
+            }, ex -> {
+                deleteButton.setDisable(false);
                 showAlert(Alert.AlertType.ERROR, "Failed to delete book: " + ex.getMessage());
-            }
+            });
         });
 
         backButton.setOnAction(e -> SceneManager.showUserMenu());
 
         // Layout
-        VBox layout = new VBox(10, bookLabel, bookComboBox, deleteButton, backButton);
+        VBox layout = new VBox(10, bookLabel, bookComboBox, deleteButton, backButton, progressIndicator);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
 
@@ -64,40 +75,68 @@ public class DeleteBookView {
     }
 
     /**
-     * Populates the {@link ComboBox} with a list of available books.
+     * Populates the {@link ComboBox} with a list of available books, loaded in the background.
      * Filters out null or invalid book entries and sets a {@link StringConverter} to display book titles.
      *
      * @param comboBox       the {@link ComboBox} to populate with books.
      * @param bookController the {@link BookController} used to retrieve books.
      */
-    private static void populateBookList(ComboBox<Book> comboBox, BookController bookController) {
-        try {
-            List<Book> books = bookController.getAllBooks();
+    private static void populateBookList(ComboBox<BookSummary> comboBox, BookController bookController) {
+        // Set StringConverter to display book titles
+        comboBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(BookSummary book) {
+                return book != null ? book.getTitle() : "Unknown Book";
+            }
 
+            @Override
+            public BookSummary fromString(String string) {
+                return comboBox.getItems().stream()
+                        .filter(book -> book.getTitle().equals(string))
+                        .findFirst()
+                        .orElse(null);
+            }
+        });
+
+        TaskScheduler.getInstance().submitLatest("delete-book-list", bookController::getBookSummaries, books -> {
             // Remove null or invalid entries
             books.removeIf(book -> book == null || book.getTitle() == null);
 
-            ObservableList<Book> bookOptions = FXCollections.observableArrayList(books);
+            ObservableList<BookSummary> bookOptions = FXCollections.observableArrayList(books);
             comboBox.setItems(bookOptions);
+        }, e -> showAlert(Alert.AlertType.ERROR, "Failed to load books: " + e.getMessage()));
+    }
 
-            // Set StringConverter to display book titles
-            comboBox.setConverter(new StringConverter<>() {
-                @Override
-                public String toString(Book book) {
-                    return book != null ? book.getTitle() : "Unknown Book";
-                }
-
-                @Override
-                public Book fromString(String string) {
-                    return comboBox.getItems().stream()
-                            .filter(book -> book.getTitle().equals(string))
-                            .findFirst()
-                            .orElse(null);
-                }
-            });
-
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Failed to load books: " + e.getMessage());
+    /**
+     * Applies a change made by any client to the book list, without reloading the other books.
+     *
+     * @param comboBox       the {@link ComboBox} listing the books.
+     * @param bookController the {@link BookController} used to reload the books when required.
+     * @param event          the {@link BookChangeEvent} to apply.
+     */
+    private static void applyChange(ComboBox<BookSummary> comboBox, BookController bookController, BookChangeEvent event) {
+        if (event.getType() == BookChangeEvent.Type.RELOAD) {
+            populateBookList(comboBox, bookController);
+            return;
+        }
+        ObservableList<BookSummary> items = comboBox.getItems();
+        int index = 0;
+        while (index < items.size() && !items.get(index).getId().equals(event.getBookId())) {
+            index++;
+        }
+        Book book = event.getBook();
+        if (event.getType() == BookChangeEvent.Type.DELETE) {
+            if (index < items.size()) {
+                items.remove(index);
+            }
+        } else if (book != null && book.getTitle() != null) {
+            BookSummary summary = new BookSummary(book.getId(), book.getTitle(), book.getIsbn(),
+                    book.getGenre() != null ? book.getGenre().getName() : null, book.getAverageRating());
+            if (index == items.size()) {
+                items.add(summary);
+            } else if (items.get(index) != comboBox.getValue()) {
+                items.set(index, summary); // Keep the selected entry, so the selection is not lost
+            }
         }
     }
 
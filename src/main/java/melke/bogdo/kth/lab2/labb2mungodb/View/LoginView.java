@@ -3,10 +3,12 @@ package melke.bogdo.kth.lab2.labb2mungodb.View;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.HashUtil;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.TaskScheduler;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.UserController;
 import melke.bogdo.kth.lab2.labb2mungodb.View.SceneManager;
 
@@ -37,21 +39,41 @@ public class LoginView {
             String password = passwordField.getText();
 
             UserController userController = new UserController();
-            if (userController.validateUser(username, HashUtil.hash(password))) {
-                SceneManager.showUserMenu(); // Redirect to UserMenu after login
-            } else {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setContentText("Invalid credentials.");
-                alert.showAndWait();
-            }
+            loginButton.setDisable(true);
+            TaskScheduler.getInstance().submit(() -> userController.validateUser(username, HashUtil.hash(password)), valid -> {
+                loginButton.setDisable(false);
+                if (valid) {
+                    SceneManager.showUserMenu(); // Redirect to UserMenu after login
+                } else {
+                    showError("Invalid credentials.");
+                }
+            }, ex -> {
+                loginButton.setDisable(false);
+                showError("Login failed: " + ex.getMessage());
+            });
         });
 
         // Back button
         Button backButton = new Button("Back");
         backButton.setOnAction(e -> SceneManager.showMainMenu());
 
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(24, 24);
+        progressIndicator.visibleProperty().bind(TaskScheduler.getInstance().busyProperty());
+
         // Layout
-        VBox layout = new VBox(10, usernameField, passwordField, loginButton, backButton);
+        VBox layout = new VBox(10, usernameField, passwordField, loginButton, backButton, progressIndicator);
         return layout;
     }
+
+    /**
+     * Displays an error alert to the user.
+     *
+     * @param message the message to display in the alert.
+     */
+    private static void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
 }
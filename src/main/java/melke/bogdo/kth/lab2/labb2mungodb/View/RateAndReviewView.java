@@ -8,11 +8,11 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.BookController;
 import melke.bogdo.kth.lab2.labb2mungodb.Controller.ReviewController;
-import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Controller.TaskScheduler;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookSummary;
 import melke.bogdo.kth.lab2.labb2mungodb.Model.SessionManager;
 
-import java.util.List;
-
 /**
  * Provides the graphical interface for rating and reviewing books.
  * Users can select a book, provide a rating, write a review, or both.
@@ -37,6 +37,7 @@ public class RateAndReviewView {
         Label selectBookLabel = new Label("Select a book:");
         ComboBox<String> bookDropdown = new ComboBox<>();
         populateBookDropdown(bookDropdown, bookController);
+        SceneManager.onLeave(bookController.subscribeToChanges(event -> applyChange(bookDropdown, bookController, event)));
 
         // Rating section
         Label ratingLabel = new Label("Select a rating (1-5):");
@@ -54,6 +55,10 @@ public class RateAndReviewView {
         Button submitButton = new Button("Submit");
         Button backButton = new Button("Back");
 
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(24, 24);
+        progressIndicator.visibleProperty().bind(TaskScheduler.getInstance().busyProperty());
+
         submitButton.setOnAction(e -> {
             String selectedBook = bookDropdown.getValue();
             Integer selectedRating = ratingComboBox.getValue();
@@ -69,10 +74,12 @@ public class RateAndReviewView {
                 return;
             }
 
-            try {
-                // Extract the ObjectId part from the dropdown value
-                String selectedBookId = selectedBook.split(" - ")[0].trim();
+            // Extract the ObjectId part from the dropdown value
+            String selectedBookId = selectedBook.split(" - ")[0].trim();
+            String userId = SessionManager.getInstance().getCurrentUserId(); // Fetch current user ID
 
+            submitButton.setDisable(true);
+            TaskScheduler.getInstance().submit(() -> {
                 // Add rating if provided
                 if (selectedRating != null) {
                     bookController.addRating(selectedBookId, selectedRating);
@@ -80,21 +87,22 @@ public class RateAndReviewView {
 
                 // Add review if provided
                 if (!reviewText.isEmpty()) {
-                    String userId = SessionManager.getInstance().getCurrentUserId(); // Fetch current user ID
                     reviewController.addReview(selectedBookId, userId, reviewText);
                 }
-
+                return null;
+            }, result -> {
                 showAlert(Alert.AlertType.INFORMATION, "Your rating and/or review has been submitted.");
                 SceneManager.showUserMenu();
-            } catch (Exception ex) {
+            }, ex -> {
+                submitButton.setDisable(false);
                 showAlert(Alert.AlertType.ERROR, "Failed to submit rating and/or review: " + ex.getMessage());
-            }
+            });
         });
 
         backButton.setOnAction(e -> SceneManager.showUserMenu());
 
         // Layout
-        VBox layout = new VBox(10, titleLabel, selectBookLabel, bookDropdown, ratingLabel, ratingComboBox, reviewLabel, reviewTextArea, submitButton, backButton);
+        VBox layout = new VBox(10, titleLabel, selectBookLabel, bookDropdown, ratingLabel, ratingComboBox, reviewLabel, reviewTextArea, submitButton, backButton, progressIndicator);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
 
@@ -102,22 +110,51 @@ public class RateAndReviewView {
     }
 
     /**
-     * Populates the {@link ComboBox} with a list of books from the database.
+     * Populates the {@link ComboBox} with a list of books from the database, loaded in the background.
      * Each book is displayed as a combination of its ID and title.
      *
      * @param dropdown       the {@link ComboBox} to populate.
      * @param bookController the {@link BookController} used to retrieve books.
      */
     private static void populateBookDropdown(ComboBox<String> dropdown, BookController bookController) {
-        try {
-            List<Book> books = bookController.getAllBooks();
+        TaskScheduler.getInstance().submitLatest("rate-book-list", bookController::getBookSummaries, books -> {
             ObservableList<String> bookIds = FXCollections.observableArrayList();
-            for (Book book : books) {
+            for (BookSummary book : books) {
                 bookIds.add(book.getId() + " - " + book.getTitle());
             }
             dropdown.setItems(bookIds);
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Failed to load books: " + e.getMessage());
+        }, e -> showAlert(Alert.AlertType.ERROR, "Failed to load books: " + e.getMessage()));
+    }
+
+    /**
+     * Applies a change made by any client to the book dropdown, without reloading the other books.
+     *
+     * @param dropdown       the {@link ComboBox} listing the books.
+     * @param bookController the {@link BookController} used to reload the books when required.
+     * @param event          the {@link BookChangeEvent} to apply.
+     */
+    private static void applyChange(ComboBox<String> dropdown, BookController bookController, BookChangeEvent event) {
+        if (event.getType() == BookChangeEvent.Type.RELOAD) {
+            populateBookDropdown(dropdown, bookController);
+            return;
+        }
+        ObservableList<String> items = dropdown.getItems();
+        String prefix = event.getBookId() + " - ";
+        int index = 0;
+        while (index < items.size() && !items.get(index).startsWith(prefix)) {
+            index++;
+        }
+        if (event.getType() == BookChangeEvent.Type.DELETE) {
+            if (index < items.size()) {
+                items.remove(index);
+            }
+        } else if (event.getBook() != null) {
+            String item = prefix + event.getBook().getTitle();
+            if (index == items.size()) {
+                items.add(item);
+            } else if (!items.get(index).equals(item)) {
+                items.set(index, item);
+            }
         }
     }
 
@@ -3,6 +3,9 @@ package melke.bogdo.kth.lab2.labb2mungodb.View;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Manages the scenes of the application.
  * Provides methods to switch between different views such as the main menu, user menu, and book-related operations.
@@ -10,6 +13,7 @@ import javafx.stage.Stage;
 public class SceneManager {
 
     private static Stage primaryStage;
+    private static final List<Runnable> leaveActions = new ArrayList<>();
 
     /**
      * Initializes the {@code SceneManager} with the primary {@link Stage}.
@@ -29,6 +33,7 @@ public class SceneManager {
      */
     public static void showUserMenu() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(UserMenuView.create(primaryStage)));
     }
 
@@ -39,6 +44,7 @@ public class SceneManager {
      */
     public static void showMainMenu() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(MainMenuView.create(primaryStage)));
         primaryStage.show();
     }
@@ -50,6 +56,7 @@ public class SceneManager {
      */
     public static void showRateAndReviewMenu() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(RateAndReviewView.create(primaryStage)));
         primaryStage.show();
     }
@@ -61,6 +68,7 @@ public class SceneManager {
      */
     public static void showLogin() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(LoginView.create(primaryStage)));
     }
 
@@ -71,6 +79,7 @@ public class SceneManager {
      */
     public static void showSearchBooks() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(BookSearchView.create(primaryStage)));
     }
 
@@ -81,6 +90,7 @@ public class SceneManager {
      */
     public static void showAddBook() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(AddBookView.create(primaryStage)));
     }
 
@@ -91,9 +101,29 @@ public class SceneManager {
      */
     public static void showDeleteBook() {
         ensureInitialized();
+        leaveCurrentView();
         primaryStage.setScene(new Scene(DeleteBookView.create(primaryStage)));
     }
 
+    /**
+     * Registers an action to run when the view currently being created is replaced by another one,
+     * e.g. to end a subscription the view holds.
+     *
+     * @param action the action to run when the view is left.
+     */
+    public static void onLeave(Runnable action) {
+        leaveActions.add(action);
+    }
+
+    /**
+     * Runs and clears the leave actions registered by the view being replaced.
+     */
+    private static void leaveCurrentView() {
+        List<Runnable> actions = new ArrayList<>(leaveActions);
+        leaveActions.clear();
+        actions.forEach(Runnable::run);
+    }
+
     /**
      * Ensures that the {@code primaryStage} is initialized before performing any actions.
      *
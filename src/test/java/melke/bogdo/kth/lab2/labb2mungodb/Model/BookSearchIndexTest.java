@@ -0,0 +1,155 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the substring matching, updates and ownership rules of the {@link BookSearchIndex}.
+ */
+class BookSearchIndexTest {
+
+    private final BookSearchIndex index = new BookSearchIndex();
+
+    @Test
+    void substringsMatchAcrossTrigramBoundariesButScatteredTrigramsDoNot() {
+        Book foundation = book("Foundation and Empire", "Isaac Asimov");
+        Book scattered = book("abcXbcd", "Nobody");
+        index.load(List.of(foundation, scattered));
+
+        assertEquals(List.of(foundation.getId()), ids(index.search("title", "ation and e")));
+        assertEquals(List.of(foundation.getId()), ids(index.search("title", "ndatio")));
+        // Both trigrams of "abcd" occur in "abcXbcd", but not next to each other
+        assertEquals(List.of(), ids(index.search("title", "abcd")));
+        assertEquals(List.of(scattered.getId()), ids(index.search("title", "xbcd")));
+    }
+
+    @Test
+    void keywordsShorterThanATrigramScanTheField() {
+        Book dune = book("Dune", "Frank Herbert");
+        Book emma = book("Emma", "Jane Austen");
+        index.load(List.of(dune, emma));
+
+        assertEquals(List.of(dune.getId(), emma.getId()), ids(index.search("title", "e")));
+        assertEquals(List.of(emma.getId()), ids(index.search("title", "mm")));
+        assertEquals(List.of(dune.getId()), ids(index.search("author", "k ")));
+        assertEquals(List.of(), ids(index.search("title", "zz")));
+    }
+
+    @Test
+    void matchingIgnoresCaseOfKeywordAndType() {
+        Book dune = book("Dune Messiah", "Frank Herbert");
+        index.load(List.of(dune));
+
+        assertEquals(List.of(dune.getId()), ids(index.search("TITLE", "DUNE mes")));
+        assertEquals(List.of(dune.getId()), ids(index.search("Author", "hErBeRt")));
+        assertEquals(List.of(dune.getId()), ids(index.search("genre", "FICT")));
+        assertTrue(BookSearchIndex.supports("ISBN"));
+        assertFalse(BookSearchIndex.supports("keyword"));
+        assertThrows(IllegalArgumentException.class, () -> index.search("keyword", "dune"));
+    }
+
+    @Test
+    void removedBookCanBeAddedAgain() {
+        Book dune = book("Dune", "Frank Herbert");
+        index.load(List.of(dune));
+
+        index.remove(dune.getId());
+        assertEquals(List.of(), ids(index.search("title", "dune")));
+        assertNull(index.get(dune.getId()));
+
+        dune.setTitle("Dune (Revised)");
+        index.add(dune);
+        assertEquals(List.of(dune.getId()), ids(index.search("title", "revised")));
+        assertEquals(List.of(dune.getId()), ids(index.search("title", "dun")));
+    }
+
+    @Test
+    void rebuildAfterManyRemovalsKeepsTheLiveBooks() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            books.add(book("Volume " + i, "Author " + i));
+        }
+        index.load(books);
+
+        // Enough tombstones to outnumber the live books and trigger a rebuild
+        for (int i = 0; i < 2500; i++) {
+            index.remove(books.get(i).getId());
+        }
+        List<Book> found = index.search("title", "volume 29");
+        assertEquals(ids(books.subList(2900, 3000)), ids(found));
+        assertEquals(500, index.getAll().size());
+
+        index.add(books.get(0));
+        assertEquals(List.of(books.get(0).getId()), ids(index.search("author", "author 0")));
+        assertEquals(501, index.getAll().size());
+    }
+
+    @Test
+    void indexedBooksAreNotSharedWithCallers() {
+        Book dune = book("Dune", "Frank Herbert");
+        index.add(dune);
+        index.load(List.of());
+        dune.setTitle("Changed by the caller");
+
+        Book found = index.search("title", "dune").get(0);
+        found.setTitle("Changed by a reader");
+        index.get(dune.getId()).getRatings().add(new Rating("u1", 1));
+
+        Book indexed = index.get(dune.getId());
+        assertEquals("Dune", indexed.getTitle());
+        assertEquals(0, indexed.getRatings().size());
+    }
+
+    @Test
+    void updateReindexesAChangedCopy() {
+        Book dune = book("Dune", "Frank Herbert");
+        index.load(List.of(dune));
+
+        assertTrue(index.update(dune.getId(), book -> {
+            book.setTitle("Children of Dune");
+            book.applyRating(new Rating("u1", 4));
+        }));
+        assertFalse(index.update(new ObjectId().toHexString(), book -> book.setTitle("Missing")));
+
+        Book updated = index.search("title", "children").get(0);
+        assertEquals(4.0, updated.getAverageRating(), 1e-9);
+        assertEquals(1, index.getAll().size());
+    }
+
+    @Test
+    void loadKeepsConcurrentChangesAndIsIgnoredAfterAReplacement() {
+        Book dune = book("Dune", "Frank Herbert");
+        Book emma = book("Emma", "Jane Austen");
+        Book added = book("Added while loading", "Someone");
+        assertThrows(IllegalStateException.class, () -> index.search("title", "dune"));
+
+        index.add(added);
+        index.remove(emma.getId());
+        index.load(List.of(dune, emma));
+        assertEquals(List.of(added.getId(), dune.getId()), ids(index.getAll()));
+
+        index.replaceAll(List.of(emma));
+        index.load(List.of(dune));
+        assertEquals(List.of(emma.getId()), ids(index.getAll()));
+    }
+
+    private static Book book(String title, String author) {
+        return new Book(new ObjectId().toHexString(), title, "isbn-" + title, new Genre(1, "Fiction"),
+                new ArrayList<>(List.of(new Author(author, null, null))), new ArrayList<>(), new ArrayList<>(),
+                "owner");
+    }
+
+    private static List<String> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,138 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the admission, eviction and expiry rules of the {@link BoundedCache}.
+ */
+class BoundedCacheTest {
+
+    private static final long LONG_TTL_MILLIS = 60_000;
+
+    @Test
+    void fullCacheAdmitsOnlyKeysRequestedMoreOftenThanTheVictim() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, LONG_TTL_MILLIS);
+        cache.put("a", "A");
+        cache.put("b", "B");
+
+        cache.put("once", "rejected"); // Never requested, so not more frequent than "a"
+        assertNull(cache.get("once"));
+        assertEquals(2, cache.getStats().getSize());
+
+        cache.get("popular");
+        cache.get("popular");
+        cache.put("popular", "P");
+        assertEquals("P", cache.get("popular"));
+        assertNull(cache.get("a")); // The least recently used entry made room
+        assertEquals("B", cache.get("b"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void scanOfOneOffKeysDoesNotFlushFrequentlyUsedEntries() {
+        BoundedCache<Integer, String> cache = filledWithHotKeys(100);
+        scan(cache, 500);
+
+        for (int key = 0; key < 100; key++) {
+            assertEquals("hot " + key, cache.get(key));
+        }
+        assertEquals(0, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void popularityFadesOnceTheKeysAreNoLongerUsed() {
+        BoundedCache<Integer, String> cache = filledWithHotKeys(100);
+        scan(cache, 2000); // Long enough for the frequency counters to be halved a few times
+
+        assertEquals(100, cache.getStats().getEvictions());
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    void expiredEntriesAreMissesAndGiveWayWithoutAdmission() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(1, 50);
+        cache.put("old", "O");
+        cache.get("old");
+        cache.get("old");
+        Thread.sleep(80);
+
+        cache.put("new", "N"); // Never requested, but the victim has expired
+        assertEquals("N", cache.get("new"));
+        assertEquals(0, cache.getStats().getEvictions());
+
+        Thread.sleep(80);
+        assertNull(cache.get("new"));
+        assertEquals(0, cache.getStats().getSize());
+        assertEquals(3, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void sweepDropsExpiredEntriesThatAreNotTheVictim() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 50);
+        cache.put("a", "A");
+        Thread.sleep(80);
+        cache.put("b", "B"); // Still valid, and now the most recently used
+        cache.get("a"); // Expired: removed on lookup, which also makes "b" the only entry
+        cache.put("a", "A2");
+        Thread.sleep(80);
+
+        cache.get("c");
+        cache.get("c");
+        cache.put("c", "C"); // A full cache of expired entries: the victim is simply replaced
+        cache.put("d", "D"); // The second insert into the full cache sweeps the other expired entry
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+        assertEquals(0, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void invalidatedEntriesAreGone() {
+        BoundedCache<String, String> cache = new BoundedCache<>(4, LONG_TTL_MILLIS);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("a", "A2");
+        assertEquals("A2", cache.get("a"));
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        cache.invalidateAll();
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    @Test
+    void capacityAndTtlMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(0, LONG_TTL_MILLIS));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(1, 0));
+    }
+
+    /**
+     * Creates a full cache whose keys 0 to {@code capacity - 1} have each been requested three times.
+     */
+    private static BoundedCache<Integer, String> filledWithHotKeys(int capacity) {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(capacity, LONG_TTL_MILLIS);
+        for (int key = 0; key < capacity; key++) {
+            cache.put(key, "hot " + key);
+            for (int i = 0; i < 3; i++) {
+                cache.get(key);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Looks up distinct keys once each, caching every miss, as a read-through scan does.
+     */
+    private static void scan(BoundedCache<Integer, String> cache, int keys) {
+        for (int key = 1_000_000; key < 1_000_000 + keys; key++) {
+            if (cache.get(key) == null) {
+                cache.put(key, "cold " + key);
+            }
+        }
+    }
+}
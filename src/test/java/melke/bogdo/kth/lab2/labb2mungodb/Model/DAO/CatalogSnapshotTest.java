@@ -0,0 +1,98 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests saving and reading a {@link CatalogSnapshot}.
+ */
+class CatalogSnapshotTest {
+
+    private static final BsonDocument TOKEN = new BsonDocument("_data", new BsonString("8263A1"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void savedCatalogIsReadBackWithItsToken() throws IOException {
+        Path file = directory.resolve("nested").resolve("books.snapshot");
+        Book rated = book("Dune");
+        rated.getRatings().add(new Rating("u1", 4));
+        rated.setRatingAggregates(1, 4);
+        CatalogSnapshot.save(file, TOKEN, List.of(rated, book("Emma")));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertEquals(TOKEN, snapshot.getResumeToken());
+        assertEquals(2, snapshot.getBooks().size());
+        Book read = snapshot.getBooks().get(0);
+        assertEquals(rated.getId(), read.getId());
+        assertEquals("Dune", read.getTitle());
+        assertEquals("Frank Herbert", read.getAuthors().get(0).getName());
+        assertEquals(4.0, read.getAverageRating(), 1e-9);
+        assertEquals("Emma", snapshot.getBooks().get(1).getTitle());
+    }
+
+    @Test
+    void savingReplacesTheEarlierSnapshot() throws IOException {
+        Path file = directory.resolve("books.snapshot");
+        CatalogSnapshot.save(file, TOKEN, List.of(book("Old")));
+        BsonDocument newer = new BsonDocument("_data", new BsonString("8263B2"));
+        CatalogSnapshot.save(file, newer, List.of());
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertEquals(newer, snapshot.getResumeToken());
+        assertEquals(0, snapshot.getBooks().size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void missingFileHasNoSnapshot() throws IOException {
+        assertNull(CatalogSnapshot.read(directory.resolve("absent.snapshot")));
+    }
+
+    @Test
+    void truncatedOrCorruptFileIsRejected() throws IOException {
+        Path file = directory.resolve("books.snapshot");
+        CatalogSnapshot.save(file, TOKEN, List.of(book("Dune"), book("Emma")));
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(file));
+
+        byte[] corrupt = bytes.clone();
+        corrupt[6] = 0x7f; // Type byte of the header's first field
+        Files.write(file, corrupt);
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(file));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length + 1));
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(file));
+    }
+
+    private static Book book(String title) {
+        return new Book(new ObjectId().toHexString(), title, "isbn-" + title, new Genre(1, "Fiction"),
+                new ArrayList<>(List.of(new Author("Frank Herbert", null, null))), new ArrayList<>(),
+                new ArrayList<>(), "owner");
+    }
+}
@@ -0,0 +1,177 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookChangeEvent;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the {@link CoalescingBookDAO} shares running and fresh queries, and does not share failures or results
+ * from before a write.
+ */
+class CoalescingBookDAOTest {
+
+    private CountingBookDAO delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingBookDAO();
+        delegate.addBook(book("Dune"));
+    }
+
+    @Test
+    void concurrentReadsShareTheRunningQuery() throws Exception {
+        CoalescingBookDAO books = new CoalescingBookDAO(delegate, 0);
+        CountDownLatch release = delegate.block();
+
+        CompletableFuture<List<Book>> first = inThread(books::getAllBooks);
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Book>> second = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> second.complete(books.getAllBooks()));
+        waiter.start();
+        awaitWaiting(waiter);
+
+        release.countDown();
+        List<Book> firstBooks = first.get(5, TimeUnit.SECONDS);
+        List<Book> secondBooks = second.get(5, TimeUnit.SECONDS);
+        assertEquals(1, delegate.queries.get());
+        assertEquals(1, secondBooks.size());
+        assertSame(firstBooks.get(0), secondBooks.get(0));
+        assertNotSame(firstBooks, secondBooks); // Each caller gets its own list to modify
+
+        books.getAllBooks(); // No staleness window: a finished query is not shared
+        assertEquals(2, delegate.queries.get());
+    }
+
+    @Test
+    void failureReachesTheWaitersButIsNotShared() throws Exception {
+        CoalescingBookDAO books = new CoalescingBookDAO(delegate, 60_000);
+        CountDownLatch release = delegate.block();
+        delegate.failure = new IllegalStateException("Database unavailable");
+
+        CompletableFuture<List<Book>> first = inThread(books::getAllBooks);
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Book>> second = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                second.complete(books.getAllBooks());
+            } catch (RuntimeException e) {
+                second.completeExceptionally(e);
+            }
+        });
+        waiter.start();
+        awaitWaiting(waiter);
+
+        release.countDown();
+        ExecutionException firstError = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        ExecutionException secondError = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertSame(delegate.failure, firstError.getCause());
+        assertSame(delegate.failure, secondError.getCause());
+
+        delegate.failure = null;
+        assertEquals(1, books.getAllBooks().size());
+        assertEquals(2, delegate.queries.get());
+    }
+
+    @Test
+    void freshResultIsSharedUntilAWriteOrChange() {
+        CoalescingBookDAO books = new CoalescingBookDAO(delegate, 60_000);
+        books.getAllBooks();
+        books.getAllBooks();
+        assertEquals(1, delegate.queries.get());
+
+        books.addBook(book("Emma"));
+        assertEquals(2, books.getAllBooks().size());
+        assertEquals(2, delegate.queries.get());
+
+        books.onBookChange(BookChangeEvent.reload());
+        books.getAllBooks();
+        assertEquals(3, delegate.queries.get());
+    }
+
+    @Test
+    void negativeStalenessWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CoalescingBookDAO(delegate, -1));
+        assertThrows(IllegalArgumentException.class, () -> new CoalescingBookDAO(null, 0));
+    }
+
+    private static <T> CompletableFuture<T> inThread(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                result.complete(call.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }).start();
+        return result;
+    }
+
+    /**
+     * Waits until a thread parks, which for a caller of a running query means it is waiting for the query's result.
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "The second caller never waited for the running query.");
+            Thread.sleep(1);
+        }
+    }
+
+    private static Book book(String title) {
+        return new Book(null, title, "isbn-" + title, new Genre(1, "Fiction"),
+                new ArrayList<>(List.of(new Author("Frank Herbert", null, null))), null, null, "owner");
+    }
+
+    /**
+     * An in-memory DAO that counts full catalog queries, and can hold them until released or make them fail.
+     */
+    private static final class CountingBookDAO extends InMemoryBookDAO {
+
+        private final AtomicInteger queries = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch release;
+        private volatile RuntimeException failure;
+
+        private CountDownLatch block() {
+            release = new CountDownLatch(1);
+            return release;
+        }
+
+        @Override
+        public List<Book> getAllBooks() {
+            queries.incrementAndGet();
+            started.countDown();
+            CountDownLatch gate = release;
+            release = null;
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return super.getAllBooks();
+        }
+    }
+}
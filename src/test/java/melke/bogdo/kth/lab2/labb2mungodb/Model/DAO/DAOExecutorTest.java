@@ -0,0 +1,104 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the {@link DAOExecutor} times out and cancels calls without interrupting the threads running them.
+ */
+class DAOExecutorTest {
+
+    private DAOExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new DAOExecutor(1, 1, 5_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void timedOutCallIsNotInterrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CompletableFuture<String> future = executor.submit(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            interrupted.set(Thread.currentThread().isInterrupted());
+            finished.countDown();
+            return "late";
+        }, 50);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void cancellableCallSeesItsFutureCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        CompletableFuture<Integer> future = executor.submit(cancelled -> {
+            started.countDown();
+            int checks = 0;
+            while (!cancelled.getAsBoolean()) {
+                checks++;
+                Thread.sleep(1);
+            }
+            stopped.countDown();
+            return checks;
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(false);
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void cancelledQueuedCallFreesItsSlotAndNeverRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Void> running = executor.submit(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        CompletableFuture<Void> queued = executor.submit(() -> {
+            ran.set(true);
+            return null;
+        });
+        assertEquals(1, executor.getQueuedCount());
+
+        queued.cancel(false);
+        assertEquals(0, executor.getQueuedCount());
+        CompletableFuture<String> next = executor.submit(() -> "next");
+        CompletableFuture<String> rejected = executor.submit(() -> "rejected");
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        assertEquals("next", next.get(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+    }
+}
@@ -0,0 +1,223 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Author;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BatchOutcome;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookSummary;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.BookUpdate;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Page;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Rating;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Review;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the {@link LocalBookDAO} semantics shared with {@link BookDAOImpl}, on an {@link InMemoryBookDAO}.
+ */
+class LocalBookDAOTest {
+
+    private InMemoryBookDAO books;
+
+    @BeforeEach
+    void setUp() {
+        books = new InMemoryBookDAO();
+    }
+
+    @Test
+    void addReviewReplacesTheUsersReviewAndKeepsItsUsername() {
+        String bookId = addBook("Dune", "isbn-1");
+        books.addReview(bookId, new Review("u1", "Great", LocalDate.of(2024, 1, 1), "alice"));
+        books.addReview(bookId, new Review("u2", "Fine", LocalDate.of(2024, 1, 2), "bob"));
+        books.addReview(bookId, new Review("u1", "Even better", LocalDate.of(2024, 2, 1), "renamed"));
+
+        List<Review> reviews = books.getBookById(bookId).getReviews();
+        assertEquals(2, reviews.size());
+        Review first = reviews.get(0);
+        assertEquals("u1", first.getUserId());
+        assertEquals("Even better", first.getReviewText());
+        assertEquals(LocalDate.of(2024, 2, 1), first.getReviewDate());
+        assertEquals("alice", first.getUsername());
+        assertEquals("Fine", reviews.get(1).getReviewText());
+    }
+
+    @Test
+    void addRatingReplacesTheUsersRatingAndRecomputesTheAggregates() {
+        String bookId = addBook("Dune", "isbn-1");
+        books.addRating(bookId, new Rating("u1", 2));
+        books.addRating(bookId, new Rating("u2", 4));
+        books.addRating(bookId, new Rating("u1", 5));
+
+        Book book = books.getBookById(bookId);
+        assertEquals(2, book.getRatings().size());
+        assertEquals(5, book.getRatings().get(0).getRating());
+        assertEquals(2, book.getRatingCount());
+        assertEquals(4.5, book.getAverageRating(), 1e-9);
+        assertEquals(4.5, books.getBookSummaries().get(0).getAverageRating(), 1e-9);
+    }
+
+    @Test
+    void putBookRecomputesTheAggregatesOfTheGivenRatings() {
+        Book book = new Book(new ObjectId().toHexString(), "Emma", "isbn-1", null, new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(List.of(new Rating("u1", 1), new Rating("u2", 2))), null);
+        book.setRatingAggregates(10, 50);
+        books.putBook(book);
+
+        Book stored = books.getBookById(book.getId());
+        assertEquals(2, stored.getRatingCount());
+        assertEquals(1.5, stored.getAverageRating(), 1e-9);
+    }
+
+    @Test
+    void addRatingsReportsAnOutcomePerItem() {
+        String bookId = addBook("Dune", "isbn-1");
+        String missingId = new ObjectId().toHexString();
+        List<BookUpdate<Rating>> ratings = new ArrayList<>();
+        ratings.add(new BookUpdate<>(bookId, new Rating("u1", 3)));
+        ratings.add(new BookUpdate<>(bookId, new Rating("u2", 7)));
+        ratings.add(new BookUpdate<>("not-an-id", new Rating("u3", 3)));
+        ratings.add(new BookUpdate<>(bookId, new Rating(null, 3)));
+        ratings.add(null);
+        ratings.add(new BookUpdate<>(missingId, new Rating("u1", 4)));
+        ratings.add(new BookUpdate<>(bookId, new Rating("u1", 5)));
+
+        List<BatchOutcome> outcomes = books.addRatings(ratings);
+
+        assertEquals(ratings.size(), outcomes.size());
+        assertOutcome(outcomes.get(0), 0, BatchOutcome.Status.SUPERSEDED, "Replaced by item 6 in the same batch.");
+        assertOutcome(outcomes.get(1), 1, BatchOutcome.Status.INVALID, "Rating must be between 1 and 5.");
+        assertOutcome(outcomes.get(2), 2, BatchOutcome.Status.INVALID, "Invalid ObjectId: not-an-id");
+        assertOutcome(outcomes.get(3), 3, BatchOutcome.Status.INVALID, "User ID is required.");
+        assertOutcome(outcomes.get(4), 4, BatchOutcome.Status.INVALID, "Item cannot be null.");
+        assertOutcome(outcomes.get(5), 5, BatchOutcome.Status.BOOK_NOT_FOUND, "Book not found: " + missingId);
+        assertOutcome(outcomes.get(6), 6, BatchOutcome.Status.APPLIED, null);
+
+        Book book = books.getBookById(bookId);
+        assertEquals(1, book.getRatings().size());
+        assertEquals(5.0, book.getAverageRating(), 1e-9);
+    }
+
+    @Test
+    void addReviewsValidatesAndKeepsTheLastReviewPerUser() {
+        String bookId = addBook("Dune", "isbn-1");
+        books.addReview(bookId, new Review("u1", "Old", LocalDate.of(2024, 1, 1), "alice"));
+        List<BookUpdate<Review>> reviews = List.of(
+                new BookUpdate<>(bookId, new Review("u1", "First", LocalDate.of(2024, 3, 1), "ignored")),
+                new BookUpdate<>(bookId, new Review("u2", " ", LocalDate.of(2024, 3, 1), "bob")),
+                new BookUpdate<>(bookId, new Review("u2", "No date", null, "bob")),
+                new BookUpdate<>(bookId, new Review("u1", "Second", LocalDate.of(2024, 3, 2), "ignored")));
+
+        List<BatchOutcome> outcomes = books.addReviews(reviews);
+
+        assertOutcome(outcomes.get(0), 0, BatchOutcome.Status.SUPERSEDED, "Replaced by item 3 in the same batch.");
+        assertOutcome(outcomes.get(1), 1, BatchOutcome.Status.INVALID, "Review text cannot be null or empty.");
+        assertOutcome(outcomes.get(2), 2, BatchOutcome.Status.INVALID, "Review date is required.");
+        assertOutcome(outcomes.get(3), 3, BatchOutcome.Status.APPLIED, null);
+
+        List<Review> stored = books.getBookById(bookId).getReviews();
+        assertEquals(1, stored.size());
+        assertEquals("Second", stored.get(0).getReviewText());
+        assertEquals("alice", stored.get(0).getUsername());
+    }
+
+    @Test
+    void addBookRejectsADuplicateIsbnUntilTheBookIsDeleted() {
+        String bookId = addBook("Dune", "isbn-1");
+
+        assertThrows(IllegalArgumentException.class, () -> addBook("Dune Messiah", "isbn-1"));
+        assertThrows(IllegalArgumentException.class, () -> books.putBook(new Book(null, "Copy", "isbn-1", null,
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), null)));
+        assertEquals(1, books.size());
+
+        books.deleteBook(bookId);
+        assertNotNull(addBook("Dune Messiah", "isbn-1"));
+        assertEquals("Dune Messiah", books.searchBooks("isbn", "isbn-1").get(0).getTitle());
+    }
+
+    @Test
+    void getBooksPageFollowsTheIdOrderWithKeysetTokens() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(addBook("Book " + i, "isbn-" + i));
+        }
+        ids.sort(null);
+
+        Page<Book> first = books.getBooksPage(null, 2);
+        assertEquals(ids.subList(0, 2), idsOf(first.getItems()));
+        assertEquals(ids.get(1), first.getContinuationToken());
+
+        books.deleteBook(ids.get(1));
+        Page<Book> second = books.getBooksPage(first.getContinuationToken(), 2);
+        assertEquals(ids.subList(2, 4), idsOf(second.getItems()));
+
+        Page<Book> last = books.getBooksPage(second.getContinuationToken(), 2);
+        assertEquals(ids.subList(4, 5), idsOf(last.getItems()));
+        assertNull(last.getContinuationToken());
+
+        assertThrows(IllegalArgumentException.class, () -> books.getBooksPage("not-an-id", 2));
+        assertThrows(IllegalArgumentException.class, () -> books.getBooksPage(null, 0));
+    }
+
+    @Test
+    void searchBooksPageContinuesAfterTheToken() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(addBook("Space " + i, "isbn-" + i));
+        }
+        addBook("Garden", "isbn-other");
+        ids.sort(null);
+
+        Page<Book> first = books.searchBooksPage("title", "space", null, 2);
+        assertEquals(ids.subList(0, 2), idsOf(first.getItems()));
+        Page<Book> second = books.searchBooksPage("title", "space", first.getContinuationToken(), 2);
+        assertEquals(ids.subList(2, 3), idsOf(second.getItems()));
+        assertNull(second.getContinuationToken());
+    }
+
+    @Test
+    void searchesReturnCopiesOfTheMatchingBooks() {
+        String bookId = addBook("The Space Between", "isbn-1");
+        addBook("Gardening", "isbn-2");
+
+        List<Book> found = books.searchBooks("keyword", "space");
+        assertEquals(List.of(bookId), idsOf(found));
+        found.get(0).setTitle("Changed");
+        found.get(0).getRatings().add(new Rating("u1", 5));
+
+        Book stored = books.getBookById(bookId);
+        assertEquals("The Space Between", stored.getTitle());
+        assertEquals(0, stored.getRatings().size());
+        List<BookSummary> summaries = books.getBookSummaries();
+        assertEquals(2, summaries.size());
+        assertEquals("The Space Between", summaries.stream().filter(summary -> summary.getId().equals(bookId))
+                .findFirst().orElseThrow().getTitle());
+    }
+
+    private String addBook(String title, String isbn) {
+        Book book = new Book(null, title, isbn, new Genre(1, "Fiction"),
+                new ArrayList<>(List.of(new Author("Frank Herbert", null, null))), null, null, "owner");
+        books.addBook(book);
+        return book.getId();
+    }
+
+    private static List<String> idsOf(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    private static void assertOutcome(BatchOutcome outcome, int index, BatchOutcome.Status status, String message) {
+        assertEquals(index, outcome.getIndex());
+        assertEquals(status, outcome.getStatus());
+        assertEquals(message, outcome.getMessage());
+    }
+}
@@ -0,0 +1,405 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log;
+
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Book;
+import melke.bogdo.kth.lab2.labb2mungodb.Model.Genre;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests recovery, group commit and compaction of the {@link BookLog} by writing, damaging and reopening segment files.
+ */
+class BookLogTest {
+
+    private static final long LARGE_SEGMENTS = 1024 * 1024;
+    private static final long ONE_RECORD_SEGMENTS = 1;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopeningReplaysPutsAndDeletes() throws IOException {
+        Book kept = book("Kept");
+        Book deleted = book("Deleted");
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            log.put(kept);
+            log.put(deleted);
+            kept.setTitle("Kept, second edition");
+            log.put(kept);
+            log.remove(deleted.getId());
+        }
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(kept.getId(), "Kept, second edition"), titles(log));
+        }
+    }
+
+    @Test
+    void tornTailOfTheLastSegmentIsTruncated() throws IOException {
+        Book first = book("First");
+        Book second = book("Second");
+        long intactSize;
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            log.put(first);
+            intactSize = log.getDiskBytes();
+            log.put(second);
+        }
+        Path segment = lastSegmentFile();
+        truncate(segment, Files.size(segment) - 5);
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(first.getId(), "First"), titles(log));
+            assertEquals(intactSize, Files.size(segment));
+            log.put(second);
+        }
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(first.getId(), "First", second.getId(), "Second"), titles(log));
+        }
+    }
+
+    @Test
+    void recordWithABadChecksumEndsTheLastSegment() throws IOException {
+        Book first = book("First");
+        Book second = book("Second");
+        Book third = book("Third");
+        long intactSize;
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            log.put(first);
+            intactSize = log.getDiskBytes();
+            log.put(second);
+            log.put(third);
+        }
+        Path segment = lastSegmentFile();
+        flipByte(segment, intactSize + 30); // Inside the BSON of the second record
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(first.getId(), "First"), titles(log));
+            assertEquals(intactSize, Files.size(segment));
+        }
+    }
+
+    @Test
+    void corruptRecordInASealedSegmentFailsTheOpen() throws IOException {
+        try (BookLog log = new BookLog(directory, ONE_RECORD_SEGMENTS, true)) {
+            log.put(book("First"));
+            log.put(book("Second"));
+            log.put(book("Third"));
+        }
+        List<Path> segments = segmentFiles();
+        Path firstSegment = segments.get(0);
+        long size = Files.size(firstSegment);
+        flipByte(firstSegment, size - 1);
+
+        IOException failure = assertThrows(IOException.class, () -> new BookLog(directory, ONE_RECORD_SEGMENTS, true));
+        assertTrue(failure.getMessage().contains(firstSegment.toString()));
+        assertEquals(size, Files.size(firstSegment));
+        assertEquals(segments, segmentFiles());
+        // The failed open released the directory, so it reports the corruption again rather than a lock conflict
+        assertThrows(IOException.class, () -> new BookLog(directory, ONE_RECORD_SEGMENTS, true));
+    }
+
+    @Test
+    void groupCommitMakesEveryConcurrentWriteDurable() throws Exception {
+        Map<String, String> expected = new ConcurrentHashMap<>();
+        try (BookLog log = new BookLog(directory, 64 * 1024, true)) {
+            List<Thread> writers = new ArrayList<>();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            for (int w = 0; w < 8; w++) {
+                int writer = w;
+                writers.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 100; i++) {
+                            Book book = book("Writer " + writer + " book " + i);
+                            log.put(book);
+                            expected.put(book.getId(), book.getTitle());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertNull(failure.get());
+            assertEquals(expected, titles(log));
+        }
+
+        try (BookLog log = new BookLog(directory, 64 * 1024, true)) {
+            assertEquals(expected, titles(log));
+        }
+    }
+
+    @Test
+    void compactionKeepsTheLatestVersionsWhileBooksAreWrittenAndDeleted() throws Exception {
+        long segmentBytes = 4 * 1024;
+        Map<String, String> expected = new HashMap<>();
+        List<Book> stable = new ArrayList<>();
+        try (BookLog log = new BookLog(directory, segmentBytes, false)) {
+            for (int i = 0; i < 20; i++) {
+                Book book = book("Stable " + i);
+                log.put(book);
+                stable.add(book);
+                expected.put(book.getId(), book.getTitle());
+            }
+
+            AtomicBoolean writing = new AtomicBoolean(true);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread compactor = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        log.compact();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            Thread reader = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        for (Book book : stable) {
+                            if (log.get(book.getId()) == null) {
+                                throw new AssertionError("Lost book " + book.getId() + " during compaction");
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            compactor.start();
+            reader.start();
+
+            Random random = new Random(42);
+            List<Book> temporary = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                int choice = random.nextInt(3);
+                if (choice == 0) {
+                    Book book = stable.get(random.nextInt(stable.size()));
+                    book.setTitle("Stable, version " + i);
+                    log.put(book);
+                    expected.put(book.getId(), book.getTitle());
+                } else if (choice == 1 || temporary.isEmpty()) {
+                    Book book = book("Transient " + i);
+                    log.put(book);
+                    temporary.add(book);
+                    expected.put(book.getId(), book.getTitle());
+                } else {
+                    Book book = temporary.remove(random.nextInt(temporary.size()));
+                    log.remove(book.getId());
+                    expected.remove(book.getId());
+                }
+            }
+            writing.set(false);
+            compactor.join();
+            reader.join();
+            assertNull(failure.get());
+            assertEquals(expected, titles(log));
+
+            long before = log.getDiskBytes();
+            log.compact();
+            assertTrue(log.getDiskBytes() <= before);
+            assertEquals(expected, titles(log));
+        }
+
+        try (BookLog log = new BookLog(directory, segmentBytes, false)) {
+            assertEquals(expected, titles(log));
+            assertTrue(log.getLiveBytes() <= log.getDiskBytes());
+        }
+    }
+
+    @Test
+    void compactionDropsTombstonesTogetherWithTheRecordsTheyDelete() throws IOException {
+        Book deleted = book("Deleted");
+        Book kept = book("Kept");
+        Book deletedLater = book("Deleted later");
+        inNewSegment(log -> {
+            log.put(deleted);
+            log.put(kept);
+            log.put(deletedLater);
+        });
+        inNewSegment(log -> log.remove(deleted.getId()));
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            log.compact();
+            log.remove(deletedLater.getId()); // Its put is now in the compaction output, its tombstone newer
+        }
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(kept.getId(), "Kept"), titles(log));
+            log.compact();
+        }
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(kept.getId(), "Kept"), titles(log));
+        }
+    }
+
+    @Test
+    void crashBeforeCompactionDeletesItsInputsKeepsDeletedBooksDeleted() throws IOException {
+        Book deleted = book("Deleted");
+        Book updated = book("Updated");
+        Map<Path, byte[]> inputs = writeAndCompact(deleted, updated);
+
+        restore(inputs); // As if the crash came right after the output was synced
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(updated.getId(), "Updated, second edition"), titles(log));
+        }
+    }
+
+    @Test
+    void crashPartWayThroughTheInputDeletesKeepsDeletedBooksDeleted() throws IOException {
+        Book deleted = book("Deleted");
+        Book updated = book("Updated");
+        Map<Path, byte[]> inputs = writeAndCompact(deleted, updated);
+
+        List<Path> inputFiles = new ArrayList<>(inputs.keySet());
+        inputFiles.sort(null);
+        for (Path deletedFirst : inputFiles.subList(0, 2)) { // Inputs are deleted oldest first
+            inputs.remove(deletedFirst);
+        }
+        restore(inputs);
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(updated.getId(), "Updated, second edition"), titles(log));
+        }
+    }
+
+    @Test
+    void tornOutputOfAnInterruptedCompactionIsTruncated() throws IOException {
+        Book deleted = book("Deleted");
+        Book updated = book("Updated");
+        Map<Path, byte[]> inputs = writeAndCompact(deleted, updated);
+        Path output = compactionOutput();
+
+        restore(inputs); // As if the crash came while the output was written
+        truncate(output, Files.size(output) - 3);
+
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertEquals(Map.of(updated.getId(), "Updated, second edition"), titles(log));
+        }
+    }
+
+    @Test
+    void corruptOutputOfACompletedCompactionFailsTheOpen() throws IOException {
+        writeAndCompact(book("Deleted"), book("Updated"));
+        Path output = compactionOutput();
+        truncate(output, Files.size(output) - 3);
+
+        assertThrows(IOException.class, () -> new BookLog(directory, LARGE_SEGMENTS, true));
+    }
+
+    @Test
+    void secondLogOnTheSameDirectoryIsRejected() throws IOException {
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            assertThrows(IllegalStateException.class, () -> new BookLog(directory, LARGE_SEGMENTS, true));
+        }
+        new BookLog(directory, LARGE_SEGMENTS, true).close();
+    }
+
+    /**
+     * Writes each change into a segment of its own, by reopening the log, which keeps background compactions out of
+     * the way: deletes one book, updates the other, and compacts these segments.
+     *
+     * @return the contents of the compacted segment files, by path.
+     */
+    private Map<Path, byte[]> writeAndCompact(Book deleted, Book updated) throws IOException {
+        inNewSegment(log -> log.put(deleted));
+        inNewSegment(log -> log.put(updated));
+        inNewSegment(log -> log.remove(deleted.getId()));
+        updated.setTitle("Updated, second edition");
+        inNewSegment(log -> log.put(updated));
+
+        Map<Path, byte[]> inputs = new HashMap<>();
+        for (Path segment : segmentFiles()) {
+            inputs.put(segment, Files.readAllBytes(segment));
+        }
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            log.compact();
+        }
+        assertEquals(4, inputs.size());
+        assertFalse(inputs.keySet().stream().anyMatch(Files::exists));
+        return inputs;
+    }
+
+    private void inNewSegment(Consumer<BookLog> writes) throws IOException {
+        try (BookLog log = new BookLog(directory, LARGE_SEGMENTS, true)) {
+            writes.accept(log);
+        }
+    }
+
+    private void restore(Map<Path, byte[]> files) throws IOException {
+        for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+            Files.write(file.getKey(), file.getValue(), StandardOpenOption.CREATE_NEW);
+        }
+    }
+
+    private Path compactionOutput() throws IOException {
+        return segmentFiles().stream().filter(path -> !path.getFileName().toString().endsWith("-0.log"))
+                .findFirst().orElseThrow();
+    }
+
+    private Path lastSegmentFile() throws IOException {
+        List<Path> segments = segmentFiles();
+        return segments.get(segments.size() - 1);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(LogSegment::isSegmentFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flipByte(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, offset);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0x5A));
+            buffer.rewind();
+            channel.write(buffer, offset);
+        }
+    }
+
+    private static Map<String, String> titles(BookLog log) {
+        try (Stream<Book> books = log.books(null)) {
+            return books.collect(Collectors.toMap(Book::getId, Book::getTitle));
+        }
+    }
+
+    private static Book book(String title) {
+        Book book = new Book(new ObjectId().toHexString(), title, null, new Genre(1, "Fiction"),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "owner");
+        book.setRatingAggregates(0, 0);
+        return book;
+    }
+}
@@ -0,0 +1,126 @@
+package melke.bogdo.kth.lab2.labb2mungodb.Model.DAO.Log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests appending, reading and truncating a {@link LogSegment}, and the replay order of segment names.
+ */
+class LogSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedRecordsCanBeReadBackAfterReopening() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 7, 2);
+        assertEquals(0, segment.append(bytes("first")));
+        assertEquals(5, segment.append(bytes("second")));
+        segment.force();
+        segment.close();
+
+        LogSegment reopened = LogSegment.open(segment.getPath());
+        assertEquals(7, reopened.getSequence());
+        assertEquals(2, reopened.getGeneration());
+        assertEquals(11, reopened.getSize());
+        assertEquals("second", read(reopened, 5, 6));
+        reopened.close();
+    }
+
+    @Test
+    void readPastTheEndFails() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 1, 0);
+        segment.append(bytes("short"));
+
+        assertThrows(EOFException.class, () -> read(segment, 2, 10));
+        segment.close();
+    }
+
+    @Test
+    void truncateDropsTheTailAndLetsAppendsContinueThere() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 1, 0);
+        segment.append(bytes("kept"));
+        segment.append(bytes("torn"));
+
+        segment.truncate(4);
+        assertEquals(4, segment.append(bytes("next")));
+        assertEquals(8, Files.size(segment.getPath()));
+        assertEquals("keptnext", read(segment, 0, 8));
+        segment.close();
+    }
+
+    @Test
+    void interruptedReaderDoesNotBreakTheSegment() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 1, 0);
+        segment.append(bytes("record"));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(ClosedByInterruptException.class, () -> read(segment, 0, 6));
+        } finally {
+            Thread.interrupted();
+        }
+        assertFalse(segment.isClosed());
+        assertEquals("record", read(segment, 0, 6));
+        segment.close();
+    }
+
+    @Test
+    void deletedSegmentCannotBeRead() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 1, 0);
+        segment.append(bytes("record"));
+
+        segment.delete();
+        assertTrue(segment.isClosed());
+        assertFalse(Files.exists(segment.getPath()));
+        assertThrows(ClosedChannelException.class, () -> read(segment, 0, 6));
+    }
+
+    @Test
+    void compactionOutputReplaysAfterItsInputsAndBeforeNewerSegments() throws IOException {
+        List<LogSegment> segments = new ArrayList<>();
+        segments.add(LogSegment.create(directory, 11, 0));
+        segments.add(LogSegment.create(directory, 10, 1));
+        segments.add(LogSegment.create(directory, 2, 0));
+        segments.add(LogSegment.create(directory, 10, 0));
+        segments.sort(LogSegment.REPLAY_ORDER);
+
+        List<String> names = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            names.add(segment.getPath().getFileName().toString());
+            assertTrue(LogSegment.isSegmentFile(segment.getPath()));
+            segment.close();
+        }
+        assertEquals(List.of("segment-00000000000000000002-0.log", "segment-00000000000000000010-0.log",
+                "segment-00000000000000000010-1.log", "segment-00000000000000000011-0.log"), names);
+        assertFalse(LogSegment.isSegmentFile(directory.resolve("lock")));
+        assertThrows(IOException.class, () -> LogSegment.create(directory, 2, 0));
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String read(LogSegment segment, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        segment.read(offset, buffer);
+        assertEquals(0, buffer.remaining());
+        return new String(buffer.array(), StandardCharsets.US_ASCII);
+    }
+}